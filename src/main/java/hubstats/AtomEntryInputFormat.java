@@ -0,0 +1,143 @@
+package hubstats;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import java.io.IOException;
+
+/**
+ * Reads a timeline log as one record per Atom entry rather than one record per feed.
+ * <p/>
+ * Each record is a complete single-entry feed: the header of the enclosing feed (the feed start tag with its namespace
+ * declarations, and the feed id, title and updated elements) followed by one entry and the closing feed tag. Records
+ * can therefore be handled by EventMapper exactly as whole feeds are. All the entries of a feed share the same key, the
+ * offset of the start of that feed within the file, or within the decompressed stream of a compressed file, so that a
+ * mapper can tell where one feed ends and the next begins.
+ * <p/>
+ * Entries are found as the log is read, so a reader holds only the header of the current feed and the current entry,
+ * never a whole feed. The header, which is small beside the entries, is copied into every record of its feed, as each
+ * record must be a feed of its own for the parsers.
+ */
+public class AtomEntryInputFormat extends FeedInputFormat {
+
+    @Override
+    public RecordReader<LongWritable, Text> createRecordReader(InputSplit split, TaskAttemptContext context) {
+        try {
+            return new AtomEntryRecordReader((FileSplit) split, context.getConfiguration());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the entries of the feeds that start within a split, reading on past its end to finish the last feed, as
+     * XmlRecordReader reads the feeds, and from the same blocks of input.
+     */
+    public static class AtomEntryRecordReader extends BlockRecordReader {
+
+        private static final BytePattern FEED_START = new BytePattern(START_TAG);
+        private static final BytePattern FEED_END = new BytePattern(END_TAG);
+        private static final BytePattern ENTRY_START = new BytePattern("<entry>");
+        private static final BytePattern ENTRY_END = new BytePattern("</entry>");
+        private static final byte[] CLOSE_FEED = new BytePattern("</feed>").getBytes();
+
+        private static final int BUFFER_SIZE = 64 * 1024;
+
+        // the header of the feed being read, or empty between feeds
+        private final Text header = new Text();
+        private boolean inFeed;
+
+        public AtomEntryRecordReader(FileSplit split, Configuration conf) throws IOException {
+            super(split, conf, BUFFER_SIZE);
+        }
+
+        @Override
+        public boolean nextKeyValue() throws IOException, InterruptedException {
+            while (true) {
+                if (!inFeed) {
+                    // the next feed must start within the split
+                    if (find(FEED_START, null, null) < 0 || blockStart + blockPos >= end) {
+                        return false;
+                    }
+                    currentKey.set(blockStart + blockPos);
+                    header.clear();
+                    header.append(block, blockPos, FEED_START.length());
+                    blockPos += FEED_START.length();
+                    inFeed = true;
+                    // the header runs up to the first entry, and a feed without entries is skipped
+                    int found = find(ENTRY_START, FEED_END, header);
+                    if (found < 0) {
+                        return false;
+                    } else if (found == 1) {
+                        blockPos += FEED_END.length();
+                        inFeed = false;
+                        continue;
+                    }
+                }
+
+                int found = find(ENTRY_START, FEED_END, null);
+                if (found < 0) {
+                    return false;
+                } else if (found == 1) {
+                    blockPos += FEED_END.length();
+                    inFeed = false;
+                    continue;
+                }
+                currentValue.clear();
+                currentValue.append(header.getBytes(), 0, header.getLength());
+                if (find(ENTRY_END, null, currentValue) < 0) {
+                    // an entry cut off at the end of the file
+                    return false;
+                }
+                currentValue.append(block, blockPos, ENTRY_END.length());
+                blockPos += ENTRY_END.length();
+                currentValue.append(CLOSE_FEED, 0, CLOSE_FEED.length);
+                return true;
+            }
+        }
+
+        /**
+         * Advance to the next occurrence of first or of second, whichever comes first, appending the bytes passed over
+         * to record if it is not null. When searching for a feed, stop once the search passes the end of the split.
+         *
+         * @param second The other pattern, or null to search only for first
+         * @return 0 if first was found, 1 if second was, and -1 if neither was before the end of the input, with
+         *         blockPos at the start of the match
+         */
+        private int find(BytePattern first, BytePattern second, Text record) throws IOException {
+            int longest = Math.max(first.length(), second == null ? 0 : second.length());
+            while (true) {
+                int firstAt = first.indexIn(block, blockPos, blockLength);
+                int secondAt = second == null ? -1 : second.indexIn(block, blockPos, blockLength);
+                int found = firstAt >= 0 && (secondAt < 0 || firstAt < secondAt) ? 0 : (secondAt >= 0 ? 1 : -1);
+                if (found >= 0) {
+                    int at = found == 0 ? firstAt : secondAt;
+                    if (record != null) {
+                        record.append(block, blockPos, at - blockPos);
+                    }
+                    blockPos = at;
+                    return found;
+                }
+
+                // keep the tail of the block as it may hold the first bytes of a match
+                int consumed = Math.max(blockPos, blockLength - longest + 1);
+                if (record != null) {
+                    record.append(block, blockPos, consumed - blockPos);
+                }
+                blockPos = consumed;
+                if (!inFeed && blockStart + blockPos >= end) {
+                    return -1;
+                }
+                if (!fill()) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+}
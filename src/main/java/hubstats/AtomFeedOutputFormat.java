@@ -0,0 +1,131 @@
+package hubstats;
+
+import com.google.common.base.Charsets;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes Atom entries, each the bytes of an <code>&lt;entry&gt;</code> element, as a log of timeline feeds that can be
+ * read by FeedInputFormat as a captured timeline is.
+ * <p/>
+ * Entries are written in the order they are given, a fixed number to a feed. Each feed has the header of the GitHub
+ * timeline, with the updated time of its last entry as the updated time of the feed.
+ */
+public class AtomFeedOutputFormat extends FileOutputFormat<LongWritable, Text> {
+
+    /**
+     * The number of entries to write in each feed (default 30, as in the timeline).
+     */
+    public static final String ENTRIES_KEY = "hubstats.output.feed.entries";
+
+    static final int DEFAULT_ENTRIES = 30;
+
+    @Override
+    public RecordWriter<LongWritable, Text> getRecordWriter(TaskAttemptContext job)
+            throws IOException, InterruptedException {
+        Configuration conf = job.getConfiguration();
+        CompressionCodec codec = null;
+        String extension = "";
+        if (getCompressOutput(job)) {
+            codec = ReflectionUtils.newInstance(getOutputCompressorClass(job, GzipCodec.class), conf);
+            extension = codec.getDefaultExtension();
+        }
+        Path file = getDefaultWorkFile(job, extension);
+        FileSystem fs = file.getFileSystem(conf);
+        FSDataOutputStream out = fs.create(file, false);
+        int entries = conf.getInt(ENTRIES_KEY, DEFAULT_ENTRIES);
+        if (codec == null) {
+            return new AtomFeedRecordWriter(out, entries);
+        }
+        return new AtomFeedRecordWriter(new DataOutputStream(codec.createOutputStream(out)), entries);
+    }
+
+    /**
+     * Buffers the entries of each feed so that the feed header can be written with the updated time of the last one.
+     */
+    public static class AtomFeedRecordWriter extends RecordWriter<LongWritable, Text> {
+
+        private static final byte[] FEED_START = ("<feed xmlns=\"http://www.w3.org/2005/Atom\" "
+                + "xmlns:media=\"http://search.yahoo.com/mrss/\" xml:lang=\"en-US\">\n"
+                + "  <id>tag:github.com,2008:/timeline</id>\n"
+                + "  <title>GitHub Public Timeline Feed</title>\n"
+                + "  <updated>").getBytes(Charsets.UTF_8);
+        private static final byte[] UPDATED_END = "</updated>\n".getBytes(Charsets.UTF_8);
+        private static final byte[] FEED_END = "</feed>\n".getBytes(Charsets.UTF_8);
+        private static final byte[] INDENT = "  ".getBytes(Charsets.UTF_8);
+        private static final BytePattern UPDATED_START_TAG = new BytePattern("<updated>");
+        private static final BytePattern UPDATED_END_TAG = new BytePattern("</updated>");
+
+        private final DataOutputStream out;
+        private final int entriesPerFeed;
+
+        private final DataOutputBuffer entries = new DataOutputBuffer();
+        private final DataOutputBuffer updated = new DataOutputBuffer();
+        private int count;
+
+        public AtomFeedRecordWriter(DataOutputStream out, int entriesPerFeed) {
+            if (entriesPerFeed < 1) {
+                throw new IllegalArgumentException(String.format("Invalid entries per feed %s", entriesPerFeed));
+            }
+            this.out = out;
+            this.entriesPerFeed = entriesPerFeed;
+        }
+
+        @Override
+        public void write(LongWritable key, Text entry) throws IOException {
+            byte[] bytes = entry.getBytes();
+            int length = entry.getLength();
+            entries.write(INDENT);
+            entries.write(bytes, 0, length);
+            entries.write('\n');
+
+            int start = UPDATED_START_TAG.indexIn(bytes, 0, length);
+            int end = start < 0 ? -1 : UPDATED_END_TAG.indexIn(bytes, start, length);
+            if (end >= 0) {
+                start += UPDATED_START_TAG.length();
+                updated.reset();
+                updated.write(bytes, start, end - start);
+            }
+
+            if (++count == entriesPerFeed) {
+                writeFeed();
+            }
+        }
+
+        private void writeFeed() throws IOException {
+            out.write(FEED_START);
+            out.write(updated.getData(), 0, updated.getLength());
+            out.write(UPDATED_END);
+            out.write(entries.getData(), 0, entries.getLength());
+            out.write(FEED_END);
+            entries.reset();
+            count = 0;
+        }
+
+        @Override
+        public void close(TaskAttemptContext context) throws IOException {
+            try {
+                if (count > 0) {
+                    writeFeed();
+                }
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+}
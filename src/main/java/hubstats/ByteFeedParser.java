@@ -0,0 +1,260 @@
+package hubstats;
+
+import com.google.common.base.Charsets;
+import org.apache.hadoop.io.Text;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Parses feeds by scanning their UTF-8 bytes for the id, published and title elements of each entry. Everything else,
+ * including the bulk of each entry in its content and thumbnail, is skipped over without being decoded.
+ * <p/>
+ * This relies on the timeline writing these elements without attributes, as GitHub does. StaxFeedParser makes no such
+ * assumption and can be used to check the output of this parser.
+ * <p/>
+ * A feed in a buffer, such as a slice of a log mapped by MappedFeedReader, is scanned in place. Only the text of the
+ * three elements is copied out of it, into a small array that is reused from entry to entry.
+ */
+final class ByteFeedParser extends FeedParser {
+
+    private static final BytePattern ENTRY_END = new BytePattern("</entry>");
+    private static final BytePattern PUBLISHED_START = new BytePattern("<published>");
+    private static final BytePattern PUBLISHED_END = new BytePattern("</published>");
+    private static final BytePattern TITLE_START = new BytePattern("<title>");
+    private static final BytePattern TITLE_END = new BytePattern("</title>");
+
+    // the bounds of the element text found by the last call to findText
+    private int textStart;
+    private int textEnd;
+
+    // the text of an element copied out of a buffer
+    private byte[] text = new byte[256];
+
+    private final Event.Builder builder = new Event.Builder();
+    private final Timestamps.Parser timestamps = new Timestamps.Parser();
+
+    ByteFeedParser(TitleExtractor titles) {
+        super(titles);
+    }
+
+    @Override
+    void parseEntries(Text feed, Handler handler) throws IOException, InterruptedException {
+        byte[] bytes = feed.getBytes();
+        int length = feed.getLength();
+
+        int position = 0;
+        while (true) {
+            int entryStart = ENTRY_START.indexIn(bytes, position, length);
+            if (entryStart < 0) {
+                return;
+            }
+            int entryEnd = ENTRY_END.indexIn(bytes, entryStart, length);
+            if (entryEnd < 0) {
+                return;
+            }
+
+            builder.reset();
+            if (findText(bytes, entryStart, entryEnd, ID_START, ID_END)) {
+                parseId(bytes, builder);
+                if (isBelowHighWaterMark(builder.getEventId())) {
+                    skipFrom(bytes, entryStart, length);
+                    return;
+                }
+            }
+            if (findText(bytes, entryStart, entryEnd, PUBLISHED_START, PUBLISHED_END)) {
+                parsePublished(bytes, builder);
+            }
+            if (findText(bytes, entryStart, entryEnd, TITLE_START, TITLE_END)) {
+                titles.extract(decode(bytes, textStart, textEnd), builder);
+            }
+            handler.event(builder);
+
+            position = entryEnd + ENTRY_END.length();
+        }
+    }
+
+    @Override
+    void parseEntries(ByteBuffer feed, int from, int to, Handler handler) throws IOException, InterruptedException {
+        int position = from;
+        while (true) {
+            int entryStart = ENTRY_START.indexIn(feed, position, to);
+            if (entryStart < 0) {
+                return;
+            }
+            int entryEnd = ENTRY_END.indexIn(feed, entryStart, to);
+            if (entryEnd < 0) {
+                return;
+            }
+
+            builder.reset();
+            if (findText(feed, entryStart, entryEnd, ID_START, ID_END)) {
+                parseId(copyText(feed), builder);
+                if (isBelowHighWaterMark(builder.getEventId())) {
+                    skipFrom(feed, entryStart, to);
+                    return;
+                }
+            }
+            if (findText(feed, entryStart, entryEnd, PUBLISHED_START, PUBLISHED_END)) {
+                parsePublished(copyText(feed), builder);
+            }
+            if (findText(feed, entryStart, entryEnd, TITLE_START, TITLE_END)) {
+                byte[] bytes = copyText(feed);
+                titles.extract(decode(bytes, textStart, textEnd), builder);
+            }
+            handler.event(builder);
+
+            position = entryEnd + ENTRY_END.length();
+        }
+    }
+
+    /**
+     * Locate the text of the first element between from and to, setting textStart and textEnd.
+     *
+     * @return False if there is no such element
+     */
+    private boolean findText(byte[] bytes, int from, int to, BytePattern start, BytePattern end) {
+        int elementStart = start.indexIn(bytes, from, to);
+        if (elementStart < 0) {
+            return false;
+        }
+        textStart = elementStart + start.length();
+        textEnd = end.indexIn(bytes, textStart, to);
+        return textEnd >= 0;
+    }
+
+    private boolean findText(ByteBuffer feed, int from, int to, BytePattern start, BytePattern end) {
+        int elementStart = start.indexIn(feed, from, to);
+        if (elementStart < 0) {
+            return false;
+        }
+        textStart = elementStart + start.length();
+        textEnd = end.indexIn(feed, textStart, to);
+        return textEnd >= 0;
+    }
+
+    /**
+     * Copy the element text found by the last call to findText out of the feed, setting textStart and textEnd to its
+     * bounds in the copy.
+     *
+     * @return The array holding the copy
+     */
+    private byte[] copyText(ByteBuffer feed) {
+        int length = textEnd - textStart;
+        if (length > text.length) {
+            text = new byte[Math.max(length, text.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            text[i] = feed.get(textStart + i);
+        }
+        textStart = 0;
+        textEnd = length;
+        return text;
+    }
+
+    private void parsePublished(byte[] bytes, Event.Builder builder) {
+        if (timestamps.parse(bytes, textStart, textEnd)) {
+            builder.at(timestamps.getEpochSeconds(), timestamps.getOffsetMinutes());
+        } else {
+            builder.at(decode(bytes, textStart, textEnd));
+        }
+    }
+
+    /**
+     * Set the event type and id from an entry id such as <code>tag:github.com,2008:PushEvent/1007541708</code>. Ids
+     * that are not in this form are ignored, as they are by HubStats.ID_PATTERN.
+     */
+    private void parseId(byte[] bytes, Event.Builder builder) {
+        int digits = idDigits(bytes, textStart, textEnd);
+        if (digits < 0) {
+            return;
+        }
+        int suffix = digits - EVENT_SUFFIX.length();
+        int name = suffix;
+        while (name > textStart && isLetter(bytes[name - 1])) {
+            name--;
+        }
+        if (name == suffix || name == textStart || bytes[name - 1] != ':') {
+            return;
+        }
+
+        EventType type = EventType.forName(bytes, name, suffix);
+        if (type == null) {
+            throw new IllegalArgumentException(
+                    String.format("Unknown event type %s", new String(bytes, name, suffix - name, Charsets.US_ASCII)));
+        }
+        builder.type(type);
+        builder.eventId(parseId(bytes, textStart, textEnd));
+    }
+
+    private static boolean isLetter(byte b) {
+        return (b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z');
+    }
+
+    /**
+     * @return The character of a numeric reference such as <code>#233</code> or <code>#xe9</code>, or -1 if the
+     *         reference is not numeric, is malformed or is not of a valid code point
+     */
+    private static int codePoint(String ref) {
+        boolean hex = ref.startsWith("#x");
+        int from = hex ? 2 : 1;
+        int radix = hex ? 16 : 10;
+        // seven digits in either radix are enough for the highest code point and cannot overflow an int
+        if (!ref.startsWith("#") || ref.length() == from || ref.length() - from > 7) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = from; i < ref.length(); i++) {
+            char c = ref.charAt(i);
+            int digit = c < 128 ? Character.digit(c, radix) : -1;
+            if (digit < 0) {
+                return -1;
+            }
+            value = value * radix + digit;
+        }
+        return value <= Character.MAX_CODE_POINT ? value : -1;
+    }
+
+    /**
+     * Decode element text, replacing any character and entity references. References that are not well formed are
+     * left as they are.
+     */
+    static String decode(byte[] bytes, int from, int to) {
+        String text = new String(bytes, from, to - from, Charsets.UTF_8);
+        int amp = text.indexOf('&');
+        if (amp < 0) {
+            return text;
+        }
+
+        StringBuilder buf = new StringBuilder(text.length());
+        int position = 0;
+        while (amp >= 0) {
+            int semi = text.indexOf(';', amp);
+            if (semi < 0) {
+                break;
+            }
+            buf.append(text, position, amp);
+            String ref = text.substring(amp + 1, semi);
+            if (ref.equals("amp")) {
+                buf.append('&');
+            } else if (ref.equals("lt")) {
+                buf.append('<');
+            } else if (ref.equals("gt")) {
+                buf.append('>');
+            } else if (ref.equals("quot")) {
+                buf.append('"');
+            } else if (ref.equals("apos")) {
+                buf.append('\'');
+            } else if (codePoint(ref) >= 0) {
+                buf.appendCodePoint(codePoint(ref));
+            } else {
+                buf.append(text, amp, semi + 1);
+            }
+            position = semi + 1;
+            amp = text.indexOf('&', position);
+        }
+        buf.append(text, position, text.length());
+        return buf.toString();
+    }
+
+}
@@ -0,0 +1,94 @@
+package hubstats;
+
+import com.google.common.base.Charsets;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A fixed byte sequence that can be located within a byte array or buffer without decoding it, using a
+ * Boyer-Moore-Horspool skip table.
+ */
+final class BytePattern {
+
+    private final byte[] pattern;
+    private final int[] skip = new int[256];
+
+    BytePattern(String pattern) {
+        this.pattern = pattern.getBytes(Charsets.UTF_8);
+        Arrays.fill(skip, this.pattern.length);
+        for (int i = 0; i < this.pattern.length - 1; i++) {
+            skip[this.pattern[i] & 0xff] = this.pattern.length - 1 - i;
+        }
+    }
+
+    /**
+     * Find the first occurrence of this pattern within data[from, to).
+     *
+     * @return The index of the start of the match, or -1 if there is none
+     */
+    int indexIn(byte[] data, int from, int to) {
+        int last = pattern.length - 1;
+        byte lastByte = pattern[last];
+        for (int i = from; i + last < to; i += skip[data[i + last] & 0xff]) {
+            if (data[i + last] == lastByte) {
+                int j = last - 1;
+                while (j >= 0 && data[i + j] == pattern[j]) {
+                    j--;
+                }
+                if (j < 0) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the first occurrence of this pattern within data[from, to), by absolute index so that the position and
+     * limit of the buffer are left as they are. This is for buffers that are not backed by an array, such as a mapped
+     * file.
+     *
+     * @return The index of the start of the match, or -1 if there is none
+     */
+    int indexIn(ByteBuffer data, int from, int to) {
+        int last = pattern.length - 1;
+        byte lastByte = pattern[last];
+        for (int i = from; i + last < to; i += skip[data.get(i + last) & 0xff]) {
+            if (data.get(i + last) == lastByte) {
+                int j = last - 1;
+                while (j >= 0 && data.get(i + j) == pattern[j]) {
+                    j--;
+                }
+                if (j < 0) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * If this pattern occurs in data at exactly the given offset.
+     */
+    boolean matchesAt(byte[] data, int offset, int to) {
+        if (offset + pattern.length > to) {
+            return false;
+        }
+        for (int i = 0; i < pattern.length; i++) {
+            if (data[offset + i] != pattern[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    byte[] getBytes() {
+        return pattern;
+    }
+
+    int length() {
+        return pattern.length;
+    }
+
+}
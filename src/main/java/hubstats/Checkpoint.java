@@ -0,0 +1,387 @@
+package hubstats;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.mahout.classifier.bayes.XmlInputFormat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How far an incremental import has read each log, and the highest event id it has seen in each.
+ * <p/>
+ * The checkpoint is kept as <code>_checkpoint</code> in the output directory, alongside a <code>delta-NNNNN</code>
+ * directory of the output of each run. It is a text file with a line for each log holding the offset it has been
+ * read to, the highest event id read from it, a hash of the bytes before the offset and its path, separated by tabs.
+ * Each offset is the end of the last complete feed in the log, so that a feed still being written when a run starts
+ * is read in full by the next run. Each log has its own highest id, as a log added later, such as a backfilled
+ * capture, may hold only ids below those already read from the others. A log that is shorter than its offset, or no
+ * longer has the same bytes before it, has been replaced since, and is read from the start.
+ * <p/>
+ * Logs compressed with a codec known to CompressionCodecFactory cannot be read from an offset, so are read all or
+ * nothing: the offset of such a log is either 0 or its length. A compressed log should be complete before it is added
+ * to the input, as it is read once and then not again unless its length changes.
+ * <p/>
+ * A run writes the checkpoint it reads up to as <code>_checkpoint.pending</code>, and commits it once its delta is
+ * complete by moving the old checkpoint aside to <code>_checkpoint.previous</code> before moving the pending one into
+ * place. A run stopped between the two finds no checkpoint, and reads the one set aside instead.
+ */
+final class Checkpoint {
+
+    static final String NAME = "_checkpoint";
+    static final String PENDING_NAME = "_checkpoint.pending";
+    static final String PREVIOUS_SUFFIX = ".previous";
+    static final String DELTA_PREFIX = "delta-";
+
+    private static final BytePattern FEED_START = new BytePattern("<feed");
+    private static final BytePattern FEED_END = new BytePattern("</feed>");
+
+    // how much of the end of a log to read at first when looking for its last complete feed, and at most
+    private static final int TAIL_WINDOW = 256 * 1024;
+    private static final int MAX_TAIL_WINDOW = 1 << 30;
+
+    // how much of a log before its offset is hashed to tell if it has been replaced
+    private static final int HASHED_BYTES = 1024;
+
+    private final Map<String, Long> offsets;
+    private final Map<String, Long> maxEventIds;
+    private final Map<String, Long> hashes;
+
+    /**
+     * @param offsets     The offset each log has been read to, by path
+     * @param maxEventIds The highest event id read from each log, by path
+     * @param hashes      The hash of the bytes before the offset of each log, by path. A log without one is only
+     *                    taken to have been replaced if it is shorter than its offset.
+     */
+    Checkpoint(Map<String, Long> offsets, Map<String, Long> maxEventIds, Map<String, Long> hashes) {
+        this.offsets = Collections.unmodifiableMap(offsets);
+        this.maxEventIds = Collections.unmodifiableMap(maxEventIds);
+        this.hashes = Collections.unmodifiableMap(hashes);
+    }
+
+    /**
+     * @return The highest event id in the log up to its offset, or 0 if it has not been read
+     */
+    long getMaxEventId(Path log) {
+        Long maxEventId = maxEventIds.get(log.toString());
+        return maxEventId == null ? 0L : maxEventId;
+    }
+
+    /**
+     * @return The offset the log has been read to, or 0 if it has not been read
+     */
+    long getOffset(Path log) {
+        Long offset = offsets.get(log.toString());
+        return offset == null ? 0L : offset;
+    }
+
+    /**
+     * @return The offset to read the log from, or 0 if it has not been read or has been replaced since
+     * @throws IOException If there is an exception reading the log
+     */
+    long getOffset(FileSystem fs, FileStatus log) throws IOException {
+        return isReplaced(fs, log) ? 0L : getOffset(log.getPath());
+    }
+
+    /**
+     * @return The highest event id read from the log, or 0 if it has not been read or has been replaced since
+     * @throws IOException If there is an exception reading the log
+     */
+    long getMaxEventId(FileSystem fs, FileStatus log) throws IOException {
+        return isReplaced(fs, log) ? 0L : getMaxEventId(log.getPath());
+    }
+
+    /**
+     * @return If the log is shorter than the offset it has been read to, or the bytes before the offset are not those
+     *         that were read, so that it has been replaced, for example by log rotation or by Compactor, and may not
+     *         hold the ids of the one read before
+     * @throws IOException If there is an exception reading the log
+     */
+    boolean isReplaced(FileSystem fs, FileStatus log) throws IOException {
+        long offset = getOffset(log.getPath());
+        if (offset > log.getLen()) {
+            return true;
+        }
+        Long hash = hashes.get(log.getPath().toString());
+        return hash != null && hash != hash(fs, log.getPath(), offset);
+    }
+
+    /**
+     * @return A hash of the HASHED_BYTES bytes of the log before offset, or of all of them if there are fewer
+     */
+    private static long hash(FileSystem fs, Path log, long offset) throws IOException {
+        byte[] bytes = new byte[(int) Math.min(offset, HASHED_BYTES)];
+        if (bytes.length > 0) {
+            FSDataInputStream in = fs.open(log);
+            try {
+                in.readFully(offset - bytes.length, bytes);
+            } finally {
+                in.close();
+            }
+        }
+        return FeedFingerprints.hash(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @return If the log is in this checkpoint
+     */
+    boolean contains(Path log) {
+        return offsets.containsKey(log.toString());
+    }
+
+    /**
+     * Plan the next run: read each log from the offset in this checkpoint to the end of its last complete feed. A log
+     * that has been replaced is read from the start. A compressed log is read whole unless it has been read already.
+     *
+     * @param fs   The file system holding the logs
+     * @param logs The logs to read
+     * @return The checkpoint to write once the logs have been read
+     * @throws IOException If there is an exception reading the logs
+     */
+    Checkpoint advance(FileSystem fs, List<FileStatus> logs) throws IOException {
+        Map<String, Long> advanced = Maps.newTreeMap();
+        Map<String, Long> maxIds = Maps.newTreeMap();
+        Map<String, Long> advancedHashes = Maps.newTreeMap();
+        CompressionCodecFactory codecs = new CompressionCodecFactory(fs.getConf());
+        for (FileStatus log : logs) {
+            String path = log.getPath().toString();
+            boolean replaced = isReplaced(fs, log);
+            long from = replaced ? 0L : getOffset(log.getPath());
+            long max = replaced ? 0L : getMaxEventId(log.getPath());
+            if (codecs.getCodec(log.getPath()) != null) {
+                if (from == log.getLen()) {
+                    advanced.put(path, from);
+                } else {
+                    long logMax = maxEventId(fs, log, 0L, log.getLen(), false);
+                    advanced.put(path, logMax < 0 ? 0L : log.getLen());
+                    max = Math.max(0L, logMax);
+                }
+                maxIds.put(path, max);
+                advancedHashes.put(path, hash(fs, log.getPath(), advanced.get(path)));
+                continue;
+            }
+            FeedIndex.Feed last = lastFeed(fs, log.getPath(), from, log.getLen());
+            if (last == null) {
+                advanced.put(path, from);
+            } else {
+                advanced.put(path, last.end());
+                // the last feed may be an empty poll or repeat an older one, so take the highest id of every feed
+                max = Math.max(max, maxEventId(fs, log, from, last.end(), true));
+            }
+            maxIds.put(path, max);
+            advancedHashes.put(path, hash(fs, log.getPath(), advanced.get(path)));
+        }
+        return new Checkpoint(advanced, maxIds, advancedHashes);
+    }
+
+    /**
+     * Find the highest event id in the feeds starting between from and to. The ids of the feeds in the FeedIndex of the
+     * log are taken from it when indexed is true, and the rest of the feeds are read. A compressed log is decompressed
+     * and read whole.
+     *
+     * @return The highest event id, 0 if there are complete feeds but no event ids, or -1 if there is no complete feed
+     */
+    private static long maxEventId(FileSystem fs, FileStatus log, long from, long to, boolean indexed)
+            throws IOException {
+        long max = -1L;
+        FeedIndex index = indexed ? FeedIndex.read(fs, log.getPath()) : null;
+        // an index of a longer log must be of a different one
+        if (index != null && index.getLogLength() <= log.getLen()) {
+            List<FeedIndex.Feed> feeds = index.getFeeds();
+            for (int i = index.firstFeedFrom(from); i < feeds.size() && feeds.get(i).end() <= to; i++) {
+                max = Math.max(max, feeds.get(i).maxId);
+                from = feeds.get(i).end();
+            }
+        }
+        if (from >= to) {
+            return max;
+        }
+        XmlInputFormat.XmlRecordReader reader = new XmlInputFormat.XmlRecordReader(
+                new FileSplit(log.getPath(), from, to - from, null), FeedInputFormat.feedConfiguration(fs.getConf()));
+        try {
+            while (reader.nextKeyValue()) {
+                // in a compressed log the key is a position in the compressed stream, which only the offsets of the
+                // feed depend on
+                max = Math.max(max, FeedIndex.describe(reader.getCurrentKey().get(), reader.getCurrentValue()).maxId);
+            }
+            return max;
+        } catch (InterruptedException e) {
+            throw new IOException(e.toString());
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Find the last complete feed between from and to, reading backwards from to in growing windows.
+     *
+     * @return The last feed, or null if there is no complete feed after from
+     * @throws IOException If there is an exception reading the log, or no complete feed in the last MAX_TAIL_WINDOW
+     *                     bytes of a longer log
+     */
+    private static FeedIndex.Feed lastFeed(FileSystem fs, Path log, long from, long to) throws IOException {
+        FSDataInputStream in = fs.open(log);
+        try {
+            for (long window = TAIL_WINDOW; ; window *= 2) {
+                if (window > MAX_TAIL_WINDOW) {
+                    throw new IOException(String.format("No complete feed in the last %s bytes of %s",
+                            MAX_TAIL_WINDOW, log));
+                }
+                long start = Math.max(from, to - window);
+                byte[] bytes = new byte[(int) (to - start)];
+                in.seek(start);
+                in.readFully(bytes);
+
+                int feedEnd = lastIndexOf(FEED_END, bytes, 0, bytes.length);
+                int feedStart = feedEnd < 0 ? -1 : lastIndexOf(FEED_START, bytes, 0, feedEnd);
+                if (feedStart >= 0) {
+                    int end = feedEnd + FEED_END.length();
+                    Text feed = new Text();
+                    feed.set(bytes, feedStart, end - feedStart);
+                    return FeedIndex.describe(start + end, feed);
+                }
+                if (start == from) {
+                    return null;
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static int lastIndexOf(BytePattern pattern, byte[] bytes, int from, int to) {
+        int last = -1;
+        for (int i = pattern.indexIn(bytes, from, to); i >= 0; i = pattern.indexIn(bytes, i + 1, to)) {
+            last = i;
+        }
+        return last;
+    }
+
+    static Path path(Path output) {
+        return new Path(output, NAME);
+    }
+
+    static Path pendingPath(Path output) {
+        return new Path(output, PENDING_NAME);
+    }
+
+    /**
+     * @return Where the checkpoint at path is moved aside to while another replaces it
+     */
+    static Path previousPath(Path path) {
+        return new Path(path.getParent(), path.getName() + PREVIOUS_SUFFIX);
+    }
+
+    /**
+     * Replace the checkpoint at path with the one at pending, moving the old one aside first so that there is always
+     * one for read to find.
+     *
+     * @throws IOException If there is an exception moving the checkpoints
+     */
+    static void commit(FileSystem fs, Path pending, Path path) throws IOException {
+        Path previous = previousPath(path);
+        if (fs.exists(path)) {
+            fs.delete(previous, false);
+            if (!fs.rename(path, previous)) {
+                throw new IOException(String.format("Could not move %s to %s", path, previous));
+            }
+        }
+        if (!fs.rename(pending, path)) {
+            throw new IOException(String.format("Could not move %s to %s", pending, path));
+        }
+        fs.delete(previous, false);
+    }
+
+    /**
+     * @return The first delta directory in the output that does not exist yet
+     */
+    static Path nextDelta(FileSystem fs, Path output) throws IOException {
+        for (int i = 0; ; i++) {
+            Path delta = new Path(output, String.format("%s%05d", DELTA_PREFIX, i));
+            if (!fs.exists(delta)) {
+                return delta;
+            }
+        }
+    }
+
+    /**
+     * @return The checkpoint at path, the one commit moved aside if a run stopped before replacing it, or an empty
+     *         checkpoint if there is neither
+     * @throws IOException If there is an exception reading the checkpoint
+     */
+    static Checkpoint read(FileSystem fs, Path path) throws IOException {
+        Map<String, Long> offsets = Maps.newTreeMap();
+        Map<String, Long> maxEventIds = Maps.newTreeMap();
+        Map<String, Long> hashes = Maps.newTreeMap();
+        if (!fs.exists(path)) {
+            Path previous = previousPath(path);
+            if (fs.exists(previous)) {
+                return read(fs, previous);
+            }
+            return new Checkpoint(offsets, maxEventIds, hashes);
+        }
+        FSDataInputStream in = fs.open(path);
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, Charsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 4);
+                if (fields.length < 4) {
+                    throw new IOException(String.format("Invalid line in checkpoint %s: %s", path, line));
+                }
+                offsets.put(fields[3], Long.parseLong(fields[0]));
+                maxEventIds.put(fields[3], Long.parseLong(fields[1]));
+                if (fields[2].length() > 0) {
+                    hashes.put(fields[3], Long.parseLong(fields[2]));
+                }
+            }
+            return new Checkpoint(offsets, maxEventIds, hashes);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Write this checkpoint to path, replacing any there already.
+     *
+     * @throws IOException If there is an exception writing the checkpoint
+     */
+    void write(FileSystem fs, Path path) throws IOException {
+        FSDataOutputStream out = fs.create(path, true);
+        Writer writer = new OutputStreamWriter(out, Charsets.UTF_8);
+        try {
+            for (Map.Entry<String, Long> offset : offsets.entrySet()) {
+                writer.write(Long.toString(offset.getValue()));
+                writer.write('\t');
+                Long maxEventId = maxEventIds.get(offset.getKey());
+                writer.write(Long.toString(maxEventId == null ? 0L : maxEventId));
+                writer.write('\t');
+                // an empty hash for a log without one
+                Long hash = hashes.get(offset.getKey());
+                if (hash != null) {
+                    writer.write(Long.toString(hash));
+                }
+                writer.write('\t');
+                writer.write(offset.getKey());
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+package hubstats;
+
+import com.google.common.base.Splitter;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Reads the files written by ColumnarEventOutputFormat as event ids and EventRows, decoding only the columns asked for
+ * and skipping over the rest. Each file is read whole by one mapper.
+ */
+public class ColumnarEventInputFormat extends FileInputFormat<LongWritable, EventRow> {
+
+    /**
+     * The columns to read as a comma-separated list of EventColumn names, for example "event_type,at,repo_name". All
+     * columns are read by default. The event id is always read.
+     */
+    public static final String COLUMNS_KEY = "hubstats.columns";
+
+    @Override
+    protected boolean isSplitable(JobContext context, Path file) {
+        return false;
+    }
+
+    @Override
+    public RecordReader<LongWritable, EventRow> createRecordReader(InputSplit split, TaskAttemptContext context) {
+        return new ColumnarRecordReader();
+    }
+
+    static Set<EventColumn> columns(Configuration conf) {
+        String names = conf.get(COLUMNS_KEY);
+        if (names == null) {
+            return EnumSet.allOf(EventColumn.class);
+        }
+        Set<EventColumn> columns = EnumSet.noneOf(EventColumn.class);
+        for (String name : Splitter.on(',').trimResults().omitEmptyStrings().split(names)) {
+            columns.add(EventColumn.valueOf(name.toUpperCase()));
+        }
+        return columns;
+    }
+
+    /**
+     * Reads a file a row group at a time, giving the rows of each in turn.
+     */
+    public static class ColumnarRecordReader extends RecordReader<LongWritable, EventRow> {
+
+        // grown to the size of the largest row group read
+        private static final int INITIAL_ROW_GROUP_SIZE = 1024;
+
+        private FSDataInputStream in;
+        private long length;
+        private Set<EventColumn> columns;
+        private RowGroup group;
+        private int row;
+        private boolean more = true;
+
+        private final LongWritable key = new LongWritable();
+        private final EventRow value = new EventRow();
+
+        @Override
+        public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
+            initialize((FileSplit) split, context.getConfiguration());
+        }
+
+        void initialize(FileSplit split, Configuration conf) throws IOException {
+            Path path = split.getPath();
+            in = path.getFileSystem(conf).open(path);
+            length = split.getLength();
+            columns = columns(conf);
+
+            byte[] magic = new byte[ColumnarEventOutputFormat.MAGIC.length];
+            in.readFully(magic);
+            int version = in.readByte();
+            if (!Arrays.equals(magic, ColumnarEventOutputFormat.MAGIC)
+                    || version != ColumnarEventOutputFormat.VERSION) {
+                in.close();
+                throw new IOException(String.format("%s is not a columnar event file of version %s",
+                        path, ColumnarEventOutputFormat.VERSION));
+            }
+            group = new RowGroup(INITIAL_ROW_GROUP_SIZE);
+            row = 0;
+        }
+
+        @Override
+        public boolean nextKeyValue() throws IOException {
+            while (more && row == group.size()) {
+                more = group.read(in, columns);
+                row = 0;
+            }
+            if (!more) {
+                return false;
+            }
+            value.set(group, row);
+            key.set(group.getEventId(row));
+            row++;
+            return true;
+        }
+
+        @Override
+        public LongWritable getCurrentKey() {
+            return key;
+        }
+
+        @Override
+        public EventRow getCurrentValue() {
+            return value;
+        }
+
+        @Override
+        public float getProgress() throws IOException {
+            return length == 0 ? 0.0f : Math.min(1.0f, in.getPos() / (float) length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+
+}
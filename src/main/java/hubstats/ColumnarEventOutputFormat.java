@@ -0,0 +1,91 @@
+package hubstats;
+
+import com.google.common.base.Charsets;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes events column by column, in row groups of a fixed number of events, so that a query that needs only some of
+ * the fields reads only those columns.
+ * <p/>
+ * A file starts with the bytes <code>HSCOL</code> and the version of the format as a byte. Then come the row groups,
+ * as RowGroup describes, and finally a variable-length int of zero. The EventStats of each file are written alongside
+ * it.
+ *
+ * @see ColumnarEventInputFormat
+ */
+public class ColumnarEventOutputFormat extends FileOutputFormat<LongWritable, EventWritable> {
+
+    /**
+     * The number of events in each row group (default 65536).
+     */
+    public static final String ROW_GROUP_KEY = "hubstats.columns.rowgroup";
+
+    static final int DEFAULT_ROW_GROUP_SIZE = 1 << 16;
+
+    static final byte[] MAGIC = "HSCOL".getBytes(Charsets.US_ASCII);
+
+    static final int VERSION = 1;
+
+    static final String EXTENSION = ".cols";
+
+    @Override
+    public RecordWriter<LongWritable, EventWritable> getRecordWriter(TaskAttemptContext context)
+            throws IOException, InterruptedException {
+        Configuration conf = context.getConfiguration();
+        Path file = getDefaultWorkFile(context, EXTENSION);
+        FileSystem fs = file.getFileSystem(conf);
+        return new StatsRecordWriter<EventWritable>(new ColumnarRecordWriter(fs.create(file, false),
+                conf.getInt(ROW_GROUP_KEY, DEFAULT_ROW_GROUP_SIZE)), fs, file);
+    }
+
+    /**
+     * Buffers events until a row group is full, then writes it.
+     */
+    public static class ColumnarRecordWriter extends RecordWriter<LongWritable, EventWritable> {
+
+        private final DataOutputStream out;
+        private final RowGroup group;
+
+        public ColumnarRecordWriter(DataOutputStream out, int rowGroupSize) throws IOException {
+            if (rowGroupSize < 1) {
+                throw new IllegalArgumentException(String.format("Invalid row group size %s", rowGroupSize));
+            }
+            this.out = out;
+            this.group = new RowGroup(rowGroupSize);
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+        }
+
+        @Override
+        public void write(LongWritable key, EventWritable value) throws IOException {
+            group.add(value.get());
+            if (group.isFull()) {
+                group.write(out);
+                group.clear();
+            }
+        }
+
+        @Override
+        public void close(TaskAttemptContext context) throws IOException {
+            try {
+                if (group.size() > 0) {
+                    group.write(out);
+                }
+                WritableUtils.writeVInt(out, 0);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+}
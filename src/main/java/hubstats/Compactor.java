@@ -0,0 +1,121 @@
+package hubstats;
+
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+import java.io.IOException;
+
+/**
+ * Rewrite timeline logs as an archive holding each entry once, in event id order.
+ * <p/>
+ * Every poll of the timeline repeats most of the entries of the poll before, so the captured logs are many times larger
+ * than the entries they hold. The archive is itself a log of Atom feeds, written by AtomFeedOutputFormat, so HubStats
+ * can be run over it as over the captured logs and gives the same output. A single reducer writes the archive, so that
+ * it is in id order throughout, unless HubStats.PARTITIONER_KEY is "range", when each reducer writes a range of ids
+ * and the part files in order are in id order.
+ * <p/>
+ * Run with:
+ * <pre>
+ *     $ hadoop jar hubstats.jar hubstats.Compactor input output
+ * </pre>
+ */
+public class Compactor extends Configured implements Tool {
+
+    /**
+     * Emit each entry of a feed keyed by its event id, dropping those seen recently. Entries without an event id in
+     * the form HubStats reads are keyed by 0, so that only the first is kept as HubStats would.
+     */
+    public static final class EntryMapper extends Mapper<LongWritable, Text, LongWritable, Text> {
+
+        private static final BytePattern ENTRY_END = new BytePattern("</entry>");
+
+        private final LongWritable id = new LongWritable();
+        private final Text entry = new Text();
+
+        private FeedFingerprints fingerprints;
+        private EventIdCache cache;
+        private Counter duplicates;
+        private Counter fingerprintHits;
+
+        @Override
+        protected void setup(Context context) {
+            FeedFingerprints.Mode fingerprint = FeedFingerprints.Mode.valueOf(context.getConfiguration().get(
+                    HubStats.FINGERPRINT_KEY, FeedFingerprints.Mode.HEADER.name()).toUpperCase());
+            fingerprints = fingerprint == FeedFingerprints.Mode.NONE ? null : new FeedFingerprints(fingerprint);
+            fingerprintHits = context.getCounter(HubStats.Counters.FINGERPRINT_HITS);
+            int cacheSize = context.getConfiguration().getInt(HubStats.DEDUP_CACHE_KEY,
+                    HubStats.DEFAULT_DEDUP_CACHE_SIZE);
+            cache = cacheSize > 0 ? new EventIdCache(cacheSize) : null;
+            duplicates = context.getCounter(HubStats.Counters.CACHED_DUPLICATES);
+        }
+
+        @Override
+        public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+            if (fingerprints != null && fingerprints.isRepeat(value)) {
+                fingerprintHits.increment(1);
+                return;
+            }
+            byte[] bytes = value.getBytes();
+            int length = value.getLength();
+            int position = 0;
+            while (true) {
+                int entryStart = FeedParser.ENTRY_START.indexIn(bytes, position, length);
+                int entryEnd = entryStart < 0 ? -1 : ENTRY_END.indexIn(bytes, entryStart, length);
+                if (entryEnd < 0) {
+                    return;
+                }
+                position = entryEnd + ENTRY_END.length();
+
+                long eventId = FeedParser.entryId(bytes, entryStart, entryEnd);
+                if (cache != null && eventId > 0 && !cache.add(eventId)) {
+                    duplicates.increment(1);
+                    continue;
+                }
+                id.set(eventId);
+                entry.set(bytes, entryStart, position - entryStart);
+                context.write(id, entry);
+            }
+        }
+    }
+
+    public final int run(String[] args) throws IOException, ClassNotFoundException, InterruptedException {
+        Job job = new Job(getConf());
+        job.setJarByClass(Compactor.class);
+        job.setJobName("Timeline Compactor");
+
+        job.setMapperClass(EntryMapper.class);
+        job.setCombinerClass(HubStats.EventCombiner.class);
+        job.setReducerClass(HubStats.EventReducer.class);
+        HubStats.Partitioning partitioning = HubStats.Partitioning.valueOf(job.getConfiguration().get(
+                HubStats.PARTITIONER_KEY, HubStats.Partitioning.HASH.name()).toUpperCase());
+        if (partitioning == HubStats.Partitioning.HASH) {
+            job.setNumReduceTasks(1);
+        }
+
+        job.setOutputKeyClass(LongWritable.class);
+        job.setOutputValueClass(Text.class);
+
+        job.setInputFormatClass(FeedInputFormat.class);
+        job.setOutputFormatClass(AtomFeedOutputFormat.class);
+
+        FileInputFormat.setInputPaths(job, new Path(args[0]));
+        FileOutputFormat.setOutputPath(job, new Path(args[1]));
+        partitioning.configure(job);
+
+        return job.waitForCompletion(true) ? 0 : 1;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(ToolRunner.run(new Compactor(), args));
+    }
+
+}
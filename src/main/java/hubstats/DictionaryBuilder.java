@@ -0,0 +1,122 @@
+package hubstats;
+
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+import java.io.IOException;
+
+/**
+ * Build a NameDictionary of the actors, repository accounts and repository names of the events in timeline logs, for
+ * EncodedEventOutputFormat to write events with.
+ * <p/>
+ * Actors and accounts share the dictionary with repository names, so that an account has the same id whether it is
+ * the actor or the owner of the repository. A single reducer writes the dictionary, so that the ids are dense and in
+ * order of name.
+ * <p/>
+ * Run with:
+ * <pre>
+ *     $ hadoop jar hubstats.jar hubstats.DictionaryBuilder input output
+ * </pre>
+ * and the dictionary is <code>output/part-r-00000.dict</code>.
+ */
+public class DictionaryBuilder extends Configured implements Tool {
+
+    /**
+     * Emit the names of each event as keys, for the reducer to write each once.
+     */
+    public static final class NameMapper extends HubStats.FeedMapper<Text, NullWritable> {
+
+        private final Event event = new Event();
+        private final Text name = new Text();
+
+        @Override
+        protected void write(Event.Builder builder, Context context) throws IOException, InterruptedException {
+            builder.buildInto(event);
+            write(event.getActor(), context);
+            write(event.getRepoAccount(), context);
+            write(event.getRepoName(), context);
+        }
+
+        private void write(String value, Context context) throws IOException, InterruptedException {
+            if (value != null && value.length() > 0) {
+                name.set(value);
+                context.write(name, NullWritable.get());
+            }
+        }
+    }
+
+    /**
+     * Write each name once. Also used as the combiner.
+     */
+    public static final class NameReducer extends Reducer<Text, NullWritable, Text, NullWritable> {
+
+        @Override
+        public void reduce(Text key, Iterable<NullWritable> values, Context context)
+                throws IOException, InterruptedException {
+            context.write(key, NullWritable.get());
+        }
+    }
+
+    /**
+     * Writes the names given to it, in order, as a NameDictionary.
+     */
+    public static class DictionaryOutputFormat extends FileOutputFormat<Text, NullWritable> {
+
+        @Override
+        public RecordWriter<Text, NullWritable> getRecordWriter(TaskAttemptContext job)
+                throws IOException, InterruptedException {
+            Path file = getDefaultWorkFile(job, NameDictionary.EXTENSION);
+            FileSystem fs = file.getFileSystem(job.getConfiguration());
+            final NameDictionary.Writer writer = new NameDictionary.Writer(fs.create(file, false));
+            return new RecordWriter<Text, NullWritable>() {
+                @Override
+                public void write(Text key, NullWritable value) throws IOException {
+                    writer.add(key.getBytes(), 0, key.getLength());
+                }
+
+                @Override
+                public void close(TaskAttemptContext context) throws IOException {
+                    writer.close();
+                }
+            };
+        }
+    }
+
+    public final int run(String[] args) throws IOException, ClassNotFoundException, InterruptedException {
+        Job job = new Job(getConf());
+        job.setJarByClass(DictionaryBuilder.class);
+        job.setJobName("Name Dictionary");
+
+        job.setMapperClass(NameMapper.class);
+        job.setCombinerClass(NameReducer.class);
+        job.setReducerClass(NameReducer.class);
+        job.setNumReduceTasks(1);
+
+        job.setOutputKeyClass(Text.class);
+        job.setOutputValueClass(NullWritable.class);
+
+        job.setInputFormatClass(FeedInputFormat.class);
+        job.setOutputFormatClass(DictionaryOutputFormat.class);
+
+        FileInputFormat.setInputPaths(job, new Path(args[0]));
+        FileOutputFormat.setOutputPath(job, new Path(args[1]));
+
+        return job.waitForCompletion(true) ? 0 : 1;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(ToolRunner.run(new DictionaryBuilder(), args));
+    }
+
+}
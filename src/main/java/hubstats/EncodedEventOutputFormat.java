@@ -0,0 +1,113 @@
+package hubstats;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a line for each event, as EventTextOutputFormat does, but with the actor, repository account and repository
+ * name replaced by their ids in a NameDictionary, so that later jobs can group on integers rather than strings.
+ * <p/>
+ * The dictionary is written by DictionaryBuilder and given by DICTIONARY_KEY. Names that are not in the dictionary,
+ * such as those of events newer than it, are written after LITERAL, so that a name of digits such as <code>2048</code>
+ * is not mistaken for an id: a field of digits is an id, and a field starting with LITERAL is a name. The EventStats of
+ * each file are of the events as they were, so that StatsPathFilter can still select files by repository name.
+ */
+public class EncodedEventOutputFormat extends FileOutputFormat<LongWritable, EventWritable> {
+
+    /**
+     * The path of the dictionary to encode names with, which is shipped to each task in the distributed cache.
+     */
+    public static final String DICTIONARY_KEY = "hubstats.dictionary";
+
+    /**
+     * Written before a name that is not in the dictionary.
+     */
+    static final byte LITERAL = '=';
+
+    /**
+     * Add the dictionary to the distributed cache of the job.
+     *
+     * @throws IOException If there is an exception finding the dictionary
+     */
+    static void addDictionary(Job job) throws IOException {
+        Configuration conf = job.getConfiguration();
+        String name = conf.get(DICTIONARY_KEY);
+        if (name == null) {
+            throw new IllegalArgumentException(String.format("%s must be set to the path of a dictionary",
+                    DICTIONARY_KEY));
+        }
+        Path path = new Path(name);
+        path = path.getFileSystem(conf).makeQualified(path);
+        conf.set(DICTIONARY_KEY, path.toString());
+        DistributedCache.addCacheFile(path.toUri(), conf);
+    }
+
+    @Override
+    public RecordWriter<LongWritable, EventWritable> getRecordWriter(TaskAttemptContext job)
+            throws IOException, InterruptedException {
+        Configuration conf = job.getConfiguration();
+        CompressionCodec codec = null;
+        String extension = "";
+        if (getCompressOutput(job)) {
+            codec = ReflectionUtils.newInstance(getOutputCompressorClass(job, GzipCodec.class), conf);
+            extension = codec.getDefaultExtension();
+        }
+        Path file = getDefaultWorkFile(job, extension);
+        FileSystem fs = file.getFileSystem(conf);
+        OutputStream out = fs.create(file, false);
+        if (codec != null) {
+            out = codec.createOutputStream(out);
+        }
+        return new StatsRecordWriter<EventWritable>(new EncodedRecordWriter(new DataOutputStream(out),
+                NameDictionary.read(conf), HubStats.timeFormat(conf)), fs, file);
+    }
+
+    static final class EncodedRecordWriter extends RecordWriter<LongWritable, EventWritable> {
+
+        private static final byte TAB = '\t';
+        private static final byte NEWLINE = '\n';
+
+        private final DataOutputStream out;
+        private final NameDictionary names;
+        private final Timestamps.Format timeFormat;
+
+        private final Text line = new Text();
+        private final byte[] digits = new byte[Event.LONG_LENGTH];
+
+        EncodedRecordWriter(DataOutputStream out, NameDictionary names, Timestamps.Format timeFormat) {
+            this.out = out;
+            this.names = names;
+            this.timeFormat = timeFormat;
+        }
+
+        @Override
+        public void write(LongWritable id, EventWritable value) throws IOException {
+            value.get().writeTo(line, timeFormat, names);
+            out.write(digits, 0, Event.formatLong(id.get(), digits, 0));
+            out.write(TAB);
+            out.write(line.getBytes(), 0, line.getLength());
+            out.write(NEWLINE);
+        }
+
+        @Override
+        public void close(TaskAttemptContext context) throws IOException {
+            out.close();
+        }
+    }
+
+}
@@ -1,24 +1,52 @@
 package hubstats;
 
+import com.google.common.base.Objects;
+import org.apache.hadoop.io.Text;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * A GitHub event. Use Event.Builder to construct a new instance.
+ * <p/>
+ * Events are immutable outside of this package. Within it, an Event created with the no-argument constructor may be
+ * repopulated with Builder.buildInto, so that a mapper can reuse a single instance for every entry.
  *
  * @see Event.Builder
  */
 public final class Event {
 
+    /**
+     * The UTC offset of an event whose time was not in the expected form, so is only known as it was given.
+     */
+    public static final int UNKNOWN_OFFSET = Timestamps.UNPARSEABLE;
+
+    // the most bytes formatLong writes, a sign and nineteen digits
+    static final int LONG_LENGTH = 20;
+
     private static final char SEP = '\t';
 
-    private final long eventId;
-    private final EventType eventType;
-    private final String at;
-    private final String actor;
+    // UTF-8 replaces an unpaired surrogate with this, as String.getBytes and Text.set do
+    private static final byte UNMAPPABLE = '?';
+
+    private long eventId;
+    private EventType eventType;
+    // the time of the event in seconds since the epoch and its UTC offset, or an offset of Timestamps.UNPARSEABLE and
+    // the time as it was given when it is not in the expected form
+    private long atSeconds;
+    private int atOffset = Timestamps.UNPARSEABLE;
+    private String at;
+    private String actor;
     private String repoAccount;
     private String repoName;
     private String branch;
-    private final String tag;
-    private final long alternateId;
-    private final String subType;
+    private String tag;
+    private long alternateId;
+    private String subType;
+
+    // the UTF-8 form of this event's line, kept between calls to writeTo and only allocated by the first
+    private byte[] line;
+    private int lineLength;
 
     /**
      * Builder to ease the creation of new instances of Event.
@@ -26,6 +54,8 @@ public final class Event {
     public static final class Builder {
         private long eventId;
         private EventType eventType;
+        private long atSeconds;
+        private int atOffset = Timestamps.UNPARSEABLE;
         private String at;
         private String actor;
         private String repoAccount;
@@ -42,8 +72,8 @@ public final class Event {
         public Builder(long eventId, EventType eventType, String at, String actor) {
             this.eventId = eventId;
             this.eventType = eventType;
-            this.at = at;
             this.actor = actor;
+            at(at);
         }
 
         Builder eventId(long eventId) {
@@ -60,8 +90,44 @@ public final class Event {
             return this.eventType;
         }
 
+        long getEventId() {
+            return this.eventId;
+        }
+
+        /**
+         * If the fields that are extracted from an entry title have the same values in both builders.
+         */
+        boolean hasSameTitleFields(Builder other) {
+            return Objects.equal(actor, other.actor) && Objects.equal(repoAccount, other.repoAccount)
+                    && Objects.equal(repoName, other.repoName) && Objects.equal(branch, other.branch)
+                    && Objects.equal(tag, other.tag) && alternateId == other.alternateId
+                    && Objects.equal(subtype, other.subtype);
+        }
+
+        /**
+         * Set the time of the event, parsing it if it is in the form of the timeline.
+         */
         Builder at(String at) {
-            this.at = at;
+            int offset = Timestamps.offsetMinutes(at);
+            if (offset == Timestamps.UNPARSEABLE) {
+                this.atOffset = Timestamps.UNPARSEABLE;
+                this.at = at;
+            } else {
+                at(Timestamps.epochSeconds(at, offset), offset);
+            }
+            return this;
+        }
+
+        /**
+         * Set the time of the event, already parsed.
+         *
+         * @param epochSeconds  The number of seconds since the epoch
+         * @param offsetMinutes The UTC offset of the time as given, which must not be Timestamps.UNPARSEABLE
+         */
+        Builder at(long epochSeconds, int offsetMinutes) {
+            this.atSeconds = epochSeconds;
+            this.atOffset = offsetMinutes;
+            this.at = null;
             return this;
         }
 
@@ -110,19 +176,65 @@ public final class Event {
             return new Event(this);
         }
 
+        /**
+         * Validate the values provided to this builder as build() does, but populate an existing Event rather than
+         * allocating a new one.
+         *
+         * @param event The event to overwrite
+         * @return The event
+         */
+        Event buildInto(Event event) {
+            event.set(this);
+            return event;
+        }
+
+        /**
+         * Clear all the values provided to this builder so that it can be used for another event.
+         *
+         * @return This builder
+         */
+        Builder reset() {
+            this.eventId = 0L;
+            this.eventType = null;
+            this.atSeconds = 0L;
+            this.atOffset = Timestamps.UNPARSEABLE;
+            this.at = null;
+            this.actor = null;
+            this.repoAccount = null;
+            this.repoName = null;
+            this.branch = null;
+            this.tag = null;
+            this.alternateId = 0L;
+            this.subtype = null;
+            return this;
+        }
+
+    }
+
+    /**
+     * Create an empty event, to be populated and repopulated by Builder.buildInto.
+     */
+    Event() {
+
     }
 
     private Event(Builder builder) {
+        set(builder);
+    }
+
+    /**
+     * Validate the values of the builder and replace the values of this event with them. Nothing is allocated unless
+     * the values are invalid or need trimming.
+     */
+    private void set(Builder builder) {
 
         if (builder.eventId <= 0) {
             throw new IllegalArgumentException(String.format("Event id must be greater than zero (was %s)",
                     builder.eventId));
         }
 
-        if (builder.actor == null || builder.actor.trim().equals("")) {
+        if (isBlank(builder.actor)) {
             throw new IllegalArgumentException("Actor account name cannot be null or empty");
-        } else {
-            this.actor = builder.actor.trim();
         }
 
         if (!builder.eventType.needsAccount()) {
@@ -131,7 +243,7 @@ public final class Event {
                         String.format("%s event must not have an associated repository account", builder.eventType));
             }
         } else {
-            if (builder.repoAccount == null || builder.repoAccount.trim().equals("")) {
+            if (isBlank(builder.repoAccount)) {
                 throw new IllegalArgumentException(String.format("%s event must have an associated repository account", builder.eventType));
             }
         }
@@ -142,13 +254,13 @@ public final class Event {
                         builder.eventType));
             }
         } else {
-            if (builder.repoName == null || builder.repoName.trim().equals("")) {
+            if (isBlank(builder.repoName)) {
                 throw new IllegalArgumentException(String.format("%s event must have an associated repository name", builder.eventType));
             }
         }
 
         if (builder.eventType == EventType.Push) {
-            if (builder.branch == null || builder.branch.trim().equals("")) {
+            if (isBlank(builder.branch)) {
                 throw new IllegalArgumentException("Push event must have an associated branch");
             }
         } else if ((builder.eventType == EventType.Create || builder.eventType == EventType.Delete) &&
@@ -163,23 +275,36 @@ public final class Event {
             throwMustSpecify(builder.eventType, "type");
         }
 
+        // trim() returns the same instance when there is no surrounding whitespace
         this.eventId = builder.eventId;
         this.eventType = builder.eventType;
+        this.atSeconds = builder.atSeconds;
+        this.atOffset = builder.atOffset;
         this.at = builder.at;
-        if (builder.repoAccount != null) {
-            this.repoAccount = builder.repoAccount.trim();
-        }
-        if (builder.repoName != null) {
-            this.repoName = builder.repoName.trim();
-        }
-        if (builder.branch != null) {
-            this.branch = builder.branch.trim();
-        }
+        this.actor = builder.actor.trim();
+        this.repoAccount = builder.repoAccount == null ? null : builder.repoAccount.trim();
+        this.repoName = builder.repoName == null ? null : builder.repoName.trim();
+        this.branch = builder.branch == null ? null : builder.branch.trim();
         this.tag = builder.tag;
         this.alternateId = builder.alternateId;
         this.subType = builder.subtype;
     }
 
+    /**
+     * If the value is null or has only whitespace, as String.trim() defines it.
+     */
+    private static boolean isBlank(String value) {
+        if (value == null) {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private void throwMustSpecify(EventType type, String field) {
         String str = "operation";
         if (field.equals("id")) {
@@ -188,22 +313,64 @@ public final class Event {
         throw new IllegalArgumentException(String.format("%s event must specify the %s of the %s", type, field, str));
     }
 
-    String getActor() {
+    public long getEventId() {
+        return this.eventId;
+    }
+
+    public EventType getEventType() {
+        return this.eventType;
+    }
+
+    /**
+     * @return The time of the event as it was given
+     */
+    public String getAt() {
+        return atOffset == Timestamps.UNPARSEABLE ? at : Timestamps.format(atSeconds, atOffset);
+    }
+
+    /**
+     * @return The time of the event in seconds since the epoch, if getAtOffset is not UNKNOWN_OFFSET
+     */
+    public long getAtSeconds() {
+        return this.atSeconds;
+    }
+
+    /**
+     * @return The UTC offset in minutes the time of the event was given in, or UNKNOWN_OFFSET if it was not in
+     *         the form of the timeline
+     */
+    public int getAtOffset() {
+        return this.atOffset;
+    }
+
+    public String getActor() {
         return this.actor;
     }
 
-    String getRepoAccount() {
+    public String getRepoAccount() {
         return this.repoAccount;
     }
 
-    String getRepoName() {
+    public String getRepoName() {
         return this.repoName;
     }
 
-    String getBranch() {
+    public String getBranch() {
         return this.branch;
     }
 
+    public String getTag() {
+        return this.tag;
+    }
+
+    public long getAlternateId() {
+        return this.alternateId;
+    }
+
+    public String getSubType() {
+        return this.subType;
+    }
+
     /**
      * Returns the string representation of this Event. The format is a single line, separated by tabs. The format of
      * each line may not be the same between versions of this class.
@@ -231,7 +398,7 @@ public final class Event {
         buf.append(SEP);
         buf.append(eventType);
         buf.append(SEP);
-        buf.append(at);
+        buf.append(getAt());
         buf.append(SEP);
         buf.append(actor);
         buf.append(SEP);
@@ -260,4 +427,179 @@ public final class Event {
         }
         return buf.toString();
     }
+
+    /**
+     * Write the same line as toString() as UTF-8, without creating a String or re-encoding one.
+     *
+     * @param out The output to write to
+     * @throws IOException If there is an exception writing to out
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        encode(Timestamps.Format.ISO, null);
+        out.write(line, 0, lineLength);
+    }
+
+    /**
+     * Replace the contents of text with the same line as toString(), without creating a String or re-encoding one.
+     *
+     * @param text The text to overwrite
+     */
+    public void writeTo(Text text) {
+        writeTo(text, Timestamps.Format.ISO);
+    }
+
+    /**
+     * Replace the contents of text with the same line as toString(), but with the time in the given form.
+     *
+     * @param text   The text to overwrite
+     * @param format The form to write the time in, when it is in the form of the timeline
+     */
+    void writeTo(Text text, Timestamps.Format format) {
+        writeTo(text, format, null);
+    }
+
+    /**
+     * Replace the contents of text with the same line as toString(), but with the time in the given form and the
+     * actor, repository account and repository name replaced by their ids in the dictionary. Names that are not in
+     * the dictionary are written after EncodedEventOutputFormat.LITERAL.
+     *
+     * @param text   The text to overwrite
+     * @param format The form to write the time in, when it is in the form of the timeline
+     * @param names  The dictionary of names, or null to write the names
+     */
+    void writeTo(Text text, Timestamps.Format format, NameDictionary names) {
+        encode(format, names);
+        text.set(line, 0, lineLength);
+    }
+
+    private void encode(Timestamps.Format format, NameDictionary names) {
+        lineLength = 0;
+        appendLong(eventId);
+        appendByte(SEP);
+        byte[] typeName = eventType.getNameBytes();
+        ensureCapacity(typeName.length);
+        System.arraycopy(typeName, 0, line, lineLength, typeName.length);
+        lineLength += typeName.length;
+        appendByte(SEP);
+        if (atOffset == Timestamps.UNPARSEABLE) {
+            // toString writes a missing time as null
+            appendString(String.valueOf(at));
+        } else if (format == Timestamps.Format.EPOCH) {
+            appendLong(atSeconds);
+        } else {
+            ensureCapacity(Timestamps.LENGTH);
+            Timestamps.format(atSeconds, atOffset, line, lineLength);
+            lineLength += Timestamps.LENGTH;
+        }
+        appendByte(SEP);
+        appendName(actor, names);
+        appendByte(SEP);
+        appendName(repoAccount, names);
+        appendByte(SEP);
+        appendName(repoName, names);
+        appendByte(SEP);
+        appendString(branch);
+        appendByte(SEP);
+        appendString(tag);
+        appendByte(SEP);
+        if (alternateId != 0L) {
+            appendLong(alternateId);
+        }
+        appendByte(SEP);
+        appendString(subType);
+    }
+
+    private void appendByte(int b) {
+        ensureCapacity(1);
+        line[lineLength++] = (byte) b;
+    }
+
+    private void appendLong(long value) {
+        ensureCapacity(LONG_LENGTH);
+        lineLength = formatLong(value, line, lineLength);
+    }
+
+    /**
+     * Write the decimal digits of value into bytes at offset, which must leave room for {@link #LONG_LENGTH} bytes.
+     *
+     * @return the offset just past the last digit
+     */
+    static int formatLong(long value, byte[] bytes, int offset) {
+        if (value < 0) {
+            bytes[offset++] = '-';
+        }
+        // work with the negated magnitude, which holds Long.MIN_VALUE too
+        long rest = value < 0 ? value : -value;
+        int end = offset + 1;
+        for (long shifted = rest / 10; shifted != 0; shifted /= 10) {
+            end++;
+        }
+        for (int i = end - 1; i >= offset; i--) {
+            bytes[i] = (byte) ('0' - rest % 10);
+            rest /= 10;
+        }
+        return end;
+    }
+
+    /**
+     * Append the UTF-8 encoding of value, if it is not null.
+     */
+    private void appendString(String value) {
+        if (value == null) {
+            return;
+        }
+        // at most three bytes per char: a surrogate pair is two chars and encodes to four bytes
+        ensureCapacity(value.length() * 3);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                line[lineLength++] = (byte) c;
+            } else if (c < 0x800) {
+                line[lineLength++] = (byte) (0xc0 | (c >> 6));
+                line[lineLength++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                line[lineLength++] = (byte) (0xf0 | (codePoint >> 18));
+                line[lineLength++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                line[lineLength++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                line[lineLength++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c)) {
+                line[lineLength++] = UNMAPPABLE;
+            } else {
+                line[lineLength++] = (byte) (0xe0 | (c >> 12));
+                line[lineLength++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                line[lineLength++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+    }
+
+    /**
+     * Append the id of value in the dictionary, or the UTF-8 encoding of value after EncodedEventOutputFormat.LITERAL
+     * if it is not in the dictionary, so that a name of digits is not read as an id.
+     */
+    private void appendName(String value, NameDictionary names) {
+        if (names == null || value == null) {
+            appendString(value);
+            return;
+        }
+        int start = lineLength;
+        appendByte(EncodedEventOutputFormat.LITERAL);
+        appendString(value);
+        int id = names.lookup(line, start + 1, lineLength);
+        if (id >= 0) {
+            lineLength = start;
+            appendLong(id);
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        if (line == null) {
+            line = new byte[Math.max(256, extra)];
+        } else if (lineLength + extra > line.length) {
+            byte[] larger = new byte[Math.max(line.length * 2, lineLength + extra)];
+            System.arraycopy(line, 0, larger, 0, lineLength);
+            line = larger;
+        }
+    }
 }
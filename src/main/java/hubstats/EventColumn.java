@@ -0,0 +1,26 @@
+package hubstats;
+
+/**
+ * The fields of an Event as columns of the columnar event store, in the order they are stored in each row group.
+ *
+ * @see RowGroup
+ */
+public enum EventColumn {
+    EVENT_ID,
+    EVENT_TYPE,
+    AT,
+    ACTOR,
+    REPO_ACCOUNT,
+    REPO_NAME,
+    BRANCH,
+    TAG,
+    ALTERNATE_ID,
+    SUBTYPE;
+
+    /**
+     * If the column holds strings, which are dictionary encoded.
+     */
+    boolean isString() {
+        return this != EVENT_ID && this != EVENT_TYPE && this != AT && this != ALTERNATE_ID;
+    }
+}
@@ -0,0 +1,44 @@
+package hubstats;
+
+/**
+ * The EventExtractor for each EventType, held in a table indexed by the ordinal of the type.
+ * <p/>
+ * Each instance has its own extractors, which reuse their Matchers from one call to the next. An instance must
+ * therefore only be used by a single thread; each mapper creates its own.
+ */
+final class EventExtractors {
+
+    private final EventExtractor[] byOrdinal = new EventExtractor[EventType.values().length];
+
+    EventExtractors() {
+        EventExtractor[] extractors = {
+                new HubStats.IssueExtractor(),
+                new HubStats.PushExtractor(),
+                new HubStats.CreateExtractor(),
+                new HubStats.WatchExtractor(),
+                new HubStats.MemberExtractor(),
+                new HubStats.ForkExtractor(),
+                new HubStats.ForkApplyExtractor(),
+                new HubStats.PublicExtractor(),
+                new HubStats.GollumExtractor(),
+                new HubStats.DeleteExtractor(),
+                new HubStats.DownloadExtractor(),
+                new HubStats.FollowExtractor(),
+                new HubStats.GistExtractor(),
+                new HubStats.PullRequestExtractor(),
+                new HubStats.CommitCommentExtractor()
+        };
+        for (EventExtractor e : extractors) {
+            byOrdinal[e.getEventType().ordinal()] = e;
+        }
+    }
+
+    /**
+     * @param type An event type
+     * @return The extractor for titles of events of that type
+     */
+    EventExtractor get(EventType type) {
+        return byOrdinal[type.ordinal()];
+    }
+
+}
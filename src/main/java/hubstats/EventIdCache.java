@@ -0,0 +1,45 @@
+package hubstats;
+
+/**
+ * A bounded set of recently seen event ids, used to drop duplicates in the mapper before they are spilled.
+ * <p/>
+ * The cache is direct-mapped on the low bits of the id, so an id is forgotten as soon as another id with the same low
+ * bits is added. Event ids are allocated in sequence, so every id within a window the size of the cache is remembered,
+ * which is enough to catch the overlap between consecutive polls of the timeline.
+ */
+final class EventIdCache {
+
+    private final long[] ids;
+    private final int mask;
+
+    /**
+     * @param size The number of ids to remember, rounded up to a power of two
+     */
+    EventIdCache(int size) {
+        if (size <= 0 || size > 1 << 30) {
+            throw new IllegalArgumentException(String.format("Cache size must be between 1 and 2^30 (was %s)", size));
+        }
+        int capacity = Integer.highestOneBit(size);
+        if (capacity < size) {
+            capacity <<= 1;
+        }
+        this.ids = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Add an id to the cache. Ids must be greater than zero, as event ids are.
+     *
+     * @param id The event id
+     * @return False if the id is already in the cache
+     */
+    boolean add(long id) {
+        int slot = (int) id & mask;
+        if (ids[slot] == id) {
+            return false;
+        }
+        ids[slot] = id;
+        return true;
+    }
+
+}
@@ -0,0 +1,71 @@
+package hubstats;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Longs;
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.Partitioner;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Partitions events by ranges of event id, so that each reducer writes a contiguous range and the part files in order
+ * hold the events in order. Keys are either event ids or EventWritables.
+ * <p/>
+ * The ranges are set by the cut points in the configuration, which EventIdSampler chooses from the input: reducer 0
+ * takes ids below the first cut point, reducer 1 the ids from the first up to the second, and so on, with the last
+ * reducer taking all ids from the last cut point up.
+ *
+ * @param <K> The key type, LongWritable or EventWritable
+ * @param <V> The value type
+ */
+public class EventIdPartitioner<K, V> extends Partitioner<K, V> implements Configurable {
+
+    /**
+     * The cut points between the id ranges, as increasing comma-separated ids.
+     */
+    public static final String CUTS_KEY = "hubstats.partitioner.cuts";
+
+    private Configuration conf;
+    private long[] cuts;
+
+    public void setConf(Configuration conf) {
+        this.conf = conf;
+        cuts = getCuts(conf);
+    }
+
+    public Configuration getConf() {
+        return conf;
+    }
+
+    @Override
+    public int getPartition(K key, V value, int numPartitions) {
+        long id = key instanceof EventWritable ? ((EventWritable) key).get().getEventId() : ((LongWritable) key).get();
+        int i = Arrays.binarySearch(cuts, id);
+        int partition = i >= 0 ? i + 1 : -i - 1;
+        return Math.min(partition, numPartitions - 1);
+    }
+
+    static void setCuts(Configuration conf, long[] cuts) {
+        conf.set(CUTS_KEY, Longs.join(",", cuts));
+    }
+
+    static long[] getCuts(Configuration conf) {
+        List<Long> cuts = Lists.newArrayList();
+        for (String cut : Splitter.on(',').trimResults().omitEmptyStrings().split(conf.get(CUTS_KEY, ""))) {
+            cuts.add(Long.parseLong(cut));
+        }
+        long[] sorted = Longs.toArray(cuts);
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] <= sorted[i - 1]) {
+                throw new IllegalArgumentException(String.format("%s must be increasing (was %s)",
+                        CUTS_KEY, conf.get(CUTS_KEY)));
+            }
+        }
+        return sorted;
+    }
+
+}
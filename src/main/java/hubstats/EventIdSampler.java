@@ -0,0 +1,131 @@
+package hubstats;
+
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Longs;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.mahout.classifier.bayes.XmlInputFormat;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Choose the cut points of EventIdPartitioner from a sample of the event ids in the splits of a job.
+ * <p/>
+ * For a log with a FeedIndex, the lowest and highest id of each feed in a split are taken from the index without
+ * reading the log. Otherwise the ids of the entries of the first few feeds of each split are read. Event ids increase
+ * with time and the timeline is polled steadily, so either gives ids spread as the events are, and the cut points are
+ * the ids that divide the sample into equal parts.
+ */
+final class EventIdSampler {
+
+    /**
+     * The number of feeds read from the start of each split of a log without an index (default 4).
+     */
+    static final String FEEDS_KEY = "hubstats.sampler.feeds";
+
+    static final int DEFAULT_FEEDS = 4;
+
+    private EventIdSampler() {
+
+    }
+
+    /**
+     * Sample the splits of the job and set the cut points for its number of reducers.
+     *
+     * @throws IOException If there is an exception reading the input
+     */
+    static void configure(Job job, FeedInputFormat format) throws IOException {
+        Configuration conf = job.getConfiguration();
+        long[] sample = sample(conf, format.getSplits(job));
+        EventIdPartitioner.setCuts(conf, cuts(sample, job.getNumReduceTasks()));
+    }
+
+    /**
+     * @return The event ids sampled from the splits, in order
+     */
+    static long[] sample(Configuration conf, List<InputSplit> splits) throws IOException {
+        int feeds = conf.getInt(FEEDS_KEY, DEFAULT_FEEDS);
+        List<Long> ids = Lists.newArrayList();
+        Path path = null;
+        FeedIndex index = null;
+        for (InputSplit split : splits) {
+            FileSplit fileSplit = (FileSplit) split;
+            if (!fileSplit.getPath().equals(path)) {
+                path = fileSplit.getPath();
+                FileSystem fs = path.getFileSystem(conf);
+                index = FeedIndex.read(fs, path);
+                if (index != null && index.getLogLength() > fs.getFileStatus(path).getLen()) {
+                    index = null;
+                }
+            }
+            long end = fileSplit.getStart() + fileSplit.getLength();
+            if (index != null && end <= index.getIndexedEnd()) {
+                sampleIndex(index, fileSplit.getStart(), end, ids);
+            } else {
+                sampleFeeds(conf, fileSplit, feeds, ids);
+            }
+        }
+        long[] sample = Longs.toArray(ids);
+        Arrays.sort(sample);
+        return sample;
+    }
+
+    private static void sampleIndex(FeedIndex index, long start, long end, List<Long> ids) {
+        // the feeds are in the order of the log, so only those from the first in the split up to end are looked at
+        List<FeedIndex.Feed> feeds = index.getFeeds();
+        for (int i = index.firstFeedFrom(start); i < feeds.size() && feeds.get(i).end() <= end; i++) {
+            FeedIndex.Feed feed = feeds.get(i);
+            if (feed.maxId > 0L) {
+                ids.add(feed.minId);
+                ids.add(feed.maxId);
+            }
+        }
+    }
+
+    private static void sampleFeeds(Configuration conf, FileSplit split, int feeds, List<Long> ids)
+            throws IOException {
+        XmlInputFormat.XmlRecordReader reader =
+                new XmlInputFormat.XmlRecordReader(split, FeedInputFormat.feedConfiguration(conf));
+        try {
+            for (int i = 0; i < feeds && reader.nextKeyValue(); i++) {
+                byte[] bytes = reader.getCurrentValue().getBytes();
+                int length = reader.getCurrentValue().getLength();
+                int next;
+                for (int entry = FeedParser.ENTRY_START.indexIn(bytes, 0, length); entry >= 0; entry = next) {
+                    // only look for an id up to the next entry, so that an entry without one does not take its id
+                    next = FeedParser.ENTRY_START.indexIn(bytes, entry + 1, length);
+                    long id = FeedParser.entryId(bytes, entry, next < 0 ? length : next);
+                    if (id > 0L) {
+                        ids.add(id);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new IOException(e.toString());
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * @return The ids dividing the sample into the number of partitions, leaving out any that would repeat, so that
+     *         there may be fewer ranges than partitions when the sample is small
+     */
+    static long[] cuts(long[] sample, int partitions) {
+        List<Long> cuts = Lists.newArrayList();
+        for (int i = 1; i < partitions && sample.length > 0; i++) {
+            long cut = sample[(int) ((long) i * sample.length / partitions)];
+            if (cut > 0L && (cuts.isEmpty() || cut > cuts.get(cuts.size() - 1))) {
+                cuts.add(cut);
+            }
+        }
+        return Longs.toArray(cuts);
+    }
+
+}
@@ -0,0 +1,107 @@
+package hubstats;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+
+import java.io.IOException;
+
+/**
+ * Reads the event logs written by EventOutputFormat as event ids and events.
+ * <p/>
+ * Logs written with a version of EventWritable other than this one are rejected rather than misread.
+ */
+public class EventInputFormat extends SequenceFileInputFormat<LongWritable, EventWritable> {
+
+    @Override
+    public RecordReader<LongWritable, EventWritable> createRecordReader(InputSplit split, TaskAttemptContext context) {
+        return new EventRecordReader();
+    }
+
+    /**
+     * Reads the records of a SequenceFile between the first sync point after the start of the split and the first
+     * after its end, as SequenceFileRecordReader does, once it has checked the version of the log.
+     */
+    public static class EventRecordReader extends RecordReader<LongWritable, EventWritable> {
+
+        private SequenceFile.Reader in;
+        private long start;
+        private long end;
+        private boolean more = true;
+
+        private final LongWritable key = new LongWritable();
+        private final EventWritable value = new EventWritable();
+
+        @Override
+        public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
+            initialize((FileSplit) split, context.getConfiguration());
+        }
+
+        void initialize(FileSplit split, Configuration conf) throws IOException {
+            Path path = split.getPath();
+            in = new SequenceFile.Reader(path.getFileSystem(conf), path, conf);
+            Text version = in.getMetadata().get(EventOutputFormat.VERSION_KEY);
+            if (version == null || !version.toString().equals(Integer.toString(EventWritable.VERSION))) {
+                in.close();
+                throw new IOException(String.format("%s is not an event log of version %s (found version %s)",
+                        path, EventWritable.VERSION, version));
+            }
+
+            start = split.getStart();
+            end = split.getStart() + split.getLength();
+            if (start > in.getPosition()) {
+                in.sync(start);
+            }
+            start = in.getPosition();
+            more = start < end;
+        }
+
+        @Override
+        public boolean nextKeyValue() throws IOException {
+            if (!more) {
+                return false;
+            }
+            long position = in.getPosition();
+            boolean read = in.next(key, value);
+            if (position >= end && in.syncSeen()) {
+                more = false;
+            } else {
+                more = read;
+            }
+            return more;
+        }
+
+        @Override
+        public LongWritable getCurrentKey() {
+            return key;
+        }
+
+        @Override
+        public EventWritable getCurrentValue() {
+            return value;
+        }
+
+        @Override
+        public float getProgress() throws IOException {
+            if (end == start) {
+                return 0.0f;
+            }
+            return Math.min(1.0f, (in.getPosition() - start) / (float) (end - start));
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+
+}
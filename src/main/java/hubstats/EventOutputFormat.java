@@ -0,0 +1,61 @@
+package hubstats;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.IOException;
+
+/**
+ * Writes events as an event log: a block-compressed SequenceFile of event ids and EventWritables, with the version of
+ * the EventWritable form in its metadata. Event logs are read back by EventInputFormat, so that later jobs can take
+ * events without parsing the timeline again. The EventStats of each file are written alongside it.
+ * <p/>
+ * Blocks are compressed with the codec set by FileOutputFormat.setOutputCompressorClass, DefaultCodec if none is.
+ */
+public class EventOutputFormat extends FileOutputFormat<LongWritable, EventWritable> {
+
+    /**
+     * The metadata key of the EventWritable version.
+     */
+    static final Text VERSION_KEY = new Text("hubstats.event.version");
+
+    @Override
+    public RecordWriter<LongWritable, EventWritable> getRecordWriter(TaskAttemptContext context)
+            throws IOException, InterruptedException {
+        Configuration conf = context.getConfiguration();
+        CompressionCodec codec = ReflectionUtils.newInstance(
+                getOutputCompressorClass(context, DefaultCodec.class), conf);
+        Path file = getDefaultWorkFile(context, "");
+        final SequenceFile.Writer out = SequenceFile.createWriter(file.getFileSystem(conf), conf, file,
+                LongWritable.class, EventWritable.class, SequenceFile.CompressionType.BLOCK, codec, context,
+                metadata());
+
+        return new StatsRecordWriter<EventWritable>(new RecordWriter<LongWritable, EventWritable>() {
+            @Override
+            public void write(LongWritable key, EventWritable value) throws IOException {
+                out.append(key, value);
+            }
+
+            @Override
+            public void close(TaskAttemptContext context) throws IOException {
+                out.close();
+            }
+        }, file.getFileSystem(conf), file);
+    }
+
+    static SequenceFile.Metadata metadata() {
+        SequenceFile.Metadata metadata = new SequenceFile.Metadata();
+        metadata.set(VERSION_KEY, new Text(Integer.toString(EventWritable.VERSION)));
+        return metadata;
+    }
+
+}
@@ -0,0 +1,74 @@
+package hubstats;
+
+/**
+ * An event read from the columnar event store. Only the columns the reader was asked for are decoded: the others are
+ * null, or zero for the alternate id. The event id is always decoded.
+ *
+ * @see ColumnarEventInputFormat
+ */
+public final class EventRow {
+
+    private RowGroup group;
+    private int row;
+
+    void set(RowGroup group, int row) {
+        this.group = group;
+        this.row = row;
+    }
+
+    public long getEventId() {
+        return group.getEventId(row);
+    }
+
+    public EventType getEventType() {
+        return group.getEventType(row);
+    }
+
+    public String getAt() {
+        return group.getAt(row);
+    }
+
+    /**
+     * @return The time of the event in seconds since the epoch, if getAtOffset is not Event.UNKNOWN_OFFSET
+     */
+    public long getAtSeconds() {
+        return group.getAtSeconds(row);
+    }
+
+    /**
+     * @return The UTC offset in minutes the time of the event was given in, or Event.UNKNOWN_OFFSET if it was not in
+     *         the form of the timeline or the column was not decoded
+     */
+    public int getAtOffset() {
+        return group.getAtOffset(row);
+    }
+
+    public String getActor() {
+        return group.getString(EventColumn.ACTOR, row);
+    }
+
+    public String getRepoAccount() {
+        return group.getString(EventColumn.REPO_ACCOUNT, row);
+    }
+
+    public String getRepoName() {
+        return group.getString(EventColumn.REPO_NAME, row);
+    }
+
+    public String getBranch() {
+        return group.getString(EventColumn.BRANCH, row);
+    }
+
+    public String getTag() {
+        return group.getString(EventColumn.TAG, row);
+    }
+
+    public long getAlternateId() {
+        return group.getAlternateId(row);
+    }
+
+    public String getSubType() {
+        return group.getString(EventColumn.SUBTYPE, row);
+    }
+
+}
@@ -0,0 +1,260 @@
+package hubstats;
+
+import com.google.common.base.Charsets;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.util.bloom.BloomFilter;
+import org.apache.hadoop.util.bloom.Key;
+import org.apache.hadoop.util.hash.Hash;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Statistics of the events in an output file, kept in a sidecar so that a later job can skip the file when none of
+ * its events can match what the job is looking for.
+ * <p/>
+ * The statistics are the number of events, the lowest and highest event id, the earliest and latest event time, the
+ * number of events of each type, and a Bloom filter of the repositories, holding both the account and the account and
+ * name joined with a slash. The sidecar of <code>part-r-00000</code> is the hidden file
+ * <code>.part-r-00000.stats</code> alongside it, so that jobs that read the output directory as before do not read
+ * it.
+ *
+ * @see StatsPathFilter
+ */
+final class EventStats {
+
+    static final String PREFIX = ".";
+    static final String SUFFIX = ".stats";
+
+    /**
+     * The time of a file without an event in the expected form.
+     */
+    static final long UNKNOWN_TIME = Long.MIN_VALUE;
+
+    private static final int VERSION = 1;
+    private static final EventType[] TYPES = EventType.values();
+
+    // each repository adds two keys, its account and its account and name, so this gives about 1% false positives for
+    // 55,000 repositories, or about 12% for 100,000
+    static final int BLOOM_BITS = 1 << 20;
+    private static final int BLOOM_HASHES = 7;
+
+    private long count;
+    private long minId = Long.MAX_VALUE;
+    private long maxId = Long.MIN_VALUE;
+    private long minAt = Long.MAX_VALUE;
+    private long maxAt = Long.MIN_VALUE;
+    private final long[] typeCounts = new long[TYPES.length];
+    private final BloomFilter repos;
+
+    private final Timestamps.Parser timestamps = new Timestamps.Parser();
+
+    // the ends of the event_id, event_type, at, actor, repo_account and repo_name fields of the last line added
+    private final int[] ends = new int[6];
+
+    EventStats() {
+        this(BLOOM_BITS);
+    }
+
+    EventStats(int bloomBits) {
+        this(new BloomFilter(bloomBits, BLOOM_HASHES, Hash.MURMUR_HASH));
+    }
+
+    private EventStats(BloomFilter repos) {
+        this.repos = repos;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getMinId() {
+        return minId;
+    }
+
+    long getMaxId() {
+        return maxId;
+    }
+
+    /**
+     * @return The earliest event time in seconds since the epoch, or UNKNOWN_TIME
+     */
+    long getMinAt() {
+        return minAt > maxAt ? UNKNOWN_TIME : minAt;
+    }
+
+    /**
+     * @return The latest event time in seconds since the epoch, or UNKNOWN_TIME
+     */
+    long getMaxAt() {
+        return minAt > maxAt ? UNKNOWN_TIME : maxAt;
+    }
+
+    long getCount(EventType type) {
+        return typeCounts[type.ordinal()];
+    }
+
+    /**
+     * @param repo An account, or an account and repository name joined with a slash
+     * @return False if no event in the file is for the repository, true if one may be
+     */
+    boolean mayContainRepo(String repo) {
+        return repos.membershipTest(new Key(repo.getBytes(Charsets.UTF_8)));
+    }
+
+    void add(Event event) {
+        add(event.getEventId(), event.getEventType());
+        if (event.getAtOffset() != Timestamps.UNPARSEABLE) {
+            addTime(event.getAtSeconds());
+        }
+        addRepo(event.getRepoAccount(), event.getRepoName());
+    }
+
+    /**
+     * Add an event from its line, as written by Event.writeTo, for writers that are given only the line. Writers given
+     * the event add it instead, as that needs nothing read back from the line.
+     */
+    void add(long eventId, Text line) {
+        byte[] bytes = line.getBytes();
+        int length = line.getLength();
+        int field = 0;
+        for (int i = 0; i < length && field < ends.length; i++) {
+            if (bytes[i] == '\t') {
+                ends[field++] = i;
+            }
+        }
+        for (; field < ends.length; field++) {
+            ends[field] = length;
+        }
+        add(eventId, EventType.forName(bytes, ends[0] + 1, ends[1]));
+        if (timestamps.parse(bytes, ends[1] + 1, ends[2])) {
+            addTime(timestamps.getEpochSeconds());
+        } else if (isEpochSeconds(bytes, ends[1] + 1, ends[2])) {
+            long seconds = 0L;
+            for (int i = ends[1] + 1; i < ends[2]; i++) {
+                seconds = seconds * 10 + (bytes[i] - '0');
+            }
+            addTime(seconds);
+        }
+        if (ends[3] + 1 < ends[4]) {
+            // the line is already UTF-8, so the keys are its bytes, with a slash for the tab between account and name
+            repos.add(new Key(Arrays.copyOfRange(bytes, ends[3] + 1, ends[4])));
+            if (ends[4] + 1 < ends[5]) {
+                byte[] repo = Arrays.copyOfRange(bytes, ends[3] + 1, ends[5]);
+                repo[ends[4] - ends[3] - 1] = '/';
+                repos.add(new Key(repo));
+            }
+        }
+    }
+
+    private void add(long eventId, EventType type) {
+        count++;
+        minId = Math.min(minId, eventId);
+        maxId = Math.max(maxId, eventId);
+        if (type != null) {
+            typeCounts[type.ordinal()]++;
+        }
+    }
+
+    private void addTime(long seconds) {
+        minAt = Math.min(minAt, seconds);
+        maxAt = Math.max(maxAt, seconds);
+    }
+
+    /**
+     * If the field is a time written in the EPOCH form, a run of digits that fits in a long.
+     */
+    private static boolean isEpochSeconds(byte[] bytes, int from, int to) {
+        if (from == to || to - from > TitleTokenizer.MAX_LONG_DIGITS) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (bytes[i] < '0' || bytes[i] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addRepo(String account, String name) {
+        if (account == null || account.length() == 0) {
+            return;
+        }
+        repos.add(new Key(account.getBytes(Charsets.UTF_8)));
+        if (name != null) {
+            repos.add(new Key((account + '/' + name).getBytes(Charsets.UTF_8)));
+        }
+    }
+
+    /**
+     * @return The path of the sidecar of the file
+     */
+    static Path sidecar(Path file) {
+        return new Path(file.getParent(), PREFIX + file.getName() + SUFFIX);
+    }
+
+    /**
+     * @return The statistics of the file, or null if it has no sidecar
+     * @throws IOException If there is an exception reading the sidecar, or it is of another version
+     */
+    static EventStats read(FileSystem fs, Path file) throws IOException {
+        Path sidecar = sidecar(file);
+        if (!fs.exists(sidecar)) {
+            return null;
+        }
+        FSDataInputStream in = fs.open(sidecar);
+        try {
+            int version = WritableUtils.readVInt(in);
+            if (version != VERSION) {
+                throw new IOException(String.format("Unsupported version %s of statistics %s", version, sidecar));
+            }
+            EventStats stats = new EventStats(new BloomFilter());
+            stats.count = WritableUtils.readVLong(in);
+            stats.minId = in.readLong();
+            stats.maxId = in.readLong();
+            stats.minAt = in.readLong();
+            stats.maxAt = in.readLong();
+            int types = WritableUtils.readVInt(in);
+            for (int i = 0; i < types; i++) {
+                long typeCount = WritableUtils.readVLong(in);
+                if (i < stats.typeCounts.length) {
+                    stats.typeCounts[i] = typeCount;
+                }
+            }
+            stats.repos.readFields(in);
+            return stats;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Write these statistics as the sidecar of the file, replacing any there already.
+     *
+     * @throws IOException If there is an exception writing the sidecar
+     */
+    void write(FileSystem fs, Path file) throws IOException {
+        FSDataOutputStream out = fs.create(sidecar(file), true);
+        try {
+            WritableUtils.writeVInt(out, VERSION);
+            WritableUtils.writeVLong(out, count);
+            out.writeLong(minId);
+            out.writeLong(maxId);
+            out.writeLong(minAt);
+            out.writeLong(maxAt);
+            WritableUtils.writeVInt(out, typeCounts.length);
+            for (long typeCount : typeCounts) {
+                WritableUtils.writeVLong(out, typeCount);
+            }
+            repos.write(out);
+        } finally {
+            out.close();
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package hubstats;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.IOException;
+
+/**
+ * Writes a line for each event as TextOutputFormat does, together with the EventStats of each file.
+ * <p/>
+ * Events are either EventWritables, written with the time in the form HubStats.TIME_FORMAT_KEY sets, or lines of
+ * Text already written from them. The statistics are taken from the EventWritables as they are, and only read from
+ * the lines when the text shuffle gives nothing else.
+ */
+public class EventTextOutputFormat extends TextOutputFormat<LongWritable, Writable> {
+
+    @Override
+    public RecordWriter<LongWritable, Writable> getRecordWriter(TaskAttemptContext job)
+            throws IOException, InterruptedException {
+        // the file TextOutputFormat writes to
+        Configuration conf = job.getConfiguration();
+        String extension = "";
+        if (getCompressOutput(job)) {
+            Class<? extends CompressionCodec> codec = getOutputCompressorClass(job, GzipCodec.class);
+            extension = ReflectionUtils.newInstance(codec, conf).getDefaultExtension();
+        }
+        Path file = getDefaultWorkFile(job, extension);
+        final RecordWriter<LongWritable, Writable> lines = super.getRecordWriter(job);
+        final Timestamps.Format timeFormat = HubStats.timeFormat(conf);
+        return new StatsRecordWriter<Writable>(new RecordWriter<LongWritable, Writable>() {
+            private final Text line = new Text();
+
+            @Override
+            public void write(LongWritable key, Writable value) throws IOException, InterruptedException {
+                if (value instanceof EventWritable) {
+                    ((EventWritable) value).get().writeTo(line, timeFormat);
+                    lines.write(key, line);
+                } else {
+                    lines.write(key, value);
+                }
+            }
+
+            @Override
+            public void close(TaskAttemptContext context) throws IOException, InterruptedException {
+                lines.close(context);
+            }
+        }, file.getFileSystem(conf), file);
+    }
+
+}
@@ -1,5 +1,7 @@
 package hubstats;
 
+import com.google.common.base.Charsets;
+
 /**
  * The recognised GitHub events.
  */
@@ -80,10 +82,37 @@ public enum EventType {
      */
     CommitComment();
 
+    /**
+     * The types indexed by a hash of their names that is precomputed to be free of collisions, so that a type name can
+     * be resolved from bytes or characters with a single probe and no allocation.
+     */
+    private static final EventType[] BY_NAME_HASH;
+
+    private static final int NAME_HASH_MASK;
+
+    static {
+        EventType[] table = null;
+        for (int size = 16; table == null; size <<= 1) {
+            table = new EventType[size];
+            for (EventType type : values()) {
+                String name = type.name();
+                int slot = nameHash(name.charAt(0), name.charAt(name.length() - 1), name.length()) & (size - 1);
+                if (table[slot] != null) {
+                    table = null;
+                    break;
+                }
+                table[slot] = type;
+            }
+        }
+        BY_NAME_HASH = table;
+        NAME_HASH_MASK = table.length - 1;
+    }
+
     private boolean needsAccount;
     private boolean needsRepoName;
     private boolean requiresId;
     private boolean requiresType;
+    private final byte[] nameBytes = name().getBytes(Charsets.US_ASCII);
 
     private EventType() {
         this(true, true, false, false);
@@ -96,6 +125,59 @@ public enum EventType {
         this.requiresType = requiresType;
     }
 
+    /**
+     * @return The ASCII bytes of the name of this type, which must not be modified
+     */
+    byte[] getNameBytes() {
+        return nameBytes;
+    }
+
+    private static int nameHash(int first, int last, int length) {
+        return first * 31 + last * 7 + length;
+    }
+
+    /**
+     * Find the event type with the name held in bytes[from, to).
+     *
+     * @return The event type, or null if there is no type with that name
+     */
+    static EventType forName(byte[] bytes, int from, int to) {
+        if (to <= from) {
+            return null;
+        }
+        EventType type = BY_NAME_HASH[nameHash(bytes[from], bytes[to - 1], to - from) & NAME_HASH_MASK];
+        if (type == null || type.nameBytes.length != to - from) {
+            return null;
+        }
+        for (int i = 0; i < type.nameBytes.length; i++) {
+            if (type.nameBytes[i] != bytes[from + i]) {
+                return null;
+            }
+        }
+        return type;
+    }
+
+    /**
+     * Find the event type with the name held in text[from, to).
+     *
+     * @return The event type, or null if there is no type with that name
+     */
+    static EventType forName(CharSequence text, int from, int to) {
+        if (to <= from) {
+            return null;
+        }
+        EventType type = BY_NAME_HASH[nameHash(text.charAt(from), text.charAt(to - 1), to - from) & NAME_HASH_MASK];
+        if (type == null || type.nameBytes.length != to - from) {
+            return null;
+        }
+        for (int i = 0; i < type.nameBytes.length; i++) {
+            if (type.nameBytes[i] != text.charAt(from + i)) {
+                return null;
+            }
+        }
+        return type;
+    }
+
     /**
      * If this event type needs an account to be specified
      *
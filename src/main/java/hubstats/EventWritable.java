@@ -0,0 +1,177 @@
+package hubstats;
+
+import com.google.common.base.Charsets;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A compact binary form of an Event, for use as the map output key so that the shuffle carries each event once and
+ * sorts it without deserializing.
+ * <p/>
+ * The serialized form is:
+ * <ol>
+ * <li>The event id as a variable-length long, first so that Comparator can read it directly</li>
+ * <li>The ordinal of the event type as a single byte</li>
+ * <li>The UTC offset of the timestamp in minutes as a variable-length int, then the timestamp as seconds since the
+ * epoch as a variable-length long. If the timestamp is not in the expected form the offset is
+ * Timestamps.UNPARSEABLE, followed by the timestamp as a string.</li>
+ * <li>The actor, repository account, repository name, branch and tag as strings</li>
+ * <li>The alternate id as a variable-length long</li>
+ * <li>The subtype as a string</li>
+ * </ol>
+ * Strings are written as a variable-length int of one more than their length in UTF-8 bytes, followed by the bytes.
+ * Null is written as zero.
+ * <p/>
+ * Event writables are compared, and so grouped and partitioned, by event id alone.
+ *
+ * @see Timestamps
+ */
+public final class EventWritable implements WritableComparable<EventWritable> {
+
+    static {
+        WritableComparator.define(EventWritable.class, new Comparator());
+    }
+
+    /**
+     * The version of the serialized form, which includes the order of EventType. Event logs written by
+     * EventOutputFormat record it, so this must be incremented whenever the form changes.
+     */
+    static final int VERSION = 1;
+
+    private static final EventType[] TYPES = EventType.values();
+
+    private final Event.Builder builder = new Event.Builder();
+    private final Event read = new Event();
+    private Event event = read;
+    private byte[] scratch = new byte[64];
+
+    public EventWritable() {
+
+    }
+
+    public EventWritable(Event event) {
+        set(event);
+    }
+
+    /**
+     * @param event The event to write. It is not copied, so must not be repopulated while this writable refers to it.
+     */
+    public void set(Event event) {
+        this.event = event;
+    }
+
+    /**
+     * @return The event, which is replaced by the next call to readFields
+     */
+    public Event get() {
+        return event;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        WritableUtils.writeVLong(out, event.getEventId());
+        out.writeByte(event.getEventType().ordinal());
+        int offset = event.getAtOffset();
+        WritableUtils.writeVInt(out, offset);
+        if (offset == Timestamps.UNPARSEABLE) {
+            writeString(out, event.getAt());
+        } else {
+            WritableUtils.writeVLong(out, event.getAtSeconds());
+        }
+        writeString(out, event.getActor());
+        writeString(out, event.getRepoAccount());
+        writeString(out, event.getRepoName());
+        writeString(out, event.getBranch());
+        writeString(out, event.getTag());
+        WritableUtils.writeVLong(out, event.getAlternateId());
+        writeString(out, event.getSubType());
+    }
+
+    public void readFields(DataInput in) throws IOException {
+        builder.reset().eventId(WritableUtils.readVLong(in)).type(TYPES[in.readByte()]);
+        int offset = WritableUtils.readVInt(in);
+        if (offset == Timestamps.UNPARSEABLE) {
+            builder.at(readString(in));
+        } else {
+            builder.at(WritableUtils.readVLong(in), offset);
+        }
+        builder.actor(readString(in)).repoAccount(readString(in)).repoName(readString(in))
+                .branch(readString(in)).tag(readString(in)).alternateId(WritableUtils.readVLong(in))
+                .subType(readString(in));
+        // never overwrite an event that was passed to set()
+        event = builder.buildInto(read);
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            WritableUtils.writeVInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(Charsets.UTF_8);
+        WritableUtils.writeVInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private String readString(DataInput in) throws IOException {
+        int length = WritableUtils.readVInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > scratch.length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        in.readFully(scratch, 0, length);
+        return new String(scratch, 0, length, Charsets.UTF_8);
+    }
+
+    public int compareTo(EventWritable other) {
+        return compare(event.getEventId(), other.event.getEventId());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof EventWritable && event.getEventId() == ((EventWritable) o).event.getEventId();
+    }
+
+    /**
+     * Hash on the event id as LongWritable does, so that events are partitioned as they are when keyed by id.
+     */
+    @Override
+    public int hashCode() {
+        return (int) event.getEventId();
+    }
+
+    @Override
+    public String toString() {
+        return event.toString();
+    }
+
+    private static int compare(long a, long b) {
+        return a < b ? -1 : (a == b ? 0 : 1);
+    }
+
+    /**
+     * Compare serialized event writables by the event id at the start of each, without deserializing them.
+     */
+    public static final class Comparator extends WritableComparator {
+
+        public Comparator() {
+            super(EventWritable.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            try {
+                return EventWritable.compare(readVLong(b1, s1), readVLong(b2, s2));
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,145 @@
+package hubstats;
+
+import org.apache.hadoop.io.Text;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Recognises records that repeat one of the last few seen, so that the identical feeds appended when the timeline has
+ * not changed between polls can be dropped without being parsed.
+ */
+final class FeedFingerprints {
+
+    /**
+     * What a record is fingerprinted by.
+     */
+    enum Mode {
+
+        /**
+         * The updated element in the feed header and the id of the first entry, falling back to the whole record if
+         * either is missing
+         */
+        HEADER,
+
+        /**
+         * Every byte of the record
+         */
+        FULL,
+
+        /**
+         * Don't fingerprint records
+         */
+        NONE
+    }
+
+    /**
+     * The number of fingerprints remembered, enough to hold every entry of a feed when each entry is a record.
+     */
+    static final int SIZE = 64;
+
+    private static final BytePattern UPDATED_START = new BytePattern("<updated>");
+    private static final BytePattern UPDATED_END = new BytePattern("</updated>");
+    private static final BytePattern ID_START = new BytePattern("<id>");
+    private static final BytePattern ID_END = new BytePattern("</id>");
+
+    // 64-bit FNV-1a
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private final Mode mode;
+    private final long[] recent = new long[SIZE];
+    private int count;
+    private int next;
+
+    FeedFingerprints(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Fingerprint a record and remember it.
+     *
+     * @param record The feed or entry record
+     * @return True if the record has the same fingerprint as one of the last SIZE records
+     */
+    boolean isRepeat(Text record) {
+        return isRepeat(fingerprint(record.getBytes(), record.getLength()));
+    }
+
+    /**
+     * Fingerprint a record held between the position and limit of a buffer and remember it.
+     *
+     * @param record The feed or entry record
+     * @return True if the record has the same fingerprint as one of the last SIZE records
+     */
+    boolean isRepeat(ByteBuffer record) {
+        return isRepeat(fingerprint(record, record.position(), record.limit()));
+    }
+
+    private boolean isRepeat(long fingerprint) {
+        for (int i = 0; i < count; i++) {
+            if (recent[i] == fingerprint) {
+                return true;
+            }
+        }
+        recent[next] = fingerprint;
+        next = (next + 1) % SIZE;
+        count = Math.min(count + 1, SIZE);
+        return false;
+    }
+
+    long fingerprint(byte[] bytes, int length) {
+        if (mode == Mode.HEADER) {
+            int entry = FeedParser.ENTRY_START.indexIn(bytes, 0, length);
+            if (entry >= 0) {
+                int updatedStart = UPDATED_START.indexIn(bytes, 0, entry);
+                int updatedEnd = updatedStart < 0 ? -1 : UPDATED_END.indexIn(bytes, updatedStart, entry);
+                int idStart = ID_START.indexIn(bytes, entry, length);
+                int idEnd = idStart < 0 ? -1 : ID_END.indexIn(bytes, idStart, length);
+                if (updatedEnd >= 0 && idEnd >= 0) {
+                    return hash(hash(OFFSET_BASIS, bytes, updatedStart, updatedEnd), bytes, idStart, idEnd);
+                }
+            }
+        }
+        return hash(OFFSET_BASIS, bytes, 0, length);
+    }
+
+    long fingerprint(ByteBuffer record, int from, int to) {
+        if (mode == Mode.HEADER) {
+            int entry = FeedParser.ENTRY_START.indexIn(record, from, to);
+            if (entry >= 0) {
+                int updatedStart = UPDATED_START.indexIn(record, from, entry);
+                int updatedEnd = updatedStart < 0 ? -1 : UPDATED_END.indexIn(record, updatedStart, entry);
+                int idStart = ID_START.indexIn(record, entry, to);
+                int idEnd = idStart < 0 ? -1 : ID_END.indexIn(record, idStart, to);
+                if (updatedEnd >= 0 && idEnd >= 0) {
+                    return hash(hash(OFFSET_BASIS, record, updatedStart, updatedEnd), record, idStart, idEnd);
+                }
+            }
+        }
+        return hash(OFFSET_BASIS, record, from, to);
+    }
+
+    private static long hash(long hash, ByteBuffer record, int from, int to) {
+        for (int i = from; i < to; i++) {
+            hash ^= record.get(i) & 0xff;
+            hash *= PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * @return The 64-bit FNV-1a hash of bytes[from, to), as records are fingerprinted by
+     */
+    static long hash(byte[] bytes, int from, int to) {
+        return hash(OFFSET_BASIS, bytes, from, to);
+    }
+
+    private static long hash(long hash, byte[] bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            hash ^= bytes[i] & 0xff;
+            hash *= PRIME;
+        }
+        return hash;
+    }
+
+}
@@ -0,0 +1,247 @@
+package hubstats;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.mahout.classifier.bayes.XmlInputFormat;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The position of every feed in a timeline log, with the updated time and range of event ids of each, as kept in a
+ * sidecar file next to the log.
+ * <p/>
+ * The sidecar of <code>github-timeline.log</code> is <code>github-timeline.log.idx</code>. It holds a version number
+ * and the length of the log when it was indexed, followed by the number of feeds and then the fields of each feed as
+ * variable-length longs.
+ *
+ * @see FeedIndexer
+ * @see FeedInputFormat
+ */
+final class FeedIndex {
+
+    static final String SUFFIX = ".idx";
+
+    /**
+     * The updated time of a feed without a parseable updated element.
+     */
+    static final long UNKNOWN_TIME = Long.MIN_VALUE;
+
+    private static final int VERSION = 1;
+
+    private static final BytePattern UPDATED_START = new BytePattern("<updated>");
+    private static final BytePattern UPDATED_END = new BytePattern("</updated>");
+
+    /**
+     * A single feed within the log.
+     */
+    static final class Feed {
+
+        final long start;
+        final long length;
+        final long updated;
+        final long minId;
+        final long maxId;
+
+        /**
+         * @param start   The offset of the feed start tag in the log
+         * @param length  The length of the feed, up to the end of its end tag
+         * @param updated The updated time of the feed in seconds since the epoch, or UNKNOWN_TIME
+         * @param minId   The lowest event id in the feed, or 0 if it has no entries
+         * @param maxId   The highest event id in the feed, or 0 if it has no entries
+         */
+        Feed(long start, long length, long updated, long minId, long maxId) {
+            this.start = start;
+            this.length = length;
+            this.updated = updated;
+            this.minId = minId;
+            this.maxId = maxId;
+        }
+
+        long end() {
+            return start + length;
+        }
+    }
+
+    private final long logLength;
+    private final List<Feed> feeds;
+
+    FeedIndex(long logLength, List<Feed> feeds) {
+        this.logLength = logLength;
+        this.feeds = Collections.unmodifiableList(feeds);
+    }
+
+    /**
+     * @return The length of the log when it was indexed. Anything appended since is not in the index.
+     */
+    long getLogLength() {
+        return logLength;
+    }
+
+    /**
+     * @return The feeds in the order they appear in the log
+     */
+    List<Feed> getFeeds() {
+        return feeds;
+    }
+
+    /**
+     * @return The position in getFeeds of the first feed starting at or after offset, or the number of feeds if none do
+     */
+    int firstFeedFrom(long offset) {
+        int low = 0;
+        int high = feeds.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (feeds.get(mid).start < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return The offset in the log of the end of the last indexed feed, from which anything not indexed may follow
+     */
+    long getIndexedEnd() {
+        return feeds.isEmpty() ? 0L : feeds.get(feeds.size() - 1).end();
+    }
+
+    static Path sidecar(Path log) {
+        return new Path(log.getParent(), log.getName() + SUFFIX);
+    }
+
+    /**
+     * Read every feed of an uncompressed log.
+     *
+     * @param fs   The file system holding the log
+     * @param log  The log to index
+     * @param conf The configuration to read the log with
+     * @return The index of the log
+     * @throws IOException If there is an exception reading the log
+     */
+    static FeedIndex build(FileSystem fs, Path log, Configuration conf) throws IOException {
+        long length = fs.getFileStatus(log).getLen();
+        XmlInputFormat.XmlRecordReader reader = new XmlInputFormat.XmlRecordReader(
+                new FileSplit(log, 0L, length, null), FeedInputFormat.feedConfiguration(conf));
+        List<Feed> feeds = Lists.newArrayList();
+        try {
+            while (reader.nextKeyValue()) {
+                // the key is the offset of the end of the feed
+                feeds.add(describe(reader.getCurrentKey().get(), reader.getCurrentValue()));
+            }
+        } catch (InterruptedException e) {
+            throw new IOException(e.toString());
+        } finally {
+            reader.close();
+        }
+        return new FeedIndex(length, feeds);
+    }
+
+    /**
+     * @param end   The offset in the log of the end of the feed
+     * @param value The whole feed, from its start tag to its end tag
+     * @return The index entry for the feed
+     */
+    static Feed describe(long end, Text value) {
+        byte[] bytes = value.getBytes();
+        int length = value.getLength();
+        int firstEntry = FeedParser.ENTRY_START.indexIn(bytes, 0, length);
+        int headerEnd = firstEntry < 0 ? length : firstEntry;
+
+        long updated = UNKNOWN_TIME;
+        int updatedStart = UPDATED_START.indexIn(bytes, 0, headerEnd);
+        int updatedEnd = updatedStart < 0 ? -1 : UPDATED_END.indexIn(bytes, updatedStart, headerEnd);
+        if (updatedEnd >= 0) {
+            String at = new String(bytes, updatedStart + UPDATED_START.length(),
+                    updatedEnd - updatedStart - UPDATED_START.length(), Charsets.UTF_8);
+            int offset = Timestamps.offsetMinutes(at);
+            if (offset != Timestamps.UNPARSEABLE) {
+                updated = Timestamps.epochSeconds(at, offset);
+            }
+        }
+
+        long minId = 0L;
+        long maxId = 0L;
+        for (int entry = firstEntry; entry >= 0; entry = FeedParser.ENTRY_START.indexIn(bytes, entry + 1, length)) {
+            long id = FeedParser.entryId(bytes, entry, length);
+            if (id > 0) {
+                minId = minId == 0L ? id : Math.min(minId, id);
+                maxId = Math.max(maxId, id);
+            }
+        }
+        return new Feed(end - length, length, updated, minId, maxId);
+    }
+
+    /**
+     * @return The index of the log, or null if it has no sidecar
+     * @throws IOException If there is an exception reading the sidecar
+     */
+    static FeedIndex read(FileSystem fs, Path log) throws IOException {
+        Path sidecar = sidecar(log);
+        if (!fs.exists(sidecar)) {
+            return null;
+        }
+        FSDataInputStream in = fs.open(sidecar);
+        try {
+            int version = WritableUtils.readVInt(in);
+            if (version != VERSION) {
+                throw new IOException(String.format("Unsupported feed index version %s in %s", version, sidecar));
+            }
+            long logLength = WritableUtils.readVLong(in);
+            int count = WritableUtils.readVInt(in);
+            List<Feed> feeds = Lists.newArrayListWithCapacity(count);
+            long start = 0L;
+            for (int i = 0; i < count; i++) {
+                // feed starts are written as the gap from the end of the previous feed
+                start += WritableUtils.readVLong(in);
+                long length = WritableUtils.readVLong(in);
+                long updated = WritableUtils.readVLong(in);
+                long minId = WritableUtils.readVLong(in);
+                long maxId = minId + WritableUtils.readVLong(in);
+                feeds.add(new Feed(start, length, updated, minId, maxId));
+                start += length;
+            }
+            return new FeedIndex(logLength, feeds);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Write this index to the sidecar of the log, replacing any there already.
+     *
+     * @throws IOException If there is an exception writing the sidecar
+     */
+    void write(FileSystem fs, Path log) throws IOException {
+        FSDataOutputStream out = fs.create(sidecar(log), true);
+        try {
+            WritableUtils.writeVInt(out, VERSION);
+            WritableUtils.writeVLong(out, logLength);
+            WritableUtils.writeVInt(out, feeds.size());
+            long previousEnd = 0L;
+            for (Feed feed : feeds) {
+                WritableUtils.writeVLong(out, feed.start - previousEnd);
+                WritableUtils.writeVLong(out, feed.length);
+                WritableUtils.writeVLong(out, feed.updated);
+                WritableUtils.writeVLong(out, feed.minId);
+                WritableUtils.writeVLong(out, feed.maxId - feed.minId);
+                previousEnd = feed.end();
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package hubstats;
+
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+import java.io.IOException;
+
+/**
+ * Write a FeedIndex sidecar for each timeline log given, or each log in the directories given, in a single pass over
+ * each log. Compressed logs can't be split, so they are not indexed.
+ * <p/>
+ * Run with:
+ * <pre>
+ *     $ hadoop jar hubstats.jar hubstats.FeedIndexer input...
+ * </pre>
+ */
+public class FeedIndexer extends Configured implements Tool {
+
+    public final int run(String[] args) throws IOException {
+        for (String arg : args) {
+            Path path = new Path(arg);
+            FileSystem fs = path.getFileSystem(getConf());
+            if (fs.getFileStatus(path).isDir()) {
+                for (FileStatus file : fs.listStatus(path)) {
+                    if (!file.isDir()) {
+                        index(fs, file.getPath());
+                    }
+                }
+            } else {
+                index(fs, path);
+            }
+        }
+        return 0;
+    }
+
+    private void index(FileSystem fs, Path log) throws IOException {
+        String name = log.getName();
+        if (name.endsWith(FeedIndex.SUFFIX) || name.startsWith("_") || name.startsWith(".")) {
+            return;
+        }
+        if (new CompressionCodecFactory(getConf()).getCodec(log) != null) {
+            System.err.println(String.format("Not indexing compressed log %s", log));
+            return;
+        }
+        FeedIndex index = FeedIndex.build(fs, log, getConf());
+        index.write(fs, log);
+        System.out.println(String.format("Indexed %s feeds in %s", index.getFeeds().size(), log));
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(ToolRunner.run(new FeedIndexer(), args));
+    }
+
+}
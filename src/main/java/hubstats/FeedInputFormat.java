@@ -0,0 +1,258 @@
+package hubstats;
+
+import com.google.common.collect.Lists;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.mahout.classifier.bayes.XmlInputFormat;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Reads a timeline log as one record per feed.
+ * <p/>
+ * Logs with a FeedIndex sidecar are split on feed boundaries, so that no reader has to scan for the start of its first
+ * feed or read past the end of its split to finish its last. The index also lets a job read only the feeds that may
+ * hold events in a range of event ids or times, set with the range keys. Logs without an index are split as
+ * XmlInputFormat splits them, and read whole whatever the range.
+ */
+public class FeedInputFormat extends XmlInputFormat {
+
+    static final String START_TAG = "<feed";
+    static final String END_TAG = "feed>";
+
+    /**
+     * Read only the feeds holding event ids at or above this.
+     */
+    public static final String MIN_ID_KEY = "hubstats.range.min.id";
+
+    /**
+     * Read only the feeds holding event ids at or below this.
+     */
+    public static final String MAX_ID_KEY = "hubstats.range.max.id";
+
+    /**
+     * Read only the feeds updated at or after this time, given in the same form as the timeline, for example
+     * 2010-11-19T03:55:54-08:00.
+     */
+    public static final String FROM_KEY = "hubstats.range.from";
+
+    /**
+     * Read only the feeds updated at or before this time, given in the same form as the timeline.
+     */
+    public static final String TO_KEY = "hubstats.range.to";
+
+    /**
+     * The path of a Checkpoint holding the offset to start reading each log from. Logs not in it are read from the
+     * start.
+     */
+    static final String START_CHECKPOINT_KEY = "hubstats.input.checkpoint.start";
+
+    /**
+     * The path of a Checkpoint holding the offset to stop reading each log at. Logs not in it are read to the end.
+     */
+    static final String END_CHECKPOINT_KEY = "hubstats.input.checkpoint.end";
+
+    @Override
+    public RecordReader<LongWritable, Text> createRecordReader(InputSplit split, TaskAttemptContext context) {
+        try {
+            return new XmlRecordReader((FileSplit) split, feedConfiguration(context.getConfiguration()));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    static Configuration feedConfiguration(Configuration conf) {
+        Configuration feedConf = new Configuration(conf);
+        feedConf.set(START_TAG_KEY, START_TAG);
+        feedConf.set(END_TAG_KEY, END_TAG);
+        return feedConf;
+    }
+
+    /**
+     * Leave the index sidecars out of the input.
+     */
+    @Override
+    protected List<FileStatus> listStatus(JobContext job) throws IOException {
+        List<FileStatus> files = super.listStatus(job);
+        for (Iterator<FileStatus> i = files.iterator(); i.hasNext();) {
+            if (i.next().getPath().getName().endsWith(FeedIndex.SUFFIX)) {
+                i.remove();
+            }
+        }
+        return files;
+    }
+
+    @Override
+    public List<InputSplit> getSplits(JobContext job) throws IOException {
+        Configuration conf = job.getConfiguration();
+        Range range = new Range(conf);
+        long minSize = Math.max(getFormatMinSplitSize(), getMinSplitSize(job));
+        long maxSize = getMaxSplitSize(job);
+
+        // the splits of each file are together, so replace them all with indexed splits when the file has an index
+        List<InputSplit> splits = Lists.newArrayList();
+        Checkpoint startCheckpoint = checkpoint(conf, START_CHECKPOINT_KEY);
+        Checkpoint endCheckpoint = checkpoint(conf, END_CHECKPOINT_KEY);
+        Path path = null;
+        boolean indexed = false;
+        for (InputSplit split : super.getSplits(job)) {
+            if (!((FileSplit) split).getPath().equals(path)) {
+                path = ((FileSplit) split).getPath();
+                FileSystem fs = path.getFileSystem(conf);
+                FileStatus file = fs.getFileStatus(path);
+                FeedIndex index = isSplitable(job, path) ? FeedIndex.read(fs, path) : null;
+                // an index of a longer log must be of a different one
+                indexed = index != null && index.getLogLength() <= file.getLen();
+                if (indexed) {
+                    long splitSize = computeSplitSize(file.getBlockSize(), minSize, maxSize);
+                    addIndexedSplits(fs, file, index, range, splitSize, splits);
+                }
+            }
+            if (!indexed) {
+                splits.add(split);
+            }
+        }
+        return startCheckpoint == null && endCheckpoint == null ? splits
+                : clip(conf, splits, startCheckpoint, endCheckpoint);
+    }
+
+    private static Checkpoint checkpoint(Configuration conf, String key) throws IOException {
+        String path = conf.get(key);
+        if (path == null) {
+            return null;
+        }
+        Path checkpoint = new Path(path);
+        return Checkpoint.read(checkpoint.getFileSystem(conf), checkpoint);
+    }
+
+    /**
+     * Trim each split to the part of its log between the offsets in the checkpoints, dropping any split with no part
+     * there. A log that has been replaced since the start checkpoint is read from its start. A compressed log is a
+     * single split, and its offsets are either 0 or its length, so it is kept whole or dropped.
+     */
+    private static List<InputSplit> clip(Configuration conf, List<InputSplit> splits, Checkpoint start,
+                                         Checkpoint end) throws IOException {
+        List<InputSplit> clipped = Lists.newArrayList();
+        Path last = null;
+        long offset = 0L;
+        for (InputSplit split : splits) {
+            FileSplit fileSplit = (FileSplit) split;
+            Path path = fileSplit.getPath();
+            if (start != null && !path.equals(last)) {
+                FileSystem fs = path.getFileSystem(conf);
+                offset = start.getOffset(fs, fs.getFileStatus(path));
+                last = path;
+            }
+            long from = Math.max(fileSplit.getStart(), offset);
+            long to = fileSplit.getStart() + fileSplit.getLength();
+            if (end != null && end.contains(path)) {
+                to = Math.min(to, end.getOffset(path));
+            }
+            if (from < to) {
+                clipped.add(new FileSplit(path, from, to - from, fileSplit.getLocations()));
+            }
+        }
+        return clipped;
+    }
+
+    /**
+     * Group runs of consecutive feeds in the range into splits of up to splitSize bytes, or of a single feed if it is
+     * larger. Anything appended to the log since it was indexed is read as a final split, starting after the last
+     * complete feed that was indexed.
+     */
+    private static void addIndexedSplits(FileSystem fs, FileStatus file, FeedIndex index, Range range, long splitSize,
+                                         List<InputSplit> splits) throws IOException {
+        long start = -1L;
+        long end = -1L;
+        for (FeedIndex.Feed feed : index.getFeeds()) {
+            if (!range.includes(feed)) {
+                if (start >= 0) {
+                    splits.add(split(fs, file, start, end));
+                    start = -1L;
+                }
+                continue;
+            }
+            if (start >= 0 && feed.end() - start > splitSize) {
+                splits.add(split(fs, file, start, end));
+                start = -1L;
+            }
+            if (start < 0) {
+                start = feed.start;
+            }
+            end = feed.end();
+        }
+        if (start >= 0) {
+            splits.add(split(fs, file, start, end));
+        }
+        if (file.getLen() > index.getLogLength()) {
+            splits.add(split(fs, file, index.getIndexedEnd(), file.getLen()));
+        }
+    }
+
+    private static FileSplit split(FileSystem fs, FileStatus file, long start, long end) throws IOException {
+        BlockLocation[] blocks = fs.getFileBlockLocations(file, start, end - start);
+        return new FileSplit(file.getPath(), start, end - start, blocks.length == 0 ? null : blocks[0].getHosts());
+    }
+
+    /**
+     * The range of event ids and updated times set with the range keys.
+     */
+    static final class Range {
+
+        final long minId;
+        final long maxId;
+        final long from;
+        final long to;
+
+        Range(Configuration conf) {
+            minId = conf.getLong(MIN_ID_KEY, Long.MIN_VALUE);
+            maxId = conf.getLong(MAX_ID_KEY, Long.MAX_VALUE);
+            from = time(conf, FROM_KEY, Long.MIN_VALUE);
+            to = time(conf, TO_KEY, Long.MAX_VALUE);
+        }
+
+        boolean isUnbounded() {
+            return minId == Long.MIN_VALUE && maxId == Long.MAX_VALUE && from == Long.MIN_VALUE && to == Long.MAX_VALUE;
+        }
+
+        /**
+         * @return If the feed may hold events in this range. Feeds without entries are only included in an unbounded
+         *         range, and feeds without an updated time are never excluded by time.
+         */
+        boolean includes(FeedIndex.Feed feed) {
+            if (isUnbounded()) {
+                return true;
+            }
+            if (feed.maxId == 0L || feed.maxId < minId || feed.minId > maxId) {
+                return false;
+            }
+            return feed.updated == FeedIndex.UNKNOWN_TIME || (feed.updated >= from && feed.updated <= to);
+        }
+
+        private static long time(Configuration conf, String key, long defaultValue) {
+            String at = conf.get(key);
+            if (at == null) {
+                return defaultValue;
+            }
+            int offset = Timestamps.offsetMinutes(at.trim());
+            if (offset == Timestamps.UNPARSEABLE) {
+                throw new IllegalArgumentException(String.format(
+                        "%s must be a time such as 2010-11-19T03:55:54-08:00 (was %s)", key, at));
+            }
+            return Timestamps.epochSeconds(at.trim(), offset);
+        }
+    }
+
+}
@@ -0,0 +1,235 @@
+package hubstats;
+
+import com.google.common.base.Charsets;
+import org.apache.hadoop.io.Text;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Parses the events out of the XML of a GitHub timeline feed.
+ */
+abstract class FeedParser {
+
+    /**
+     * Receives each event parsed from a feed.
+     */
+    interface Handler {
+
+        /**
+         * @param builder The builder populated from a single feed entry. It is reset and reused for the next entry.
+         * @throws IOException          If there is an exception writing the event
+         * @throws InterruptedException If the task is interrupted
+         */
+        void event(Event.Builder builder) throws IOException, InterruptedException;
+
+    }
+
+    /**
+     * The available feed parsers.
+     */
+    enum Mode {
+
+        /**
+         * Scan the raw UTF-8 bytes for the few elements needed, without decoding the rest of the feed
+         */
+        BYTES,
+
+        /**
+         * Parse the whole feed with StAX
+         */
+        STAX;
+
+        FeedParser newParser(TitleExtractor titles) {
+            return this == STAX ? new StaxFeedParser(titles) : new ByteFeedParser(titles);
+        }
+    }
+
+    static final BytePattern ENTRY_START = new BytePattern("<entry>");
+    static final BytePattern ID_START = new BytePattern("<id>");
+    static final BytePattern ID_END = new BytePattern("</id>");
+    static final BytePattern EVENT_SUFFIX = new BytePattern("Event/");
+
+    final TitleExtractor titles;
+
+    private long highWaterMark;
+    private int skippedEntries;
+    private int skippedBytes;
+
+    FeedParser(TitleExtractor titles) {
+        this.titles = titles;
+    }
+
+    /**
+     * Parse the entries in a feed, stopping at the first entry with an id at or below the high-water mark.
+     *
+     * @param feed    The XML of the feed
+     * @param handler Called with each event in the order they appear in the feed
+     * @throws IOException          If there is an exception writing events
+     * @throws InterruptedException If the task is interrupted
+     */
+    final void parse(Text feed, Handler handler) throws IOException, InterruptedException {
+        skippedEntries = 0;
+        skippedBytes = 0;
+        parseEntries(feed, handler);
+    }
+
+    /**
+     * Parse the entries in a feed held between the position and limit of a buffer, such as a slice of a mapped log,
+     * stopping at the first entry with an id at or below the high-water mark. The position and limit are left as they
+     * are.
+     *
+     * @param feed    The XML of the feed
+     * @param handler Called with each event in the order they appear in the feed
+     * @throws IOException          If there is an exception writing events
+     * @throws InterruptedException If the task is interrupted
+     */
+    final void parse(ByteBuffer feed, Handler handler) throws IOException, InterruptedException {
+        skippedEntries = 0;
+        skippedBytes = 0;
+        parseEntries(feed, feed.position(), feed.limit(), handler);
+    }
+
+    /**
+     * Parse the entries in a feed, calling skipFrom if parsing stops at the high-water mark.
+     */
+    abstract void parseEntries(Text feed, Handler handler) throws IOException, InterruptedException;
+
+    /**
+     * Parse the entries in feed[from, to), calling skipFrom if parsing stops at the high-water mark. By default the
+     * feed is copied and parsed as Text; parsers that can read the buffer in place override this.
+     */
+    void parseEntries(ByteBuffer feed, int from, int to, Handler handler) throws IOException, InterruptedException {
+        byte[] bytes = new byte[to - from];
+        ByteBuffer copy = feed.duplicate();
+        copy.position(from);
+        copy.get(bytes);
+        Text text = new Text();
+        text.set(bytes);
+        parseEntries(text, handler);
+    }
+
+    /**
+     * Timeline feeds list entries newest first, so once an entry has an id that an earlier feed has already covered,
+     * so do all the entries after it.
+     *
+     * @param highWaterMark The highest event id in the earlier feeds, or 0 to parse every entry
+     */
+    void setHighWaterMark(long highWaterMark) {
+        this.highWaterMark = highWaterMark;
+    }
+
+    /**
+     * @return If parsing should stop at the entry with this id
+     */
+    final boolean isBelowHighWaterMark(long eventId) {
+        return eventId > 0 && eventId <= highWaterMark;
+    }
+
+    /**
+     * Record that parsing stopped at the entry starting at offset, skipping it and all the entries after it.
+     */
+    final void skipFrom(byte[] bytes, int offset, int length) {
+        skippedEntries = countEntries(bytes, offset, length);
+        skippedBytes = length - offset;
+    }
+
+    /**
+     * Record that parsing stopped at the entry starting at offset, skipping it and all the entries up to to.
+     */
+    final void skipFrom(ByteBuffer feed, int offset, int to) {
+        skippedEntries = countEntries(feed, offset, to);
+        skippedBytes = to - offset;
+    }
+
+    /**
+     * @return The number of entries skipped by the last call to parse
+     */
+    int getSkippedEntries() {
+        return skippedEntries;
+    }
+
+    /**
+     * @return The number of bytes from the first entry skipped by the last call to parse to the end of the feed
+     */
+    int getSkippedBytes() {
+        return skippedBytes;
+    }
+
+    /**
+     * @return The offset of the digits that end an entry id in bytes[from, to) such as
+     *         <code>tag:github.com,2008:PushEvent/1007541708</code>, after EVENT_SUFFIX, or -1 if the id does not end
+     *         this way
+     */
+    static int idDigits(byte[] bytes, int from, int to) {
+        int digits = to;
+        while (digits > from && bytes[digits - 1] >= '0' && bytes[digits - 1] <= '9') {
+            digits--;
+        }
+        int suffix = digits - EVENT_SUFFIX.length();
+        if (digits == to || suffix < from || !EVENT_SUFFIX.matchesAt(bytes, suffix, digits)) {
+            return -1;
+        }
+        return digits;
+    }
+
+    /**
+     * @return The event id of the entry id in bytes[from, to), or 0 if it is not in the form idDigits reads
+     * @throws NumberFormatException If the id is too large for a long, as it is for HubStats.ID_PATTERN
+     */
+    static long parseId(byte[] bytes, int from, int to) {
+        int digits = idDigits(bytes, from, to);
+        if (digits < 0) {
+            return 0L;
+        }
+        if (to - digits > TitleTokenizer.MAX_LONG_DIGITS) {
+            return Long.parseLong(new String(bytes, digits, to - digits, Charsets.US_ASCII));
+        }
+        return parseDigits(bytes, digits, to);
+    }
+
+    /**
+     * Find the event id of an entry for the jobs that only index, sample or key entries by it, which pass over an
+     * entry rather than fail on it.
+     *
+     * @return The event id of the first id element in bytes[from, to), such as an entry, or 0 if it has none in the
+     *         form idDigits reads or has more digits than are certain to fit in a long
+     */
+    static long entryId(byte[] bytes, int from, int to) {
+        int idStart = ID_START.indexIn(bytes, from, to);
+        int idEnd = idStart < 0 ? -1 : ID_END.indexIn(bytes, idStart, to);
+        if (idEnd < 0) {
+            return 0L;
+        }
+        int digits = idDigits(bytes, idStart + ID_START.length(), idEnd);
+        return digits < 0 || idEnd - digits > TitleTokenizer.MAX_LONG_DIGITS ? 0L : parseDigits(bytes, digits, idEnd);
+    }
+
+    /**
+     * @return The number in bytes[from, to), which holds no more than TitleTokenizer.MAX_LONG_DIGITS digits
+     */
+    private static long parseDigits(byte[] bytes, int from, int to) {
+        long value = 0L;
+        for (int i = from; i < to; i++) {
+            value = value * 10 + (bytes[i] - '0');
+        }
+        return value;
+    }
+
+    static int countEntries(byte[] bytes, int from, int to) {
+        int count = 0;
+        for (int i = ENTRY_START.indexIn(bytes, from, to); i >= 0; i = ENTRY_START.indexIn(bytes, i + 1, to)) {
+            count++;
+        }
+        return count;
+    }
+
+    static int countEntries(ByteBuffer feed, int from, int to) {
+        int count = 0;
+        for (int i = ENTRY_START.indexIn(feed, from, to); i >= 0; i = ENTRY_START.indexIn(feed, i + 1, to)) {
+            count++;
+        }
+        return count;
+    }
+
+}
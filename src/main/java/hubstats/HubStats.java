@@ -1,30 +1,26 @@
 package hubstats;
 
-import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
-import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
-import org.apache.mahout.classifier.bayes.XmlInputFormat;
 
-import javax.xml.stream.XMLInputFactory;
-import javax.xml.stream.XMLStreamConstants;
-import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.XMLStreamReader;
 import java.io.IOException;
-import java.io.StringReader;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -37,34 +33,204 @@ import java.util.regex.Pattern;
  */
 public class HubStats extends Configured implements Tool {
 
-    private static final List<EventExtractor> EVENT_EXTRACTORS = Lists.newArrayList(
-            new IssueExtractor(),
-            new PushExtractor(),
-            new CreateExtractor(),
-            new WatchExtractor(),
-            new MemberExtractor(),
-            new ForkExtractor(),
-            new ForkApplyExtractor(),
-            new PublicExtractor(),
-            new GollumExtractor(),
-            new DeleteExtractor(),
-            new DownloadExtractor(),
-            new FollowExtractor(),
-            new GistExtractor(),
-            new PullRequestExtractor(),
-            new CommitCommentExtractor()
-    );
-
-    private static final Map<EventType, EventExtractor> TYPE_EXTRACTOR_MAP =
-            Maps.newHashMapWithExpectedSize(EVENT_EXTRACTORS.size());
-
-    static {
-        for (EventExtractor e : EVENT_EXTRACTORS) {
-            TYPE_EXTRACTOR_MAP.put(e.getEventType(), e);
-        }
+    /**
+     * Set to true to map each Atom entry as a separate record rather than each whole feed.
+     *
+     * @see AtomEntryInputFormat
+     */
+    public static final String ENTRY_RECORDS_KEY = "hubstats.input.entries";
+
+    /**
+     * The feed parser used by EventMapper, either "bytes" (the default) or "stax".
+     *
+     * @see FeedParser.Mode
+     */
+    public static final String PARSER_KEY = "hubstats.parser";
+
+    /**
+     * How EventMapper extracts fields from entry titles: "tokens" (the default), "regex", or "parity" to use the
+     * tokenizer and check it against the regular expressions.
+     *
+     * @see TitleExtractor.Mode
+     */
+    public static final String EXTRACTOR_KEY = "hubstats.extractor";
+
+    /**
+     * How events are carried from the mappers to the reducers: "text" (the default) keyed by event id, or "binary" to
+     * use EventWritable. The output is the same either way.
+     *
+     * @see Shuffle
+     */
+    public static final String SHUFFLE_KEY = "hubstats.shuffle";
+
+    /**
+     * What the job writes: "text" (the default), a line for each event, "events", an event log that later jobs can read
+     * with EventInputFormat, "columns", a columnar store read with ColumnarEventInputFormat, "partitioned", lines in a
+     * directory for each day and event type, or "encoded", lines with names replaced by their ids in a dictionary. All
+     * but text are always shuffled as binary.
+     *
+     * @see Output
+     */
+    public static final String OUTPUT_KEY = "hubstats.output";
+
+    /**
+     * How the time of each event is written in lines: "iso" (the default) as it was in the timeline, such as
+     * 2010-11-19T03:55:54-08:00, or "epoch" as seconds since the epoch. Times that were not in the form of the timeline
+     * are always written as they were.
+     */
+    public static final String TIME_FORMAT_KEY = "hubstats.output.time";
+
+    /**
+     * How events are divided between the reducers: "hash" (the default) by the hash of the event id, or "range" to
+     * give each reducer a contiguous range of ids chosen by sampling the input, so that the part files in order hold
+     * the events in order.
+     *
+     * @see Partitioning
+     */
+    public static final String PARTITIONER_KEY = "hubstats.partitioner";
+
+    /**
+     * The number of recently seen event ids each mapper remembers so that it can drop duplicates before they are
+     * spilled (default 65536). Set to 0 to leave all duplicates to the combiner.
+     *
+     * @see EventIdCache
+     */
+    public static final String DEDUP_CACHE_KEY = "hubstats.dedup.cache";
+
+    static final int DEFAULT_DEDUP_CACHE_SIZE = 1 << 16;
+
+    /**
+     * Set to false to parse every entry of every feed. By default each mapper stops parsing a feed at the first entry
+     * with an id no higher than any it has seen in the earlier feeds of its split, as the rest of the feed repeats
+     * what those feeds held.
+     */
+    public static final String HIGH_WATER_MARK_KEY = "hubstats.highwater";
+
+    /**
+     * How each mapper recognises records that repeat a recent one, so they can be dropped before parsing: "header"
+     * (the default) by the feed's updated element and first entry id, "full" by every byte of the record, or "none".
+     *
+     * @see FeedFingerprints.Mode
+     */
+    public static final String FINGERPRINT_KEY = "hubstats.fingerprint";
+
+    /**
+     * Set to true to read only what has been appended to the logs since the last incremental run, writing its output
+     * to a new delta directory within the output directory.
+     *
+     * @see Checkpoint
+     */
+    public static final String INCREMENTAL_KEY = "hubstats.incremental";
+
+    public enum Counters {
+        /**
+         * Duplicate events dropped by the mapper's cache of recent event ids
+         */
+        CACHED_DUPLICATES,
+        /**
+         * Duplicate events dropped by the combiner
+         */
+        COMBINED_DUPLICATES,
+        /**
+         * Entries not parsed because they were below the high-water mark
+         */
+        SKIPPED_ENTRIES,
+        /**
+         * Bytes of feeds not parsed because their entries were below the high-water mark
+         */
+        SKIPPED_BYTES,
+        /**
+         * Records dropped without parsing because they repeated a recent record
+         */
+        FINGERPRINT_HITS,
+        /**
+         * Records that did not repeat a recent record
+         */
+        FINGERPRINT_MISSES
+    }
+
+    enum Shuffle {
+        TEXT {
+            void configure(Job job) {
+                job.setMapperClass(EventMapper.class);
+                job.setMapOutputKeyClass(LongWritable.class);
+                job.setMapOutputValueClass(Text.class);
+                job.setCombinerClass(EventCombiner.class);
+                job.setReducerClass(EventReducer.class);
+            }
+        },
+        BINARY {
+            void configure(Job job) {
+                job.setMapperClass(BinaryEventMapper.class);
+                job.setMapOutputKeyClass(EventWritable.class);
+                job.setMapOutputValueClass(NullWritable.class);
+                job.setCombinerClass(BinaryEventCombiner.class);
+                job.setReducerClass(EventLogReducer.class);
+            }
+        };
+
+        abstract void configure(Job job);
+    }
+
+    enum Output {
+        TEXT {
+            void configure(Job job) {
+                // events shuffled as binary reach the writer whole, so it takes their statistics from them
+                job.setOutputValueClass(job.getMapOutputKeyClass() == EventWritable.class
+                        ? EventWritable.class : Text.class);
+                job.setOutputFormatClass(EventTextOutputFormat.class);
+            }
+        },
+        EVENTS {
+            void configure(Job job) {
+                Shuffle.BINARY.configure(job);
+                job.setOutputValueClass(EventWritable.class);
+                job.setOutputFormatClass(EventOutputFormat.class);
+            }
+        },
+        COLUMNS {
+            void configure(Job job) throws IOException {
+                EVENTS.configure(job);
+                job.setOutputFormatClass(ColumnarEventOutputFormat.class);
+            }
+        },
+        PARTITIONED {
+            void configure(Job job) throws IOException {
+                EVENTS.configure(job);
+                job.setOutputFormatClass(PartitionedEventOutputFormat.class);
+            }
+        },
+        ENCODED {
+            void configure(Job job) throws IOException {
+                EVENTS.configure(job);
+                EncodedEventOutputFormat.addDictionary(job);
+                job.setOutputFormatClass(EncodedEventOutputFormat.class);
+            }
+        };
+
+        abstract void configure(Job job) throws IOException;
+    }
+
+    enum Partitioning {
+        HASH {
+            void configure(Job job) {
+            }
+        },
+        RANGE {
+            void configure(Job job) throws IOException {
+                if (job.getNumReduceTasks() > 1) {
+                    EventIdSampler.configure(job, new FeedInputFormat());
+                    job.setPartitionerClass(EventIdPartitioner.class);
+                }
+            }
+        };
+
+        /**
+         * Set the partitioner of the job, once its input has been set.
+         */
+        abstract void configure(Job job) throws IOException;
     }
 
-    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newFactory();
     static final Pattern ID_PATTERN = Pattern.compile("^.*:([A-Za-z]+)Event/([0-9]+)$");
     static final Pattern ISSUES_PATTERN = Pattern.compile("^([^ ]+) ([^ ]+) issue ([0-9]+) on ([^/]+)/(.*)$");
     static final Pattern PUSH_PATTERN = Pattern.compile("^([^ ]+) pushed to ([^ ]+) at ([^/]+)/(.*)$");
@@ -83,7 +249,60 @@ public class HubStats extends Configured implements Tool {
     static final Pattern COMMENT_PATTERN = Pattern.compile("^([^ ]+) commented on ([^/]+)/(.*)$");
     static final Pattern FORK_APPLY_PATTERN = Pattern.compile("^([^ ]+) applied fork commits to ([^/]+)/(.*)$");
 
-    public static final class EventMapper extends Mapper<LongWritable, Text, LongWritable, Text> {
+    /**
+     * Parse events from feeds, leaving how each event is written to subclasses.
+     *
+     * @param <K> The output key type
+     * @param <V> The output value type
+     */
+    abstract static class FeedMapper<K, V> extends Mapper<LongWritable, Text, K, V> {
+
+        private FeedParser parser;
+        private FeedFingerprints fingerprints;
+        private Counter fingerprintHits;
+        private Counter fingerprintMisses;
+        private EventIdCache cache;
+        private Counter duplicates;
+        private Counter skippedEntries;
+        private Counter skippedBytes;
+        private Context context;
+
+        // feeds are identified by their key, which AtomEntryInputFormat gives to every entry of a feed
+        private boolean highWater;
+        private long feedKey = -1;
+        private long highestEventId;
+        private boolean feedSkipped;
+
+        private final FeedParser.Handler writer = new FeedParser.Handler() {
+            public void event(Event.Builder builder) throws IOException, InterruptedException {
+                highestEventId = Math.max(highestEventId, builder.getEventId());
+                if (cache != null && !cache.add(builder.getEventId())) {
+                    duplicates.increment(1);
+                    return;
+                }
+                write(builder, context);
+            }
+        };
+
+        @Override
+        protected void setup(Context context) throws IOException {
+            String extractor = context.getConfiguration().get(EXTRACTOR_KEY, TitleExtractor.Mode.TOKENS.name());
+            String mode = context.getConfiguration().get(PARSER_KEY, FeedParser.Mode.BYTES.name());
+            parser = FeedParser.Mode.valueOf(mode.toUpperCase()).newParser(
+                    new TitleExtractor(TitleExtractor.Mode.valueOf(extractor.toUpperCase())));
+            FeedFingerprints.Mode fingerprint = FeedFingerprints.Mode.valueOf(context.getConfiguration().get(
+                    FINGERPRINT_KEY, FeedFingerprints.Mode.HEADER.name()).toUpperCase());
+            fingerprints = fingerprint == FeedFingerprints.Mode.NONE ? null : new FeedFingerprints(fingerprint);
+            fingerprintHits = context.getCounter(Counters.FINGERPRINT_HITS);
+            fingerprintMisses = context.getCounter(Counters.FINGERPRINT_MISSES);
+            int cacheSize = context.getConfiguration().getInt(DEDUP_CACHE_KEY, DEFAULT_DEDUP_CACHE_SIZE);
+            cache = cacheSize > 0 ? new EventIdCache(cacheSize) : null;
+            duplicates = context.getCounter(Counters.CACHED_DUPLICATES);
+            highWater = context.getConfiguration().getBoolean(HIGH_WATER_MARK_KEY, true);
+            highestEventId = highWaterSeed(context.getConfiguration(), context.getInputSplit());
+            skippedEntries = context.getCounter(Counters.SKIPPED_ENTRIES);
+            skippedBytes = context.getCounter(Counters.SKIPPED_BYTES);
+        }
 
         /**
          * Parse the feed xml and extract the push event id and repository name
@@ -95,99 +314,231 @@ public class HubStats extends Configured implements Tool {
          * @throws InterruptedException If this job is interrupted
          */
         public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
-            if (value.toString().trim().length() == 0) {
+            if (isBlank(value)) {
+                return;
+            }
+            this.context = context;
+            if (fingerprints != null && isRepeat(fingerprints.isRepeat(value))) {
+                return;
+            }
+            if (isSkipped(key.get())) {
+                skippedEntries.increment(FeedParser.countEntries(value.getBytes(), 0, value.getLength()));
+                skippedBytes.increment(value.getLength());
+                return;
+            }
+            parser.parse(value, writer);
+            countSkipped();
+        }
+
+        /**
+         * Parse a feed held between the position and limit of a buffer, such as a slice of a log mapped by
+         * MappedFeedReader, in place, as map parses a feed held in Text.
+         *
+         * @param key     The offset of the XML feed within the larger timeline
+         * @param feed    The XML feed
+         * @param context The job context
+         * @throws IOException          If there is an exception reading or writing data
+         * @throws InterruptedException If this job is interrupted
+         */
+        void map(long key, ByteBuffer feed, Context context) throws IOException, InterruptedException {
+            if (isBlank(feed)) {
                 return;
             }
+            this.context = context;
+            if (fingerprints != null && isRepeat(fingerprints.isRepeat(feed))) {
+                return;
+            }
+            if (isSkipped(key)) {
+                skippedEntries.increment(FeedParser.countEntries(feed, feed.position(), feed.limit()));
+                skippedBytes.increment(feed.remaining());
+                return;
+            }
+            parser.parse(feed, writer);
+            countSkipped();
+        }
 
-            try {
-                XMLStreamReader sr = INPUT_FACTORY.createXMLStreamReader(new StringReader(value.toString()));
-
-                LongWritable id = new LongWritable();
-                Text eventText = new Text();
-
-                Event.Builder builder = null;
-                for (int event = sr.next(); event != XMLStreamConstants.END_DOCUMENT; event = sr.next()) {
-                    if (event == XMLStreamConstants.START_ELEMENT) {
-                        if (sr.getLocalName().equals("entry")) {
-                            builder = new Event.Builder();
-                        } else if (builder == null) {
-                            continue;
-                        } else if (sr.getLocalName().equals("id")) {
-                            Matcher m = ID_PATTERN.matcher(sr.getElementText());
-                            if (m.matches()) {
-                                builder.type(EventType.valueOf(m.group(1)));
-                                long eventId = Long.parseLong(m.group(2));
-                                id.set(eventId);
-                                builder.eventId(eventId);
-                            }
-                        } else if (sr.getLocalName().equals("published")) {
-                            builder.at(sr.getElementText());
-                        } else if (sr.getLocalName().equals("title")) {
-                            boolean hasEvent = TYPE_EXTRACTOR_MAP.get(builder.getType()).extract(sr.getElementText(), builder);
-                            if (!hasEvent) {
-                                throw new IllegalStateException(String.format("Event not matched: %s", builder.getType()));
-                            }
-                        }
-                    } else if (event == XMLStreamConstants.END_ELEMENT && sr.getLocalName().equals("entry")) {
-                        assert builder != null;
-                        eventText.set(builder.build().toString());
-                        context.write(id, eventText);
-                    }
+        /**
+         * Parse each feed of a mapped log in place, as run parses each record of a split.
+         *
+         * @param reader  The feeds
+         * @param context The job context, which is not read from
+         * @throws IOException          If there is an exception reading or writing data
+         * @throws InterruptedException If this job is interrupted
+         */
+        void run(MappedFeedReader reader, Context context) throws IOException, InterruptedException {
+            setup(context);
+            while (reader.next()) {
+                map(reader.getOffset(), reader.getFeed(), context);
+            }
+            cleanup(context);
+        }
+
+        /**
+         * @return The highest event id the previous incremental run read from the log of the split, so that feeds
+         *         repeating what it read stop at once, or 0 if the log is new or replaced or the run is not incremental
+         */
+        static long highWaterSeed(Configuration conf, InputSplit split) throws IOException {
+            String checkpoint = conf.get(FeedInputFormat.START_CHECKPOINT_KEY);
+            if (checkpoint == null || !(split instanceof FileSplit)) {
+                return 0L;
+            }
+            Path path = new Path(checkpoint);
+            Path log = ((FileSplit) split).getPath();
+            FileSystem fs = log.getFileSystem(conf);
+            return Checkpoint.read(path.getFileSystem(conf), path).getMaxEventId(fs, fs.getFileStatus(log));
+        }
+
+        private boolean isRepeat(boolean repeat) {
+            if (repeat) {
+                fingerprintHits.increment(1);
+            } else {
+                fingerprintMisses.increment(1);
+            }
+            return repeat;
+        }
+
+        /**
+         * @return If the rest of the feed with this key is skipped, having reached the high-water mark
+         */
+        private boolean isSkipped(long key) {
+            if (key != feedKey) {
+                if (highWater) {
+                    parser.setHighWaterMark(highestEventId);
                 }
+                feedKey = key;
+                feedSkipped = false;
+            }
+            return feedSkipped;
+        }
+
+        private void countSkipped() {
+            if (parser.getSkippedEntries() > 0) {
+                feedSkipped = true;
+                skippedEntries.increment(parser.getSkippedEntries());
+                skippedBytes.increment(parser.getSkippedBytes());
             }
-            catch (XMLStreamException xse) {
-                xse.printStackTrace(System.err);
+        }
+
+        private static boolean isBlank(Text value) {
+            byte[] bytes = value.getBytes();
+            for (int i = 0; i < value.getLength(); i++) {
+                if (bytes[i] > ' ') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isBlank(ByteBuffer feed) {
+            for (int i = feed.position(); i < feed.limit(); i++) {
+                if (feed.get(i) > ' ') {
+                    return false;
+                }
             }
+            return true;
+        }
+
+        /**
+         * Write a parsed event to the context.
+         *
+         * @param builder The builder populated with the event, which is reused for the next entry
+         * @param context The job context
+         * @throws IOException          If there is an exception writing data
+         * @throws InterruptedException If this job is interrupted
+         */
+        protected abstract void write(Event.Builder builder, Context context) throws IOException, InterruptedException;
+
+    }
+
+    public static final class EventMapper extends FeedMapper<LongWritable, Text> {
+
+        private final LongWritable id = new LongWritable();
+        private final Text eventText = new Text();
+        private final Event event = new Event();
+        private Timestamps.Format timeFormat;
+
+        @Override
+        protected void setup(Context context) throws IOException {
+            super.setup(context);
+            timeFormat = timeFormat(context.getConfiguration());
         }
 
+        @Override
+        protected void write(Event.Builder builder, Context context) throws IOException, InterruptedException {
+            id.set(builder.getEventId());
+            builder.buildInto(event).writeTo(eventText, timeFormat);
+            context.write(id, eventText);
+        }
+
+    }
+
+    public static final class BinaryEventMapper extends FeedMapper<EventWritable, NullWritable> {
+
+        private final Event event = new Event();
+        private final EventWritable eventWritable = new EventWritable(event);
+
+        @Override
+        protected void write(Event.Builder builder, Context context) throws IOException, InterruptedException {
+            builder.buildInto(event);
+            context.write(eventWritable, NullWritable.get());
+        }
 
     }
 
     static final class IssueExtractor implements EventExtractor {
 
+        private final Matcher matcher = ISSUES_PATTERN.matcher("");
+
         public EventType getEventType() {
             return EventType.Issues;
         }
 
         public boolean extract(String text, Event.Builder builder) {
-            Matcher m = HubStats.ISSUES_PATTERN.matcher(text);
+            Matcher m = matcher.reset(text);
             if (m.matches()) {
                 builder.actor(m.group(1));
                 builder.subType(m.group(2));
                 builder.alternateId(Long.parseLong(m.group(3)));
                 builder.repoAccount(m.group(4));
                 builder.repoName(m.group(5));
+                return true;
             }
-            return m.matches();
+            return false;
         }
     }
 
     static final class PushExtractor implements EventExtractor {
 
+        private final Matcher matcher = PUSH_PATTERN.matcher("");
+
         public EventType getEventType() {
             return EventType.Push;
         }
 
         public boolean extract(String text, Event.Builder builder) {
-            Matcher m = HubStats.PUSH_PATTERN.matcher(text);
+            Matcher m = matcher.reset(text);
             if (m.matches()) {
                 builder.actor(m.group(1));
                 builder.branch(m.group(2));
                 builder.repoAccount(m.group(3));
                 builder.repoName(m.group(4));
+                return true;
             }
-            return m.matches();
+            return false;
         }
     }
 
     static final class CreateExtractor implements EventExtractor {
 
+        private final Matcher branch = CREATE_BRANCH_PATTERN.matcher("");
+        private final Matcher repo = CREATE_REPO_PATTERN.matcher("");
+
         public EventType getEventType() {
             return EventType.Create;
         }
 
         public boolean extract(String text, Event.Builder builder) {
-            Matcher m = CREATE_BRANCH_PATTERN.matcher(text);
+            Matcher m = branch.reset(text);
             if (m.matches()) {
                 builder.actor(m.group(1));
                 if (m.group(2).equals("tag")) {
@@ -197,130 +548,151 @@ public class HubStats extends Configured implements Tool {
                 }
                 builder.repoAccount(m.group(4));
                 builder.repoName(m.group(5));
-            } else {
-                m = CREATE_REPO_PATTERN.matcher(text);
-                if (m.matches()) {
-                    builder.actor(m.group(1));
-                    builder.repoAccount(m.group(1));
-                    builder.repoName(m.group(2));
-                }
+                return true;
+            }
+            m = repo.reset(text);
+            if (m.matches()) {
+                builder.actor(m.group(1));
+                builder.repoAccount(m.group(1));
+                builder.repoName(m.group(2));
+                return true;
             }
-            return m.matches();
+            return false;
         }
     }
 
     static final class WatchExtractor implements EventExtractor {
 
+        private final Matcher matcher = WATCH_PATTERN.matcher("");
+
         public EventType getEventType() {
             return EventType.Watch;
         }
 
         public boolean extract(String text, Event.Builder builder) {
-            Matcher m = HubStats.WATCH_PATTERN.matcher(text);
+            Matcher m = matcher.reset(text);
             if (m.matches()) {
                 builder.actor(m.group(1));
                 builder.repoAccount(m.group(2));
                 builder.repoName(m.group(3));
+                return true;
             }
-            return m.matches();
+            return false;
         }
     }
 
     static final class MemberExtractor implements EventExtractor {
 
+        private final Matcher matcher = MEMBER_PATTERN.matcher("");
+
         public EventType getEventType() {
             return EventType.Member;
         }
 
         public boolean extract(String text, Event.Builder builder) {
-            Matcher m = MEMBER_PATTERN.matcher(text);
+            Matcher m = matcher.reset(text);
             if (m.matches()) {
                 builder.repoAccount(m.group(1));
                 builder.subType(m.group(2));
                 builder.actor(m.group(3));
                 builder.repoName(m.group(4));
+                return true;
             }
-            return m.matches();
+            return false;
         }
     }
 
     static final class ForkExtractor implements EventExtractor {
 
+        private final Matcher matcher = FORK_PATTERN.matcher("");
+
         public EventType getEventType() {
             return EventType.Fork;
         }
 
         public boolean extract(String text, Event.Builder builder) {
-            Matcher m = FORK_PATTERN.matcher(text);
+            Matcher m = matcher.reset(text);
             if (m.matches()) {
                 builder.actor(m.group(1));
                 builder.repoAccount(m.group(2));
                 builder.repoName(m.group(3));
+                return true;
             }
-            return m.matches();
+            return false;
         }
     }
 
     static final class ForkApplyExtractor implements EventExtractor {
 
+        private final Matcher matcher = FORK_APPLY_PATTERN.matcher("");
+
         public EventType getEventType() {
             return EventType.ForkApply;
         }
 
         public boolean extract(String text, Event.Builder builder) {
-            Matcher m = FORK_APPLY_PATTERN.matcher(text);
+            Matcher m = matcher.reset(text);
             if (m.matches()) {
                 builder.actor(m.group(1));
                 builder.repoAccount(m.group(2));
                 builder.repoName(m.group(3));
+                return true;
             }
-            return m.matches();
+            return false;
         }
     }
 
     static final class PublicExtractor implements EventExtractor {
 
+        private final Matcher matcher = PUBLIC_PATTERN.matcher("");
+
         public EventType getEventType() {
             return EventType.Public;
         }
 
         public boolean extract(String text, Event.Builder builder) {
-            Matcher m = PUBLIC_PATTERN.matcher(text);
+            Matcher m = matcher.reset(text);
             if (m.matches()) {
                 builder.actor(m.group(1));
                 builder.repoAccount(m.group(1));
                 builder.repoName(m.group(2));
+                return true;
             }
-            return m.matches();
+            return false;
         }
     }
 
     static final class GollumExtractor implements EventExtractor {
 
+        private final Matcher matcher = GOLLUM_PATTERN.matcher("");
+
         public EventType getEventType() {
             return EventType.Gollum;
         }
 
         public boolean extract(String text, Event.Builder builder) {
-            Matcher m = GOLLUM_PATTERN.matcher(text);
+            Matcher m = matcher.reset(text);
             if (m.matches()) {
                 builder.actor(m.group(1));
                 builder.subType(m.group(2));
                 builder.repoAccount(m.group(3));
                 builder.repoName(m.group(4));
+                return true;
             }
-            return m.matches();
+            return false;
         }
     }
 
     static final class DeleteExtractor implements EventExtractor {
 
+        private final Matcher matcher = DELETE_PATTERN.matcher("");
+
         public EventType getEventType() {
             return EventType.Delete;
         }
 
         public boolean extract(String text, Event.Builder builder) {
-            Matcher m = DELETE_PATTERN.matcher(text);
+            Matcher m = matcher.reset(text);
             if (m.matches()) {
                 builder.actor(m.group(1));
                 builder.repoAccount(m.group(1));
@@ -330,95 +702,111 @@ public class HubStats extends Configured implements Tool {
                     builder.branch(m.group(3));
                 }
                 builder.repoName(m.group(4));
+                return true;
             }
-            return m.matches();
+            return false;
         }
     }
 
     static final class DownloadExtractor implements EventExtractor {
 
+        private final Matcher matcher = DOWNLOAD_PATTERN.matcher("");
+
         public EventType getEventType() {
             return EventType.Download;
         }
 
         public boolean extract(String text, Event.Builder builder) {
-            Matcher m = DOWNLOAD_PATTERN.matcher(text);
+            Matcher m = matcher.reset(text);
             if (m.matches()) {
                 builder.actor(m.group(1));
                 builder.subType(m.group(2));
                 builder.repoAccount(m.group(3));
                 builder.repoName(m.group(4));
+                return true;
             }
-            return m.matches();
+            return false;
         }
     }
 
     static final class FollowExtractor implements EventExtractor {
 
+        private final Matcher matcher = FOLLOW_PATTERN.matcher("");
+
         public EventType getEventType() {
             return EventType.Follow;
         }
 
         public boolean extract(String text, Event.Builder builder) {
-            Matcher m = FOLLOW_PATTERN.matcher(text);
+            Matcher m = matcher.reset(text);
             if (m.matches()) {
                 builder.actor(m.group(1));
                 builder.repoAccount(m.group(2));
+                return true;
             }
-            return m.matches();
+            return false;
         }
     }
 
     static final class GistExtractor implements EventExtractor {
 
+        private final Matcher matcher = GIST_PATTERN.matcher("");
+
         public EventType getEventType() {
             return EventType.Gist;
         }
 
         public boolean extract(String text, Event.Builder builder) {
-            Matcher m = GIST_PATTERN.matcher(text);
+            Matcher m = matcher.reset(text);
             if (m.matches()) {
                 builder.actor(m.group(1));
                 builder.subType(m.group(2));
                 builder.alternateId(Long.parseLong(m.group(3)));
+                return true;
             }
-            return m.matches();
+            return false;
         }
     }
 
     static final class PullRequestExtractor implements EventExtractor {
 
+        private final Matcher matcher = PULLREQ_PATTERN.matcher("");
+
         public EventType getEventType() {
             return EventType.PullRequest;
         }
 
         public boolean extract(String text, Event.Builder builder) {
-            Matcher m = PULLREQ_PATTERN.matcher(text);
+            Matcher m = matcher.reset(text);
             if (m.matches()) {
                 builder.actor(m.group(1));
                 builder.subType(m.group(2));
                 builder.alternateId(Long.parseLong(m.group(3)));
                 builder.repoAccount(m.group(4));
                 builder.repoName(m.group(5));
+                return true;
             }
-            return m.matches();
+            return false;
         }
     }
 
     static final class CommitCommentExtractor implements EventExtractor {
 
+        private final Matcher matcher = COMMENT_PATTERN.matcher("");
+
         public EventType getEventType() {
             return EventType.CommitComment;
         }
 
         public boolean extract(String text, Event.Builder builder) {
-            Matcher m = COMMENT_PATTERN.matcher(text);
+            Matcher m = matcher.reset(text);
             if (m.matches()) {
                 builder.actor(m.group(1));
                 builder.repoAccount(m.group(2));
                 builder.repoName(m.group(3));
+                return true;
             }
-            return m.matches();
+            return false;
         }
     }
 
@@ -438,31 +826,115 @@ public class HubStats extends Configured implements Tool {
         }
     }
 
+    /**
+     * Remove duplicate events before they are shuffled, counting those removed.
+     */
+    public static final class EventCombiner extends Reducer<LongWritable, Text, LongWritable, Text> {
+        @Override
+        public void reduce(LongWritable key, Iterable<Text> values, Context context)
+                throws IOException, InterruptedException {
+            Iterator<Text> i = values.iterator();
+            if (i.hasNext()) {
+                context.write(key, i.next());
+            }
+            countDuplicates(i, context.getCounter(Counters.COMBINED_DUPLICATES));
+        }
+    }
+
+    /**
+     * Remove duplicate events before they are shuffled, counting those removed.
+     */
+    public static final class BinaryEventCombiner
+            extends Reducer<EventWritable, NullWritable, EventWritable, NullWritable> {
+        @Override
+        public void reduce(EventWritable key, Iterable<NullWritable> values, Context context)
+                throws IOException, InterruptedException {
+            Iterator<NullWritable> i = values.iterator();
+            if (i.hasNext()) {
+                context.write(key, i.next());
+            }
+            countDuplicates(i, context.getCounter(Counters.COMBINED_DUPLICATES));
+        }
+    }
+
+    private static void countDuplicates(Iterator<?> remaining, Counter counter) {
+        long count = 0;
+        for (; remaining.hasNext(); remaining.next()) {
+            count++;
+        }
+        counter.increment(count);
+    }
+
+    /**
+     * Remove duplicate events, writing the first of each as an EventWritable for the output format to write as it
+     * needs.
+     */
+    public static final class EventLogReducer
+            extends Reducer<EventWritable, NullWritable, LongWritable, EventWritable> {
+
+        private final LongWritable id = new LongWritable();
+
+        @Override
+        public void reduce(EventWritable key, Iterable<NullWritable> values, Context context)
+                throws IOException, InterruptedException {
+            id.set(key.get().getEventId());
+            context.write(id, key);
+        }
+    }
+
+    static Timestamps.Format timeFormat(Configuration conf) {
+        return Timestamps.Format.valueOf(conf.get(TIME_FORMAT_KEY, Timestamps.Format.ISO.name()).toUpperCase());
+    }
+
     @Override
     public final int run(String[] args) throws IOException, InterruptedException, ClassNotFoundException {
-        Job job = new Job();
+        Job job = new Job(getConf());
         job.setJarByClass(HubStats.class);
         job.setJobName("hubstats");
         job.setOutputKeyClass(LongWritable.class);
-        job.setOutputValueClass(Text.class);
-        job.setMapperClass(EventMapper.class);
-        job.setReducerClass(EventReducer.class);
+        Shuffle.valueOf(job.getConfiguration().get(SHUFFLE_KEY, Shuffle.TEXT.name()).toUpperCase()).configure(job);
+        Output.valueOf(job.getConfiguration().get(OUTPUT_KEY, Output.TEXT.name()).toUpperCase()).configure(job);
+        Partitioning partitioning = Partitioning.valueOf(
+                job.getConfiguration().get(PARTITIONER_KEY, Partitioning.HASH.name()).toUpperCase());
 
-        job.setInputFormatClass(XmlInputFormat.class);
-        job.setOutputFormatClass(TextOutputFormat.class);
-
-        job.getConfiguration().set(XmlInputFormat.START_TAG_KEY, "<feed");
-        job.getConfiguration().set(XmlInputFormat.END_TAG_KEY, "feed>");
+        if (job.getConfiguration().getBoolean(ENTRY_RECORDS_KEY, false)) {
+            job.setInputFormatClass(AtomEntryInputFormat.class);
+        } else {
+            job.setInputFormatClass(FeedInputFormat.class);
+        }
 
         FileInputFormat.setInputPaths(job, new Path(args[0]));
-        FileOutputFormat.setOutputPath(job, new Path(args[1]));
-
-        job.waitForCompletion(true);
-        return 0;
+        Path output = new Path(args[1]);
+        if (!job.getConfiguration().getBoolean(INCREMENTAL_KEY, false)) {
+            FileOutputFormat.setOutputPath(job, output);
+            partitioning.configure(job);
+            return job.waitForCompletion(true) ? 0 : 1;
+        }
+
+        FileSystem fs = output.getFileSystem(job.getConfiguration());
+        Path checkpoint = Checkpoint.path(output);
+        Path pending = Checkpoint.pendingPath(output);
+        Checkpoint previous = Checkpoint.read(fs, checkpoint);
+        previous.advance(fs, new FeedInputFormat().listStatus(job)).write(fs, pending);
+        // read as an empty checkpoint if there is none, so that every log is read from the start
+        job.getConfiguration().set(FeedInputFormat.START_CHECKPOINT_KEY, checkpoint.toString());
+        job.getConfiguration().set(FeedInputFormat.END_CHECKPOINT_KEY, pending.toString());
+        Path delta = Checkpoint.nextDelta(fs, output);
+        FileOutputFormat.setOutputPath(job, delta);
+        partitioning.configure(job);
+
+        if (job.waitForCompletion(true)) {
+            Checkpoint.commit(fs, pending, checkpoint);
+            return 0;
+        }
+        // the next run reads the same feeds again, into a delta of its own
+        fs.delete(pending, false);
+        fs.delete(delta, true);
+        return 1;
     }
 
     public static void main(String[] args) throws Exception {
-        ToolRunner.run(new HubStats(), args);
+        System.exit(ToolRunner.run(new HubStats(), args));
     }
 
 
@@ -0,0 +1,564 @@
+package hubstats;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.mahout.classifier.bayes.XmlInputFormat;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Run HubStats over local timeline logs on the cores of one machine, without submitting a job.
+ * <p/>
+ * The logs are divided into chunks, which are read as FeedInputFormat reads splits: a chunk holds the feeds that start
+ * within it, reading on past its end to finish the last. Each chunk is parsed by its own EventMapper on a pool of
+ * threads, one per core by default, so the events and counters are those of the job. The events of each chunk are then
+ * sorted by id and merged, keeping the first of each id as EventReducer does, into a single
+ * <code>part-r-00000</code> with its EventStats, as the job writes with one reducer. Only the text output is
+ * supported, and the events of the whole input are held in memory until they are merged.
+ * <p/>
+ * Logs compressed with a codec known to CompressionCodecFactory, such as gzip, are not divided: each is a single chunk,
+ * decompressed as it is read, as the job reads it.
+ * <p/>
+ * With MAP_KEY set, each chunk is read with a MappedFeedReader instead, and its feeds are parsed where they lie in the
+ * mapped log.
+ * <p/>
+ * Run with:
+ * <pre>
+ *     $ java -cp hubstats.jar hubstats.LocalHubStats input output
+ * </pre>
+ */
+public class LocalHubStats extends Configured implements Tool {
+
+    /**
+     * The number of threads to parse chunks on (default the number of cores).
+     */
+    public static final String THREADS_KEY = "hubstats.local.threads";
+
+    /**
+     * The size of the chunks logs are divided into, in bytes (default enough for four chunks per thread, between 1MB
+     * and 64MB).
+     */
+    public static final String CHUNK_KEY = "hubstats.local.chunk";
+
+    /**
+     * Whether to map the logs into memory and parse each feed in place, rather than read it into a buffer (default
+     * false).
+     */
+    public static final String MAP_KEY = "hubstats.local.mmap";
+
+    static final long MIN_CHUNK = 1L << 20;
+    static final long MAX_CHUNK = 64L << 20;
+
+    static final String PART = "part-r-00000";
+
+    private static final Log LOG = LogFactory.getLog(LocalHubStats.class);
+
+    private static final BytePattern START_TAG = new BytePattern(FeedInputFormat.START_TAG);
+    private static final BytePattern END_TAG = new BytePattern(FeedInputFormat.END_TAG);
+
+    /**
+     * A range of a log. The chunk holds the feeds that start between start and end, or every feed of a compressed log.
+     */
+    static final class Chunk extends InputSplit {
+        final File file;
+        final long start;
+        final long end;
+        final boolean compressed;
+
+        Chunk(File file, long start, long end, boolean compressed) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+            this.compressed = compressed;
+        }
+
+        @Override
+        public long getLength() {
+            return end - start;
+        }
+
+        @Override
+        public String[] getLocations() {
+            return new String[0];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s:%s+%s", file, start, end - start);
+        }
+    }
+
+    /**
+     * Reads the feeds of a chunk, each keyed by its offset in the log, with positional reads of the log's channel.
+     */
+    static final class ChunkRecordReader extends RecordReader<LongWritable, Text> {
+
+        // how much more of the log to read at a time when a feed continues past what has been read
+        private static final int READ_AHEAD = 1 << 16;
+
+        private final Chunk chunk;
+        private FileChannel channel;
+        private byte[] bytes;
+        private int length;
+        private int position;
+        private boolean eof;
+
+        private final LongWritable key = new LongWritable();
+        private final Text value = new Text();
+
+        ChunkRecordReader(Chunk chunk) {
+            this.chunk = chunk;
+        }
+
+        @Override
+        public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
+            channel = new FileInputStream(chunk.file).getChannel();
+            // enough to find a start tag that begins just before the end of the chunk
+            bytes = new byte[(int) chunk.getLength() + START_TAG.length() - 1];
+            fill();
+        }
+
+        /**
+         * Read from the log into the rest of bytes, setting eof if the log ends first.
+         */
+        private void fill() throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, length, bytes.length - length);
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, chunk.start + buffer.position());
+                if (read < 0) {
+                    eof = true;
+                    break;
+                }
+            }
+            length = buffer.position();
+        }
+
+        @Override
+        public boolean nextKeyValue() throws IOException {
+            int start = START_TAG.indexIn(bytes, position, length);
+            if (start < 0 || start >= chunk.getLength()) {
+                return false;
+            }
+            int end = END_TAG.indexIn(bytes, start, length);
+            while (end < 0 && !eof) {
+                int searched = Math.max(start, length - END_TAG.length() + 1);
+                bytes = Arrays.copyOf(bytes, bytes.length + Math.max(READ_AHEAD, bytes.length / 2));
+                fill();
+                end = END_TAG.indexIn(bytes, searched, length);
+            }
+            if (end < 0) {
+                // a feed cut off at the end of the log
+                return false;
+            }
+            position = end + END_TAG.length();
+            key.set(chunk.start + start);
+            value.set(bytes, start, position - start);
+            return true;
+        }
+
+        @Override
+        public LongWritable getCurrentKey() {
+            return key;
+        }
+
+        @Override
+        public Text getCurrentValue() {
+            return value;
+        }
+
+        @Override
+        public float getProgress() {
+            return Math.min(1.0f, position / (float) chunk.getLength());
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * The events written by the mapper of a chunk, as ids and lines, which are sorted by id when the chunk is done.
+     */
+    static final class ChunkOutput extends RecordWriter<LongWritable, Text> {
+
+        private long[] ids = new long[1024];
+        private int[] starts = new int[1025];
+        private final DataOutputBuffer lines = new DataOutputBuffer();
+        private int size;
+
+        // the positions of the events in id order, each id once
+        private int[] order;
+
+        @Override
+        public void write(LongWritable key, Text value) throws IOException {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                starts = Arrays.copyOf(starts, size * 2 + 1);
+            }
+            ids[size] = key.get();
+            lines.write(value.getBytes(), 0, value.getLength());
+            starts[++size] = lines.getLength();
+        }
+
+        @Override
+        public void close(TaskAttemptContext context) {
+            int[] sorted = sortById(ids, size);
+            order = new int[size];
+            int distinct = 0;
+            for (int i = 0; i < size; i++) {
+                if (distinct == 0 || ids[sorted[i]] != ids[order[distinct - 1]]) {
+                    order[distinct++] = sorted[i];
+                }
+            }
+            order = Arrays.copyOf(order, distinct);
+        }
+
+        /**
+         * A stable merge sort of the positions of the ids, so that the first of each id is kept as it would be by
+         * EventCombiner.
+         *
+         * @return The positions 0 to size - 1 in order of their ids
+         */
+        static int[] sortById(long[] ids, int size) {
+            int[] sorted = new int[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = i;
+            }
+            int[] merged = new int[size];
+            for (int width = 1; width < size; width *= 2) {
+                for (int from = 0; from < size; from += 2 * width) {
+                    int middle = Math.min(from + width, size);
+                    int to = Math.min(from + 2 * width, size);
+                    int left = from;
+                    int right = middle;
+                    for (int i = from; i < to; i++) {
+                        if (left < middle && (right == to || ids[sorted[left]] <= ids[sorted[right]])) {
+                            merged[i] = sorted[left++];
+                        } else {
+                            merged[i] = sorted[right++];
+                        }
+                    }
+                }
+                int[] swap = sorted;
+                sorted = merged;
+                merged = swap;
+            }
+            return sorted;
+        }
+
+        int size() {
+            return order.length;
+        }
+
+        long getId(int i) {
+            return ids[order[i]];
+        }
+
+        void getLine(int i, Text line) {
+            int event = order[i];
+            line.set(lines.getData(), starts[event], starts[event + 1] - starts[event]);
+        }
+    }
+
+    /**
+     * Parse a chunk with its own EventMapper, as a map task would.
+     */
+    static final class ChunkTask implements Callable<ChunkOutput> {
+
+        private final Configuration conf;
+        private final Chunk chunk;
+        private final Counters counters;
+
+        ChunkTask(Configuration conf, Chunk chunk, Counters counters) {
+            this.conf = conf;
+            this.chunk = chunk;
+            this.counters = counters;
+        }
+
+        public ChunkOutput call() throws IOException, InterruptedException {
+            ChunkOutput output = new ChunkOutput();
+            HubStats.EventMapper mapper = new HubStats.EventMapper();
+            StatusReporter reporter = new StatusReporter() {
+                @Override
+                public Counter getCounter(Enum<?> name) {
+                    return counters.findCounter(name);
+                }
+
+                @Override
+                public Counter getCounter(String group, String name) {
+                    return counters.findCounter(group, name);
+                }
+
+                @Override
+                public void progress() {
+                }
+
+                @Override
+                public void setStatus(String status) {
+                }
+            };
+            if (chunk.compressed) {
+                XmlInputFormat.XmlRecordReader reader = new XmlInputFormat.XmlRecordReader(
+                        new FileSplit(new Path(chunk.file.toURI()), chunk.start, chunk.getLength(), null),
+                        FeedInputFormat.feedConfiguration(conf));
+                try {
+                    mapper.run(mapper.new Context(conf, new TaskAttemptID(), reader, output, null, reporter, chunk));
+                } finally {
+                    reader.close();
+                }
+            } else if (conf.getBoolean(MAP_KEY, false)) {
+                // a window with room to finish the last feed of the chunk without remapping
+                int window = (int) Math.min(Integer.MAX_VALUE, chunk.getLength() + MIN_CHUNK);
+                MappedFeedReader reader = new MappedFeedReader(chunk.file, chunk.start, chunk.end, window);
+                try {
+                    mapper.run(reader, mapper.new Context(conf, new TaskAttemptID(), null, output, null, reporter,
+                            chunk));
+                } finally {
+                    reader.close();
+                }
+            } else {
+                ChunkRecordReader reader = new ChunkRecordReader(chunk);
+                try {
+                    reader.initialize(chunk, null);
+                    mapper.run(mapper.new Context(conf, new TaskAttemptID(), reader, output, null, reporter, chunk));
+                } finally {
+                    reader.close();
+                }
+            }
+            output.close(null);
+            return output;
+        }
+    }
+
+    /**
+     * @return The chunks of the logs in the input, a file or a directory of them, with each compressed log whole
+     */
+    static List<Chunk> chunks(File input, long chunkSize, CompressionCodecFactory codecs) throws IOException {
+        List<Chunk> chunks = Lists.newArrayList();
+        for (File file : logs(input)) {
+            long length = file.length();
+            if (codecs.getCodec(new Path(file.getPath())) != null) {
+                chunks.add(new Chunk(file, 0, length, true));
+                continue;
+            }
+            for (long start = 0; start < length; start += chunkSize) {
+                chunks.add(new Chunk(file, start, Math.min(length, start + chunkSize), false));
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * @return The logs in the input, leaving out hidden files and index sidecars as the job does
+     */
+    static List<File> logs(File input) throws IOException {
+        if (!input.exists()) {
+            throw new IOException(String.format("Input path does not exist: %s", input));
+        }
+        if (!input.isDirectory()) {
+            return Lists.newArrayList(input);
+        }
+        List<File> logs = Lists.newArrayList();
+        File[] files = input.listFiles();
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isFile() && !name.startsWith("_") && !name.startsWith(".")
+                    && !name.endsWith(FeedIndex.SUFFIX)) {
+                logs.add(file);
+            }
+        }
+        return logs;
+    }
+
+    /**
+     * Merge the events of the chunks in id order, writing the first of each id as a line keyed by its id.
+     */
+    static void merge(List<ChunkOutput> outputs, RecordWriter<LongWritable, Text> writer)
+            throws IOException, InterruptedException {
+        // a binary heap of the chunks with events left, by the id of the next event of each
+        int[] next = new int[outputs.size()];
+        int[] heap = new int[outputs.size()];
+        int size = 0;
+        for (int i = 0; i < outputs.size(); i++) {
+            if (outputs.get(i).size() > 0) {
+                heap[size++] = i;
+            }
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(heap, size, i, outputs, next);
+        }
+        LongWritable id = new LongWritable();
+        Text line = new Text();
+        boolean first = true;
+        while (size > 0) {
+            int chunk = heap[0];
+            ChunkOutput output = outputs.get(chunk);
+            long eventId = output.getId(next[chunk]);
+            if (first || eventId != id.get()) {
+                first = false;
+                id.set(eventId);
+                output.getLine(next[chunk], line);
+                writer.write(id, line);
+            }
+            if (++next[chunk] == output.size()) {
+                heap[0] = heap[--size];
+            }
+            siftDown(heap, size, 0, outputs, next);
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, int i, List<ChunkOutput> outputs, int[] next) {
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && before(heap[child + 1], heap[child], outputs, next)) {
+                child++;
+            }
+            if (!before(heap[child], heap[i], outputs, next)) {
+                return;
+            }
+            int swap = heap[i];
+            heap[i] = heap[child];
+            heap[child] = swap;
+            i = child;
+        }
+    }
+
+    /**
+     * @return If the next event of chunk a is merged before the next event of chunk b: the lower id, or the earlier
+     *         chunk, so that the first of each id in the logs is kept
+     */
+    private static boolean before(int a, int b, List<ChunkOutput> outputs, int[] next) {
+        long idA = outputs.get(a).getId(next[a]);
+        long idB = outputs.get(b).getId(next[b]);
+        return idA < idB || (idA == idB && a < b);
+    }
+
+    public final int run(String[] args) throws IOException, InterruptedException {
+        Configuration conf = getConf();
+        String output = conf.get(HubStats.OUTPUT_KEY, HubStats.Output.TEXT.name());
+        if (!output.equalsIgnoreCase(HubStats.Output.TEXT.name())) {
+            throw new IllegalArgumentException(String.format("%s must be text in local mode (was %s)",
+                    HubStats.OUTPUT_KEY, output));
+        }
+        File input = new File(args[0]);
+        File outputDir = new File(args[1]);
+        if (outputDir.exists()) {
+            throw new IOException(String.format("Output directory %s already exists", outputDir));
+        }
+
+        int threads = conf.getInt(THREADS_KEY, Runtime.getRuntime().availableProcessors());
+        long total = 0;
+        for (File log : logs(input)) {
+            total += log.length();
+        }
+        long chunkSize = conf.getLong(CHUNK_KEY, Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, total / (threads * 4L))));
+        if (chunkSize < 1 || chunkSize > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException(String.format("Invalid chunk size %s", chunkSize));
+        }
+
+        List<Chunk> chunks = chunks(input, chunkSize, new CompressionCodecFactory(conf));
+        List<Counters> counters = Lists.newArrayList();
+        List<Future<ChunkOutput>> futures = Lists.newArrayList();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<ChunkOutput> outputs = Lists.newArrayList();
+        try {
+            for (Chunk chunk : chunks) {
+                Counters chunkCounters = new Counters();
+                counters.add(chunkCounters);
+                futures.add(pool.submit(new ChunkTask(conf, chunk, chunkCounters)));
+            }
+            for (Future<ChunkOutput> future : futures) {
+                outputs.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause.toString());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        FileSystem fs = FileSystem.getLocal(conf);
+        Path file = new Path(new Path(outputDir.getPath()), PART);
+        final DataOutputStream out = fs.create(file, false);
+        RecordWriter<LongWritable, Text> writer = new StatsRecordWriter<Text>(new RecordWriter<LongWritable, Text>() {
+            private final byte[] tab = "\t".getBytes(Charsets.US_ASCII);
+            private final byte[] newline = "\n".getBytes(Charsets.US_ASCII);
+            private final byte[] digits = new byte[Event.LONG_LENGTH];
+
+            @Override
+            public void write(LongWritable key, Text value) throws IOException {
+                out.write(digits, 0, Event.formatLong(key.get(), digits, 0));
+                out.write(tab);
+                out.write(value.getBytes(), 0, value.getLength());
+                out.write(newline);
+            }
+
+            @Override
+            public void close(TaskAttemptContext context) throws IOException {
+                out.close();
+            }
+        }, fs, file);
+        try {
+            merge(outputs, writer);
+        } finally {
+            writer.close(null);
+        }
+
+        // logged as the counters of a job are
+        for (HubStats.Counters counter : HubStats.Counters.values()) {
+            long value = 0;
+            for (Counters chunkCounters : counters) {
+                value += chunkCounters.findCounter(counter).getValue();
+            }
+            LOG.info(String.format("%s=%s", counter, value));
+        }
+        return 0;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(ToolRunner.run(new LocalHubStats(), args));
+    }
+
+}
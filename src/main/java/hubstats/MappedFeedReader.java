@@ -0,0 +1,179 @@
+package hubstats;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the feeds of a local log by mapping it into memory a window at a time, so that feeds are found and parsed in
+ * place rather than copied through stream buffers. It needs nothing from Hadoop, so can be used from any driver:
+ * <pre>
+ *     MappedFeedReader reader = new MappedFeedReader(new File("github-timeline.log"));
+ *     try {
+ *         while (reader.next()) {
+ *             parser.parse(reader.getFeed(), handler);
+ *         }
+ *     } finally {
+ *         reader.close();
+ *     }
+ * </pre>
+ * As FeedInputFormat reads a split, the reader can be given a range of the log, and then reads the feeds that start
+ * within it, reading on past its end to finish the last. A window is mapped from the start of the first feed it holds,
+ * so logs of any size are read by moving the window along them, and a window is doubled for a feed that does not fit
+ * in it, up to the 2GB that can be mapped at once.
+ * <p/>
+ * Each feed is a slice of the mapping, which is valid until the window it is in is unmapped once it can be garbage
+ * collected, even after the reader is closed.
+ */
+public final class MappedFeedReader implements Closeable {
+
+    /**
+     * The size in bytes of the windows a log is mapped in unless given (256MB).
+     */
+    public static final int DEFAULT_WINDOW = 1 << 28;
+
+    private static final BytePattern START_TAG = new BytePattern(FeedInputFormat.START_TAG);
+    private static final BytePattern END_TAG = new BytePattern(FeedInputFormat.END_TAG);
+
+    private final FileChannel channel;
+    private final long size;
+    private final long start;
+    private final long end;
+    private final int window;
+
+    // the mapped window, its offset in the log, and where to search for the next feed in it
+    private MappedByteBuffer mapping;
+    private long mappingStart;
+    private int position;
+
+    private ByteBuffer feed;
+    private long offset = -1;
+
+    /**
+     * Read every feed in a log.
+     *
+     * @throws IOException If the log cannot be opened
+     */
+    public MappedFeedReader(File file) throws IOException {
+        this(file, 0, Long.MAX_VALUE, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Read the feeds that start within a range of a log.
+     *
+     * @param start  The offset in the log of the start of the range
+     * @param end    The offset in the log of the end of the range, which may be past the end of the log
+     * @param window The size in bytes of the windows to map the log in
+     * @throws IOException If the log cannot be opened
+     */
+    public MappedFeedReader(File file, long start, long end, int window) throws IOException {
+        if (window < START_TAG.length() + END_TAG.length()) {
+            throw new IllegalArgumentException(String.format("Invalid window size %s", window));
+        }
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException(String.format("Invalid range %s to %s", start, end));
+        }
+        this.channel = new FileInputStream(file).getChannel();
+        this.size = channel.size();
+        this.start = start;
+        this.end = end;
+        this.window = window;
+    }
+
+    /**
+     * Move on to the next feed.
+     *
+     * @return False if there are no more feeds in the range
+     * @throws IOException If there is an exception mapping the log
+     */
+    public boolean next() throws IOException {
+        if (mapping == null) {
+            if (start >= size) {
+                return false;
+            }
+            map(start, window);
+        }
+        while (true) {
+            int limit = mapping.limit();
+            int feedStart = START_TAG.indexIn(mapping, position, limit);
+            if (feedStart < 0) {
+                // a start tag may begin in the last few bytes of the window, so the next window overlaps them
+                long searched = mappingStart + Math.max(position, limit - START_TAG.length() + 1);
+                if (mappingStart + limit == size || searched >= end) {
+                    position = limit;
+                    return false;
+                }
+                map(searched, window);
+                continue;
+            }
+            if (mappingStart + feedStart >= end) {
+                position = feedStart;
+                return false;
+            }
+            int feedEnd = END_TAG.indexIn(mapping, feedStart, limit);
+            if (feedEnd < 0) {
+                if (mappingStart + limit == size) {
+                    // a feed cut off at the end of the log
+                    return false;
+                }
+                if (feedStart > 0) {
+                    map(mappingStart + feedStart, window);
+                } else if (limit < Integer.MAX_VALUE) {
+                    map(mappingStart, (int) Math.min(Integer.MAX_VALUE, limit * 2L));
+                } else {
+                    throw new IOException(String.format("Feed at %s is too large to map", mappingStart));
+                }
+                continue;
+            }
+            position = feedEnd + END_TAG.length();
+            offset = mappingStart + feedStart;
+            ByteBuffer slice = mapping.duplicate();
+            slice.position(feedStart);
+            slice.limit(position);
+            feed = slice.slice();
+            return true;
+        }
+    }
+
+    /**
+     * Map length bytes of the log from offset, or as many as there are.
+     */
+    private void map(long offset, int length) throws IOException {
+        mapping = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(length, size - offset));
+        mappingStart = offset;
+        position = 0;
+    }
+
+    /**
+     * @return The current feed, from the start of its start tag to the end of its end tag, between the position and
+     *         limit of a buffer that shares its content with the mapping
+     */
+    public ByteBuffer getFeed() {
+        return feed;
+    }
+
+    /**
+     * @return The offset in the log of the current feed
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return The fraction of the range read
+     */
+    public float getProgress() {
+        long read = mapping == null ? start : mappingStart + position;
+        long length = Math.min(end, size) - start;
+        return length <= 0 ? 1.0f : Math.min(1.0f, (read - start) / (float) length);
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
@@ -0,0 +1,206 @@
+package hubstats;
+
+import com.google.common.base.Charsets;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The distinct account and repository names of a set of events, each with a dense integer id: its position in the
+ * table, which is sorted by the UTF-8 bytes of the names as Text sorts them.
+ * <p/>
+ * A dictionary file starts with the bytes <code>HSDIC</code> and the version of the format as a byte, followed by each
+ * name in order as a variable-length int of its length in UTF-8 bytes and the bytes. Names are looked up by a binary
+ * search of the table, narrowed to the names with the same first byte, without decoding them.
+ *
+ * @see DictionaryBuilder
+ */
+final class NameDictionary {
+
+    static final byte[] MAGIC = "HSDIC".getBytes(Charsets.US_ASCII);
+
+    static final int VERSION = 1;
+
+    static final String EXTENSION = ".dict";
+
+    // the UTF-8 bytes of the names, and the start of each name, ending with the end of the last
+    private final byte[] data;
+    private final int[] starts;
+
+    // the id of the first name starting with each byte, ending with the number of names
+    private final int[] firstByte = new int[257];
+
+    private NameDictionary(byte[] data, int[] starts) {
+        this.data = data;
+        this.starts = starts;
+        int id = 0;
+        for (int b = 0; b < 256; b++) {
+            firstByte[b] = id;
+            while (id < size() && (data[starts[id]] & 0xff) == b) {
+                id++;
+            }
+        }
+        firstByte[256] = size();
+    }
+
+    int size() {
+        return starts.length - 1;
+    }
+
+    /**
+     * @return The name with the id
+     */
+    String get(int id) {
+        return new String(data, starts[id], starts[id + 1] - starts[id], Charsets.UTF_8);
+    }
+
+    /**
+     * @return The id of the name, or -1 if it is not in the dictionary
+     */
+    int lookup(String name) {
+        byte[] bytes = name.getBytes(Charsets.UTF_8);
+        return lookup(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @return The id of the name with the UTF-8 bytes between from and to, or -1 if it is not in the dictionary
+     */
+    int lookup(byte[] bytes, int from, int to) {
+        if (from == to) {
+            return -1;
+        }
+        int b = bytes[from] & 0xff;
+        int low = firstByte[b];
+        int high = firstByte[b + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int compared = WritableComparator.compareBytes(data, starts[mid], starts[mid + 1] - starts[mid],
+                    bytes, from, to - from);
+            if (compared < 0) {
+                low = mid + 1;
+            } else if (compared > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The dictionary in the file
+     * @throws IOException If there is an exception reading the file, or it is not a dictionary of this version
+     */
+    static NameDictionary read(FileSystem fs, Path path) throws IOException {
+        long length = fs.getFileStatus(path).getLen();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException(String.format("%s is too large to be a dictionary", path));
+        }
+        byte[] bytes = new byte[(int) length];
+        FSDataInputStream in = fs.open(path);
+        try {
+            in.readFully(bytes);
+        } finally {
+            in.close();
+        }
+        if (bytes.length <= MAGIC.length || !Arrays.equals(Arrays.copyOf(bytes, MAGIC.length), MAGIC)
+                || bytes[MAGIC.length] != VERSION) {
+            throw new IOException(String.format("%s is not a dictionary of version %s", path, VERSION));
+        }
+
+        // the names are moved down over their lengths, so that they are contiguous
+        int[] starts = new int[16];
+        int names = 0;
+        int end = 0;
+        int position = MAGIC.length + 1;
+        while (position < bytes.length) {
+            int nameLength = WritableComparator.readVInt(bytes, position);
+            position += WritableUtils.decodeVIntSize(bytes[position]);
+            if (nameLength <= 0 || position + nameLength > bytes.length) {
+                throw new IOException(String.format("%s is not a valid dictionary", path));
+            }
+            if (names + 1 == starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+            }
+            starts[names++] = end;
+            System.arraycopy(bytes, position, bytes, end, nameLength);
+            end += nameLength;
+            position += nameLength;
+        }
+        starts[names] = end;
+        return new NameDictionary(bytes, Arrays.copyOf(starts, names + 1));
+    }
+
+    /**
+     * Read the dictionary named by DICTIONARY_KEY, from the task's local copy in the distributed cache if there is
+     * one.
+     *
+     * @throws IOException If there is an exception reading the dictionary
+     */
+    static NameDictionary read(Configuration conf) throws IOException {
+        String name = conf.get(EncodedEventOutputFormat.DICTIONARY_KEY);
+        if (name == null) {
+            throw new IllegalArgumentException(String.format("%s must be set to the path of a dictionary",
+                    EncodedEventOutputFormat.DICTIONARY_KEY));
+        }
+        Path path = new Path(name);
+        Path[] cached = DistributedCache.getLocalCacheFiles(conf);
+        if (cached != null) {
+            for (Path local : cached) {
+                if (local.getName().equals(path.getName())) {
+                    return read(FileSystem.getLocal(conf), local);
+                }
+            }
+        }
+        return read(path.getFileSystem(conf), path);
+    }
+
+    /**
+     * Writes a dictionary, given the names in order.
+     */
+    static final class Writer {
+
+        private final DataOutputStream out;
+        private byte[] last = new byte[64];
+        private int lastLength = -1;
+
+        Writer(DataOutputStream out) throws IOException {
+            this.out = out;
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+        }
+
+        /**
+         * Add the name with the UTF-8 bytes between from and to, which must sort after the last name added.
+         */
+        void add(byte[] bytes, int from, int to) throws IOException {
+            int length = to - from;
+            if (length == 0 || (lastLength >= 0
+                    && WritableComparator.compareBytes(last, 0, lastLength, bytes, from, length) >= 0)) {
+                throw new IllegalArgumentException(String.format("Dictionary names must be distinct, non-empty and "
+                        + "in order (was %s after %s)", new String(bytes, from, length, Charsets.UTF_8),
+                        lastLength < 0 ? "none" : new String(last, 0, lastLength, Charsets.UTF_8)));
+            }
+            if (length > last.length) {
+                last = new byte[Math.max(length, last.length * 2)];
+            }
+            System.arraycopy(bytes, from, last, 0, length);
+            lastLength = length;
+            WritableUtils.writeVInt(out, length);
+            out.write(bytes, from, length);
+        }
+
+        void close() throws IOException {
+            out.close();
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+package hubstats;
+
+import com.google.common.collect.Maps;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes a line for each event, as EventTextOutputFormat does, into a directory for the day and type of the event,
+ * such as <code>date=2010-11-19/type=Push/</code>, so that a later job can read only the days and types it needs.
+ * <p/>
+ * Days are in UTC, and events without a time in the expected form are written under <code>date=unknown</code>. Each
+ * reducer writes files named after its own part file, <code>part-r-00000-00000</code> then
+ * <code>part-r-00000-00001</code> and so on, starting a new file in a partition once the last has reached the maximum
+ * size. Only a limited number of files are kept open, closing the least recently written when another is needed, so a
+ * partition that is written to again after its file was closed also starts a new file.
+ */
+public class PartitionedEventOutputFormat extends FileOutputFormat<LongWritable, EventWritable> {
+
+    /**
+     * The size in bytes, before any compression, at which to start a new file in a partition (default 128MB).
+     */
+    public static final String MAX_BYTES_KEY = "hubstats.partition.max.bytes";
+
+    /**
+     * The number of files each reducer keeps open at once (default 64).
+     */
+    public static final String MAX_OPEN_KEY = "hubstats.partition.max.open";
+
+    static final long DEFAULT_MAX_BYTES = 128L * 1024 * 1024;
+    static final int DEFAULT_MAX_OPEN = 64;
+
+    static final String UNKNOWN_DATE = "unknown";
+
+    // partition files are much smaller than whole part files, so have smaller Bloom filters: with the two keys of each
+    // repository, about 1% false positives for 3,400 repositories, or about 10% for 6,000
+    private static final int BLOOM_BITS = 1 << 16;
+
+    @Override
+    public RecordWriter<LongWritable, EventWritable> getRecordWriter(TaskAttemptContext job)
+            throws IOException, InterruptedException {
+        Configuration conf = job.getConfiguration();
+        CompressionCodec codec = null;
+        String extension = "";
+        if (getCompressOutput(job)) {
+            codec = ReflectionUtils.newInstance(getOutputCompressorClass(job, GzipCodec.class), conf);
+            extension = codec.getDefaultExtension();
+        }
+        Path part = getDefaultWorkFile(job, "");
+        return new PartitionedRecordWriter(part.getFileSystem(conf), part.getParent(), part.getName(), extension,
+                codec, conf.getLong(MAX_BYTES_KEY, DEFAULT_MAX_BYTES), conf.getInt(MAX_OPEN_KEY, DEFAULT_MAX_OPEN),
+                HubStats.timeFormat(conf));
+    }
+
+    /**
+     * @return The directory of the event's partition relative to the output directory
+     */
+    static String partition(Event event) {
+        String date = UNKNOWN_DATE;
+        if (event.getAtOffset() != Timestamps.UNPARSEABLE) {
+            date = Timestamps.format(event.getAtSeconds(), 0).substring(0, 10);
+        }
+        return "date=" + date + Path.SEPARATOR + "type=" + event.getEventType();
+    }
+
+    public static class PartitionedRecordWriter extends RecordWriter<LongWritable, EventWritable> {
+
+        private static final byte TAB = '\t';
+        private static final byte NEWLINE = '\n';
+
+        private final FileSystem fs;
+        private final Path dir;
+        private final String name;
+        private final String extension;
+        private final CompressionCodec codec;
+        private final long maxBytes;
+        private final int maxOpen;
+        private final Timestamps.Format timeFormat;
+
+        // the number of the next file of each partition, and the open files in order of last use
+        private final Map<String, Integer> nextFile = Maps.newHashMap();
+        private final LinkedHashMap<String, PartFile> open = new LinkedHashMap<String, PartFile>(16, 0.75f, true);
+
+        private final Text line = new Text();
+        private final byte[] digits = new byte[Event.LONG_LENGTH];
+
+        public PartitionedRecordWriter(FileSystem fs, Path dir, String name, String extension, CompressionCodec codec,
+                                       long maxBytes, int maxOpen, Timestamps.Format timeFormat) {
+            if (maxOpen < 1) {
+                throw new IllegalArgumentException(String.format("Invalid maximum open files %s", maxOpen));
+            }
+            this.fs = fs;
+            this.dir = dir;
+            this.name = name;
+            this.extension = extension;
+            this.codec = codec;
+            this.maxBytes = maxBytes;
+            this.maxOpen = maxOpen;
+            this.timeFormat = timeFormat;
+        }
+
+        @Override
+        public void write(LongWritable id, EventWritable value) throws IOException {
+            Event event = value.get();
+            String partition = partition(event);
+            PartFile file = open.get(partition);
+            if (file != null && file.bytes >= maxBytes) {
+                open.remove(partition).close();
+                file = null;
+            }
+            if (file == null) {
+                file = open(partition);
+            }
+
+            event.writeTo(line, timeFormat);
+            int idLength = Event.formatLong(id.get(), digits, 0);
+            file.out.write(digits, 0, idLength);
+            file.out.write(TAB);
+            file.out.write(line.getBytes(), 0, line.getLength());
+            file.out.write(NEWLINE);
+            file.bytes += idLength + line.getLength() + 2;
+            file.stats.add(event);
+        }
+
+        private PartFile open(String partition) throws IOException {
+            if (open.size() == maxOpen) {
+                Iterator<PartFile> eldest = open.values().iterator();
+                eldest.next().close();
+                eldest.remove();
+            }
+            Integer number = nextFile.get(partition);
+            number = number == null ? 0 : number;
+            nextFile.put(partition, number + 1);
+
+            Path path = new Path(new Path(dir, partition), String.format("%s-%05d%s", name, number, extension));
+            OutputStream out = fs.create(path, false);
+            if (codec != null) {
+                out = codec.createOutputStream(out);
+            }
+            PartFile file = new PartFile(path, new DataOutputStream(out));
+            open.put(partition, file);
+            return file;
+        }
+
+        @Override
+        public void close(TaskAttemptContext context) throws IOException {
+            IOException failure = null;
+            for (PartFile file : open.values()) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            open.clear();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        private final class PartFile {
+            final Path path;
+            final DataOutputStream out;
+            final EventStats stats = new EventStats(BLOOM_BITS);
+            long bytes;
+
+            PartFile(Path path, DataOutputStream out) {
+                this.path = path;
+                this.out = out;
+            }
+
+            void close() throws IOException {
+                out.close();
+                stats.write(fs, path);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,321 @@
+package hubstats;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A batch of events held column by column, as written to and read from the columnar event store.
+ * <p/>
+ * A row group is stored as a variable-length int of the number of rows, then each column in EventColumn order as a
+ * variable-length int of its length in bytes followed by its bytes, so that a reader can skip the columns it does not
+ * need. The columns are encoded as:
+ * <ul>
+ * <li>EVENT_ID - The difference of each id from the previous one as a variable-length long</li>
+ * <li>EVENT_TYPE - The ordinal of each type as a byte</li>
+ * <li>AT - The UTC offset of each timestamp in minutes as a variable-length int, then the difference in seconds since
+ * the epoch from the previous timestamp as a variable-length long. A timestamp that is not in the expected form has an
+ * offset of Timestamps.UNPARSEABLE, followed by the timestamp as a variable-length int of one more than its length in
+ * UTF-8 bytes, or zero for null, and the bytes.</li>
+ * <li>ALTERNATE_ID - Each alternate id as a variable-length long</li>
+ * <li>The string columns - A dictionary of the distinct values in the row group, as a variable-length int of its size
+ * then each value as a variable-length int of its length in UTF-8 bytes followed by the bytes, then for each row a
+ * variable-length int of one more than the index of its value in the dictionary, or zero for null</li>
+ * </ul>
+ * Differences start from zero at the beginning of each row group, so that each can be decoded alone.
+ */
+final class RowGroup {
+
+    private static final EventColumn[] COLUMNS = EventColumn.values();
+    private static final EventType[] TYPES = EventType.values();
+
+    private long[] eventIds;
+    private EventType[] types;
+    private long[] atSeconds;
+    private int[] atOffsets;
+    // the times that are not in the expected form
+    private String[] ats;
+    private long[] alternateIds;
+    private final String[][] strings = new String[COLUMNS.length][];
+    private final boolean[] present = new boolean[COLUMNS.length];
+    private int size;
+
+    private final DataOutputBuffer column = new DataOutputBuffer();
+    private final DataInputBuffer input = new DataInputBuffer();
+    private final Map<String, Integer> dictionary = Maps.newHashMap();
+    private byte[] bytes = new byte[1024];
+
+    /**
+     * @param capacity The number of events to hold before the row group is full. Reading a larger row group grows it.
+     */
+    RowGroup(int capacity) {
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        eventIds = new long[capacity];
+        types = new EventType[capacity];
+        atSeconds = new long[capacity];
+        atOffsets = new int[capacity];
+        ats = new String[capacity];
+        alternateIds = new long[capacity];
+        for (EventColumn c : COLUMNS) {
+            if (c.isString()) {
+                strings[c.ordinal()] = new String[capacity];
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isFull() {
+        return size == eventIds.length;
+    }
+
+    /**
+     * If the column was decoded by the last call to read.
+     */
+    boolean has(EventColumn c) {
+        return present[c.ordinal()];
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    void add(Event event) {
+        int row = size++;
+        eventIds[row] = event.getEventId();
+        types[row] = event.getEventType();
+        atSeconds[row] = event.getAtSeconds();
+        atOffsets[row] = event.getAtOffset();
+        ats[row] = atOffsets[row] == Timestamps.UNPARSEABLE ? event.getAt() : null;
+        alternateIds[row] = event.getAlternateId();
+        strings[EventColumn.ACTOR.ordinal()][row] = event.getActor();
+        strings[EventColumn.REPO_ACCOUNT.ordinal()][row] = event.getRepoAccount();
+        strings[EventColumn.REPO_NAME.ordinal()][row] = event.getRepoName();
+        strings[EventColumn.BRANCH.ordinal()][row] = event.getBranch();
+        strings[EventColumn.TAG.ordinal()][row] = event.getTag();
+        strings[EventColumn.SUBTYPE.ordinal()][row] = event.getSubType();
+    }
+
+    long getEventId(int row) {
+        return eventIds[row];
+    }
+
+    EventType getEventType(int row) {
+        return has(EventColumn.EVENT_TYPE) ? types[row] : null;
+    }
+
+    String getAt(int row) {
+        if (!has(EventColumn.AT)) {
+            return null;
+        }
+        return atOffsets[row] == Timestamps.UNPARSEABLE ? ats[row] : Timestamps.format(atSeconds[row], atOffsets[row]);
+    }
+
+    long getAtSeconds(int row) {
+        return has(EventColumn.AT) ? atSeconds[row] : 0L;
+    }
+
+    int getAtOffset(int row) {
+        return has(EventColumn.AT) ? atOffsets[row] : Timestamps.UNPARSEABLE;
+    }
+
+    long getAlternateId(int row) {
+        return has(EventColumn.ALTERNATE_ID) ? alternateIds[row] : 0L;
+    }
+
+    String getString(EventColumn c, int row) {
+        return has(c) ? strings[c.ordinal()][row] : null;
+    }
+
+    void write(DataOutput out) throws IOException {
+        WritableUtils.writeVInt(out, size);
+        for (EventColumn c : COLUMNS) {
+            column.reset();
+            encode(c);
+            WritableUtils.writeVInt(out, column.getLength());
+            out.write(column.getData(), 0, column.getLength());
+        }
+    }
+
+    private void encode(EventColumn c) throws IOException {
+        switch (c) {
+            case EVENT_ID:
+                long previousId = 0L;
+                for (int row = 0; row < size; row++) {
+                    WritableUtils.writeVLong(column, eventIds[row] - previousId);
+                    previousId = eventIds[row];
+                }
+                break;
+            case EVENT_TYPE:
+                for (int row = 0; row < size; row++) {
+                    column.writeByte(types[row].ordinal());
+                }
+                break;
+            case AT:
+                long previousSeconds = 0L;
+                for (int row = 0; row < size; row++) {
+                    WritableUtils.writeVInt(column, atOffsets[row]);
+                    if (atOffsets[row] == Timestamps.UNPARSEABLE) {
+                        writeNullableString(ats[row]);
+                    } else {
+                        WritableUtils.writeVLong(column, atSeconds[row] - previousSeconds);
+                        previousSeconds = atSeconds[row];
+                    }
+                }
+                break;
+            case ALTERNATE_ID:
+                for (int row = 0; row < size; row++) {
+                    WritableUtils.writeVLong(column, alternateIds[row]);
+                }
+                break;
+            default:
+                encodeStrings(strings[c.ordinal()]);
+        }
+    }
+
+    private void encodeStrings(String[] values) throws IOException {
+        dictionary.clear();
+        int[] codes = new int[size];
+        for (int row = 0; row < size; row++) {
+            if (values[row] != null) {
+                Integer code = dictionary.get(values[row]);
+                if (code == null) {
+                    code = dictionary.size() + 1;
+                    dictionary.put(values[row], code);
+                }
+                codes[row] = code;
+            }
+        }
+        String[] entries = new String[dictionary.size()];
+        for (Map.Entry<String, Integer> entry : dictionary.entrySet()) {
+            entries[entry.getValue() - 1] = entry.getKey();
+        }
+        WritableUtils.writeVInt(column, entries.length);
+        for (String entry : entries) {
+            writeString(entry);
+        }
+        for (int row = 0; row < size; row++) {
+            WritableUtils.writeVInt(column, codes[row]);
+        }
+    }
+
+    private void writeNullableString(String value) throws IOException {
+        if (value == null) {
+            WritableUtils.writeVInt(column, 0);
+            return;
+        }
+        byte[] utf8 = value.getBytes(Charsets.UTF_8);
+        WritableUtils.writeVInt(column, utf8.length + 1);
+        column.write(utf8);
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] utf8 = value.getBytes(Charsets.UTF_8);
+        WritableUtils.writeVInt(column, utf8.length);
+        column.write(utf8);
+    }
+
+    /**
+     * Replace this row group with the next one in, decoding only the event ids and the columns given.
+     *
+     * @return False if there are no more row groups
+     * @throws IOException If there is an exception reading the row group
+     */
+    boolean read(FSDataInputStream in, Set<EventColumn> columns) throws IOException {
+        size = WritableUtils.readVInt(in);
+        if (size == 0) {
+            return false;
+        }
+        if (size > eventIds.length) {
+            allocate(size);
+        }
+        for (EventColumn c : COLUMNS) {
+            int length = WritableUtils.readVInt(in);
+            present[c.ordinal()] = c == EventColumn.EVENT_ID || columns.contains(c);
+            if (!present[c.ordinal()]) {
+                in.seek(in.getPos() + length);
+                continue;
+            }
+            if (length > bytes.length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            in.readFully(bytes, 0, length);
+            input.reset(bytes, length);
+            decode(c);
+        }
+        return true;
+    }
+
+    private void decode(EventColumn c) throws IOException {
+        switch (c) {
+            case EVENT_ID:
+                long id = 0L;
+                for (int row = 0; row < size; row++) {
+                    id += WritableUtils.readVLong(input);
+                    eventIds[row] = id;
+                }
+                break;
+            case EVENT_TYPE:
+                for (int row = 0; row < size; row++) {
+                    types[row] = TYPES[input.readByte()];
+                }
+                break;
+            case AT:
+                long seconds = 0L;
+                for (int row = 0; row < size; row++) {
+                    atOffsets[row] = WritableUtils.readVInt(input);
+                    if (atOffsets[row] == Timestamps.UNPARSEABLE) {
+                        ats[row] = readNullableString();
+                    } else {
+                        seconds += WritableUtils.readVLong(input);
+                        atSeconds[row] = seconds;
+                    }
+                }
+                break;
+            case ALTERNATE_ID:
+                for (int row = 0; row < size; row++) {
+                    alternateIds[row] = WritableUtils.readVLong(input);
+                }
+                break;
+            default:
+                String[] values = strings[c.ordinal()];
+                String[] entries = new String[WritableUtils.readVInt(input)];
+                for (int i = 0; i < entries.length; i++) {
+                    entries[i] = readString();
+                }
+                for (int row = 0; row < size; row++) {
+                    int code = WritableUtils.readVInt(input);
+                    values[row] = code == 0 ? null : entries[code - 1];
+                }
+        }
+    }
+
+    private String readNullableString() throws IOException {
+        int length = WritableUtils.readVInt(input) - 1;
+        return length < 0 ? null : decodeString(length);
+    }
+
+    private String readString() throws IOException {
+        return decodeString(WritableUtils.readVInt(input));
+    }
+
+    private String decodeString(int length) throws IOException {
+        String value = new String(input.getData(), input.getPosition(), length, Charsets.UTF_8);
+        input.skip(length);
+        return value;
+    }
+
+}
@@ -0,0 +1,90 @@
+package hubstats;
+
+import com.google.common.base.Splitter;
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Skips output files whose EventStats show that none of their events can match the range keys of FeedInputFormat and
+ * the type and repository keys here. Files without statistics, and directories, are always read.
+ * <p/>
+ * Set with:
+ * <pre>
+ *     FileInputFormat.setInputPathFilter(job, StatsPathFilter.class);
+ * </pre>
+ */
+public class StatsPathFilter implements PathFilter, Configurable {
+
+    /**
+     * Read only files holding events of these types, a comma-separated list of names such as "Push,Fork".
+     */
+    public static final String TYPES_KEY = "hubstats.range.types";
+
+    /**
+     * Read only files holding events for this repository, either an account or an account and repository name joined
+     * with a slash.
+     */
+    public static final String REPO_KEY = "hubstats.range.repo";
+
+    private Configuration conf;
+    private FeedInputFormat.Range range;
+    private Set<EventType> types;
+    private String repo;
+
+    public void setConf(Configuration conf) {
+        this.conf = conf;
+        range = new FeedInputFormat.Range(conf);
+        String names = conf.get(TYPES_KEY);
+        if (names == null) {
+            types = null;
+        } else {
+            types = EnumSet.noneOf(EventType.class);
+            for (String name : Splitter.on(',').trimResults().omitEmptyStrings().split(names)) {
+                types.add(EventType.valueOf(name));
+            }
+        }
+        repo = conf.get(REPO_KEY);
+    }
+
+    public Configuration getConf() {
+        return conf;
+    }
+
+    public boolean accept(Path path) {
+        EventStats stats;
+        try {
+            stats = EventStats.read(path.getFileSystem(conf), path);
+        } catch (IOException e) {
+            // the file can still be read, it just can't be skipped
+            return true;
+        }
+        return stats == null || matches(stats);
+    }
+
+    boolean matches(EventStats stats) {
+        if (stats.getCount() == 0 || stats.getMaxId() < range.minId || stats.getMinId() > range.maxId) {
+            return false;
+        }
+        if (stats.getMinAt() != EventStats.UNKNOWN_TIME
+                && (stats.getMaxAt() < range.from || stats.getMinAt() > range.to)) {
+            return false;
+        }
+        if (types != null) {
+            boolean any = false;
+            for (EventType type : types) {
+                any |= stats.getCount(type) > 0;
+            }
+            if (!any) {
+                return false;
+            }
+        }
+        return repo == null || stats.mayContainRepo(repo);
+    }
+
+}
@@ -0,0 +1,47 @@
+package hubstats;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import java.io.IOException;
+
+/**
+ * Passes events on to another record writer, writing the EventStats of those it has written as the sidecar of its
+ * file when it is closed. Events are either EventWritables or lines of Text.
+ *
+ * @param <V> The type of the events
+ */
+final class StatsRecordWriter<V> extends RecordWriter<LongWritable, V> {
+
+    private final RecordWriter<LongWritable, V> out;
+    private final FileSystem fs;
+    private final Path file;
+    private final EventStats stats = new EventStats();
+
+    StatsRecordWriter(RecordWriter<LongWritable, V> out, FileSystem fs, Path file) {
+        this.out = out;
+        this.fs = fs;
+        this.file = file;
+    }
+
+    @Override
+    public void write(LongWritable key, V value) throws IOException, InterruptedException {
+        if (value instanceof EventWritable) {
+            stats.add(((EventWritable) value).get());
+        } else {
+            stats.add(key.get(), (Text) value);
+        }
+        out.write(key, value);
+    }
+
+    @Override
+    public void close(TaskAttemptContext context) throws IOException, InterruptedException {
+        out.close(context);
+        stats.write(fs, file);
+    }
+
+}
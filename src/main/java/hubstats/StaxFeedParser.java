@@ -0,0 +1,93 @@
+package hubstats;
+
+import org.apache.hadoop.io.Text;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.regex.Matcher;
+
+/**
+ * Parses feeds with a StAX parser. Slower than ByteFeedParser, but tolerant of any well-formed feed.
+ */
+final class StaxFeedParser extends FeedParser {
+
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newFactory();
+
+    private final Matcher idMatcher = HubStats.ID_PATTERN.matcher("");
+    private final Event.Builder builder = new Event.Builder();
+    private final Timestamps.Parser timestamps = new Timestamps.Parser();
+
+    StaxFeedParser(TitleExtractor titles) {
+        super(titles);
+    }
+
+    @Override
+    void parseEntries(Text feed, Handler handler) throws IOException, InterruptedException {
+        try {
+            XMLStreamReader sr = INPUT_FACTORY.createXMLStreamReader(new StringReader(feed.toString()));
+
+            boolean inEntry = false;
+            int entries = 0;
+            for (int event = sr.next(); event != XMLStreamConstants.END_DOCUMENT; event = sr.next()) {
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (sr.getLocalName().equals("entry")) {
+                        builder.reset();
+                        inEntry = true;
+                        entries++;
+                    } else if (!inEntry) {
+                        continue;
+                    } else if (sr.getLocalName().equals("id")) {
+                        String id = sr.getElementText();
+                        Matcher m = idMatcher.reset(id);
+                        if (m.matches()) {
+                            EventType type = EventType.forName(id, m.start(1), m.end(1));
+                            if (type == null) {
+                                throw new IllegalArgumentException(String.format("Unknown event type %s", m.group(1)));
+                            }
+                            builder.type(type);
+                            builder.eventId(Long.parseLong(m.group(2)));
+                            if (isBelowHighWaterMark(builder.getEventId())) {
+                                skipFromEntry(feed, entries);
+                                return;
+                            }
+                        }
+                    } else if (sr.getLocalName().equals("published")) {
+                        String at = sr.getElementText();
+                        if (timestamps.parse(at)) {
+                            builder.at(timestamps.getEpochSeconds(), timestamps.getOffsetMinutes());
+                        } else {
+                            builder.at(at);
+                        }
+                    } else if (sr.getLocalName().equals("title")) {
+                        titles.extract(sr.getElementText(), builder);
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && sr.getLocalName().equals("entry")) {
+                    assert inEntry;
+                    handler.event(builder);
+                }
+            }
+        }
+        catch (XMLStreamException xse) {
+            xse.printStackTrace(System.err);
+        }
+    }
+
+    /**
+     * StAX locations are in characters rather than bytes, so find the start of the skipped entry by its position.
+     */
+    private void skipFromEntry(Text feed, int entry) {
+        int offset = -1;
+        for (int i = 0; i < entry; i++) {
+            offset = ENTRY_START.indexIn(feed.getBytes(), offset + 1, feed.getLength());
+            if (offset < 0) {
+                return;
+            }
+        }
+        skipFrom(feed.getBytes(), offset, feed.getLength());
+    }
+
+}
@@ -0,0 +1,293 @@
+package hubstats;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Convert between the timestamps found in the timeline, such as "2010-11-19T03:55:54-08:00", and seconds since the
+ * epoch together with the UTC offset in minutes.
+ * <p/>
+ * Only the exact form that format() produces is accepted, so that any timestamp that parses is formatted back to the
+ * same string. Anything else, such as a 'Z' offset or fractional seconds, must be kept as it was.
+ * <p/>
+ * The parsers of the timeline use a Timestamps.Parser, which parses the bytes of a timestamp without decoding them and
+ * remembers the last timestamp it parsed, as many of the entries of a feed are published in the same second or minute.
+ */
+final class Timestamps {
+
+    /**
+     * Returned by offsetMinutes for a timestamp that is not in the expected form.
+     */
+    static final int UNPARSEABLE = Integer.MIN_VALUE;
+
+    static final int LENGTH = "2010-11-19T03:55:54-08:00".length();
+    private static final int[] DAYS_IN_MONTH = {31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    // where the seconds of the local time are in a timestamp
+    private static final int SECONDS = 17;
+
+    /**
+     * The forms events' times are written in lines.
+     */
+    enum Format {
+        /**
+         * As they were in the timeline, such as "2010-11-19T03:55:54-08:00"
+         */
+        ISO,
+        /**
+         * As seconds since the epoch, such as "1290167754", losing the offset
+         */
+        EPOCH
+    }
+
+    /**
+     * Parse timestamps from the bytes of a feed, remembering the last timestamp parsed. A timestamp that differs from
+     * the last only in its seconds is not parsed again.
+     */
+    static final class Parser {
+
+        // the last timestamp parsed, and the one being parsed
+        private byte[] last = new byte[LENGTH];
+        private byte[] next = new byte[LENGTH];
+        private boolean hasLast;
+        private long epochSeconds;
+        private int offsetMinutes = UNPARSEABLE;
+
+        // the last timestamp as chars, for offsetMinutes and epochSeconds
+        private final CharSequence chars = new CharSequence() {
+            public int length() {
+                return LENGTH;
+            }
+
+            public char charAt(int index) {
+                return (char) (last[index] & 0xff);
+            }
+
+            public CharSequence subSequence(int start, int end) {
+                return toString().subSequence(start, end);
+            }
+
+            @Override
+            public String toString() {
+                return new String(last, Charsets.ISO_8859_1);
+            }
+        };
+
+        /**
+         * @return If the UTF-8 timestamp between from and to is in the expected form
+         */
+        boolean parse(byte[] bytes, int from, int to) {
+            if (to - from != LENGTH) {
+                return unparseable();
+            }
+            System.arraycopy(bytes, from, next, 0, LENGTH);
+            return parseNext();
+        }
+
+        /**
+         * @return If the timestamp is in the expected form
+         */
+        boolean parse(String at) {
+            if (at == null || at.length() != LENGTH) {
+                return unparseable();
+            }
+            for (int i = 0; i < LENGTH; i++) {
+                char c = at.charAt(i);
+                if (c >= 0x80) {
+                    // never in the expected form, and not to be confused with the byte it would be truncated to
+                    return unparseable();
+                }
+                next[i] = (byte) c;
+            }
+            return parseNext();
+        }
+
+        private boolean parseNext() {
+            int first = -1;
+            int end = -1;
+            for (int i = 0; i < LENGTH; i++) {
+                if (next[i] != last[i]) {
+                    if (first < 0) {
+                        first = i;
+                    }
+                    end = i;
+                }
+            }
+            byte[] previous = last;
+            last = next;
+            next = previous;
+            if (hasLast && first < 0) {
+                return offsetMinutes != UNPARSEABLE;
+            }
+            if (hasLast && offsetMinutes != UNPARSEABLE && first >= SECONDS && end <= SECONDS + 1) {
+                int second = digits(chars, SECONDS, 2);
+                if (second >= 0 && second <= 59) {
+                    epochSeconds += second - ((previous[SECONDS] - '0') * 10 + previous[SECONDS + 1] - '0');
+                    return true;
+                }
+            }
+            hasLast = true;
+            offsetMinutes = offsetMinutes(chars);
+            if (offsetMinutes != UNPARSEABLE) {
+                epochSeconds = epochSeconds(chars, offsetMinutes);
+            }
+            return offsetMinutes != UNPARSEABLE;
+        }
+
+        private boolean unparseable() {
+            hasLast = false;
+            offsetMinutes = UNPARSEABLE;
+            return false;
+        }
+
+        /**
+         * @return The seconds since the epoch of the last timestamp parsed, if it was in the expected form
+         */
+        long getEpochSeconds() {
+            return epochSeconds;
+        }
+
+        /**
+         * @return The UTC offset of the last timestamp parsed, or UNPARSEABLE
+         */
+        int getOffsetMinutes() {
+            return offsetMinutes;
+        }
+    }
+
+    private Timestamps() {
+
+    }
+
+    /**
+     * @param at The timestamp
+     * @return The UTC offset of the timestamp in minutes, or UNPARSEABLE if it is not in the expected form
+     */
+    static int offsetMinutes(CharSequence at) {
+        if (at == null || at.length() != LENGTH || at.charAt(4) != '-' || at.charAt(7) != '-'
+                || at.charAt(10) != 'T' || at.charAt(13) != ':' || at.charAt(16) != ':' || at.charAt(22) != ':') {
+            return UNPARSEABLE;
+        }
+        int year = digits(at, 0, 4);
+        int month = digits(at, 5, 2);
+        int day = digits(at, 8, 2);
+        int hour = digits(at, 11, 2);
+        int minute = digits(at, 14, 2);
+        int second = digits(at, 17, 2);
+        int offsetHours = digits(at, 20, 2);
+        int offsetMinutes = digits(at, 23, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > DAYS_IN_MONTH[month - 1]
+                || (month == 2 && day == 29 && !isLeapYear(year)) || hour < 0 || hour > 23 || minute < 0
+                || minute > 59 || second < 0 || second > 59 || offsetHours < 0 || offsetHours > 23
+                || offsetMinutes < 0 || offsetMinutes > 59) {
+            return UNPARSEABLE;
+        }
+        int offset = offsetHours * 60 + offsetMinutes;
+        char sign = at.charAt(19);
+        if (sign == '+') {
+            return offset;
+        } else if (sign == '-' && offset != 0) {
+            // "-00:00" would be formatted as "+00:00"
+            return -offset;
+        }
+        return UNPARSEABLE;
+    }
+
+    /**
+     * @param at            A timestamp for which offsetMinutes does not return UNPARSEABLE
+     * @param offsetMinutes The value offsetMinutes returned for the timestamp
+     * @return The number of seconds since the epoch
+     */
+    static long epochSeconds(CharSequence at, int offsetMinutes) {
+        long days = daysFromCivil(digits(at, 0, 4), digits(at, 5, 2), digits(at, 8, 2));
+        long seconds = days * 86400L + digits(at, 11, 2) * 3600L + digits(at, 14, 2) * 60L + digits(at, 17, 2);
+        return seconds - offsetMinutes * 60L;
+    }
+
+    /**
+     * @param epochSeconds  The number of seconds since the epoch
+     * @param offsetMinutes The UTC offset to format the local time with
+     * @return The timestamp, in the same form as the timeline
+     */
+    static String format(long epochSeconds, int offsetMinutes) {
+        byte[] buf = new byte[LENGTH];
+        format(epochSeconds, offsetMinutes, buf, 0);
+        return new String(buf, Charsets.US_ASCII);
+    }
+
+    /**
+     * Write the timestamp as format() does, as LENGTH ASCII bytes starting at from.
+     */
+    static void format(long epochSeconds, int offsetMinutes, byte[] buf, int from) {
+        long local = epochSeconds + offsetMinutes * 60L;
+        long days = floorDiv(local, 86400L);
+        int secondOfDay = (int) (local - days * 86400L);
+
+        // civil from days, see http://howardhinnant.github.io/date_algorithms.html
+        long z = days + 719468;
+        long era = floorDiv(z, 146097);
+        int dayOfEra = (int) (z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        long year = era * 400 + yearOfEra + (month <= 2 ? 1 : 0);
+
+        pad(buf, from, 4, year);
+        buf[from + 4] = '-';
+        pad(buf, from + 5, 2, month);
+        buf[from + 7] = '-';
+        pad(buf, from + 8, 2, day);
+        buf[from + 10] = 'T';
+        pad(buf, from + 11, 2, secondOfDay / 3600);
+        buf[from + 13] = ':';
+        pad(buf, from + 14, 2, secondOfDay / 60 % 60);
+        buf[from + 16] = ':';
+        pad(buf, from + SECONDS, 2, secondOfDay % 60);
+        buf[from + 19] = (byte) (offsetMinutes < 0 ? '-' : '+');
+        pad(buf, from + 20, 2, Math.abs(offsetMinutes) / 60);
+        buf[from + 22] = ':';
+        pad(buf, from + 23, 2, Math.abs(offsetMinutes) % 60);
+    }
+
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        long era = floorDiv(y, 400);
+        int yearOfEra = (int) (y - era * 400);
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y != 0 && (x < 0) != (y < 0)) ? q - 1 : q;
+    }
+
+    /**
+     * @return The value of the decimal digits, or -1 if any of the characters is not a digit
+     */
+    private static int digits(CharSequence s, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static void pad(byte[] buf, int from, int count, long value) {
+        for (int i = from + count - 1; i >= from; i--) {
+            buf[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+package hubstats;
+
+/**
+ * Populates an Event.Builder from the title of a timeline entry.
+ */
+final class TitleExtractor {
+
+    /**
+     * The available ways of extracting fields from a title.
+     */
+    enum Mode {
+
+        /**
+         * Scan the title once with TitleTokenizer
+         */
+        TOKENS,
+
+        /**
+         * Match the title against the regular expression of the EventExtractor for its type
+         */
+        REGEX,
+
+        /**
+         * Use TitleTokenizer, and fail if the regular expressions would have extracted anything different
+         */
+        PARITY
+    }
+
+    private final Mode mode;
+    private final TitleTokenizer tokenizer = new TitleTokenizer();
+    private final EventExtractors extractors = new EventExtractors();
+
+    TitleExtractor(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Populate the builder from the title, using the event type already set on it.
+     *
+     * @throws IllegalStateException If the title is not in the form expected for the event type
+     */
+    void extract(String title, Event.Builder builder) {
+        EventType type = builder.getType();
+        boolean hasEvent;
+        if (mode == Mode.REGEX) {
+            hasEvent = extractors.get(type).extract(title, builder);
+        } else {
+            hasEvent = tokenizer.extract(type, title, builder);
+            if (mode == Mode.PARITY) {
+                Event.Builder expected = new Event.Builder().type(type);
+                if (extractors.get(type).extract(title, expected) != hasEvent
+                        || !builder.hasSameTitleFields(expected)) {
+                    throw new IllegalStateException(
+                            String.format("Tokenizer does not match %s regular expression for title: %s", type, title));
+                }
+            }
+        }
+        if (!hasEvent) {
+            throw new IllegalStateException(String.format("Event not matched: %s", type));
+        }
+    }
+
+}
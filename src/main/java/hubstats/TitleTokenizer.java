@@ -0,0 +1,405 @@
+package hubstats;
+
+/**
+ * Extracts event fields from the title of an entry without regular expressions.
+ * <p/>
+ * The title is scanned once to record the offsets of its spaces, slashes and line breaks. Each event type's fixed
+ * keywords ("pushed to", "started watching", "pull request" and so on) are then compared in place at the offsets where
+ * they must occur, and the fields are taken as substrings between them. A title is accepted or rejected exactly as it
+ * would be by the corresponding pattern in HubStats, and the builder is only modified when the title is accepted.
+ * <p/>
+ * Instances hold the offsets of the last title scanned and so must not be shared between threads.
+ */
+final class TitleTokenizer {
+
+    // the largest number of digits that always fits in a long
+    static final int MAX_LONG_DIGITS = 18;
+
+    private String title;
+    private int length;
+
+    private int[] spaces = new int[16];
+    private int spaceCount;
+
+    private int[] slashes = new int[16];
+    private int slashCount;
+
+    // line breaks, which the '.' of the patterns does not match
+    private int[] breaks = new int[4];
+    private int breakCount;
+
+    /**
+     * Populate the builder from the title.
+     *
+     * @param type    The type of the event, which determines the expected form of the title
+     * @param title   The entry title
+     * @param builder The builder to populate
+     * @return True if the title is in the form expected for the type
+     */
+    boolean extract(EventType type, String title, Event.Builder builder) {
+        tokenize(title);
+        switch (type) {
+            case Issues:
+                return numbered(" issue ", builder);
+            case PullRequest:
+                return numbered(" pull request ", builder);
+            case Push:
+                return push(builder);
+            case Create:
+                return create(builder);
+            case Watch:
+                return actorAndRepository(" started watching ", builder);
+            case Fork:
+                return actorAndRepository(" forked ", builder);
+            case ForkApply:
+                return actorAndRepository(" applied fork commits to ", builder);
+            case CommitComment:
+                return actorAndRepository(" commented on ", builder);
+            case Gollum:
+                return subtypedRepository(" a page in the ", builder);
+            case Download:
+                return subtypedRepository(" a file to ", builder);
+            case Member:
+                return member(builder);
+            case Public:
+                return publicRepository(builder);
+            case Delete:
+                return delete(builder);
+            case Follow:
+                return follow(builder);
+            case Gist:
+                return gist(builder);
+            default:
+                return false;
+        }
+    }
+
+    private void tokenize(String title) {
+        this.title = title;
+        this.length = title.length();
+        spaceCount = 0;
+        slashCount = 0;
+        breakCount = 0;
+        for (int i = 0; i < length; i++) {
+            char c = title.charAt(i);
+            if (c == ' ') {
+                spaces = add(spaces, spaceCount++, i);
+            } else if (c == '/') {
+                slashes = add(slashes, slashCount++, i);
+            } else if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                breaks = add(breaks, breakCount++, i);
+            }
+        }
+    }
+
+    private static int[] add(int[] offsets, int count, int offset) {
+        if (count == offsets.length) {
+            int[] larger = new int[offsets.length * 2];
+            System.arraycopy(offsets, 0, larger, 0, count);
+            offsets = larger;
+        }
+        offsets[count] = offset;
+        return offsets;
+    }
+
+    /**
+     * ([^ ]+) ([^ ]+) issue|pull request ([0-9]+) on ([^/]+)/(.*)
+     */
+    private boolean numbered(String keyword, Event.Builder builder) {
+        int actor = word(0);
+        int subType = word(actor + 1);
+        if (actor < 0 || subType < 0 || !at(subType, keyword)) {
+            return false;
+        }
+        int numberStart = subType + keyword.length();
+        int number = word(numberStart);
+        if (number < 0 || !digits(numberStart, number) || !at(number, " on ")) {
+            return false;
+        }
+        int accountStart = number + " on ".length();
+        int account = slash(accountStart);
+        if (account < 0 || !line(account + 1, length)) {
+            return false;
+        }
+        builder.actor(title.substring(0, actor));
+        builder.subType(title.substring(actor + 1, subType));
+        builder.alternateId(number(numberStart, number));
+        builder.repoAccount(title.substring(accountStart, account));
+        builder.repoName(title.substring(account + 1));
+        return true;
+    }
+
+    /**
+     * ([^ ]+) pushed to ([^ ]+) at ([^/]+)/(.*)
+     */
+    private boolean push(Event.Builder builder) {
+        int actor = word(0);
+        if (actor < 0 || !at(actor, " pushed to ")) {
+            return false;
+        }
+        int branchStart = actor + " pushed to ".length();
+        int branch = word(branchStart);
+        if (branch < 0 || !at(branch, " at ")) {
+            return false;
+        }
+        int accountStart = branch + " at ".length();
+        int account = slash(accountStart);
+        if (account < 0 || !line(account + 1, length)) {
+            return false;
+        }
+        builder.actor(title.substring(0, actor));
+        builder.branch(title.substring(branchStart, branch));
+        builder.repoAccount(title.substring(accountStart, account));
+        builder.repoName(title.substring(account + 1));
+        return true;
+    }
+
+    /**
+     * ([^ ]+) created (branch|tag) ([^ ]+) at ([^/]+)/(.*) or ([^ ]+) created repository (.*)
+     */
+    private boolean create(Event.Builder builder) {
+        int actor = word(0);
+        if (actor < 0 || !at(actor, " created ")) {
+            return false;
+        }
+        int kindStart = actor + " created ".length();
+        boolean tag = at(kindStart, "tag ");
+        if (tag || at(kindStart, "branch ")) {
+            int refStart = kindStart + (tag ? "tag ".length() : "branch ".length());
+            int ref = word(refStart);
+            if (ref >= 0 && at(ref, " at ")) {
+                int accountStart = ref + " at ".length();
+                int account = slash(accountStart);
+                if (account >= 0 && line(account + 1, length)) {
+                    builder.actor(title.substring(0, actor));
+                    if (tag) {
+                        builder.tag(title.substring(refStart, ref));
+                    } else {
+                        builder.branch(title.substring(refStart, ref));
+                    }
+                    builder.repoAccount(title.substring(accountStart, account));
+                    builder.repoName(title.substring(account + 1));
+                    return true;
+                }
+            }
+        }
+        if (!at(kindStart, "repository ") || !line(kindStart + "repository ".length(), length)) {
+            return false;
+        }
+        String actorName = title.substring(0, actor);
+        builder.actor(actorName);
+        builder.repoAccount(actorName);
+        builder.repoName(title.substring(kindStart + "repository ".length()));
+        return true;
+    }
+
+    /**
+     * ([^ ]+) keyword ([^/]+)/(.*)
+     */
+    private boolean actorAndRepository(String keyword, Event.Builder builder) {
+        int actor = word(0);
+        if (actor < 0 || !at(actor, keyword)) {
+            return false;
+        }
+        int accountStart = actor + keyword.length();
+        int account = slash(accountStart);
+        if (account < 0 || !line(account + 1, length)) {
+            return false;
+        }
+        builder.actor(title.substring(0, actor));
+        builder.repoAccount(title.substring(accountStart, account));
+        builder.repoName(title.substring(account + 1));
+        return true;
+    }
+
+    /**
+     * ([^ ]+) ([^ ]+) keyword ([^/]+)/(.*)
+     */
+    private boolean subtypedRepository(String keyword, Event.Builder builder) {
+        int actor = word(0);
+        int subType = word(actor + 1);
+        if (actor < 0 || subType < 0 || !at(subType, keyword)) {
+            return false;
+        }
+        int accountStart = subType + keyword.length();
+        int account = slash(accountStart);
+        if (account < 0 || !line(account + 1, length)) {
+            return false;
+        }
+        builder.actor(title.substring(0, actor));
+        builder.subType(title.substring(actor + 1, subType));
+        builder.repoAccount(title.substring(accountStart, account));
+        builder.repoName(title.substring(account + 1));
+        return true;
+    }
+
+    /**
+     * ([^ ]+) ([^ ]+) ([^ ]+) to (.*)
+     */
+    private boolean member(Event.Builder builder) {
+        int account = word(0);
+        int subType = word(account + 1);
+        int actor = word(subType + 1);
+        if (account < 0 || subType < 0 || actor < 0 || !at(actor, " to ")
+                || !line(actor + " to ".length(), length)) {
+            return false;
+        }
+        builder.repoAccount(title.substring(0, account));
+        builder.subType(title.substring(account + 1, subType));
+        builder.actor(title.substring(subType + 1, actor));
+        builder.repoName(title.substring(actor + " to ".length()));
+        return true;
+    }
+
+    /**
+     * ([^ ]+).* ([^ ]+)
+     */
+    private boolean publicRepository(Event.Builder builder) {
+        int actor = word(0);
+        if (actor < 0 || spaceCount == 0) {
+            return false;
+        }
+        int lastSpace = spaces[spaceCount - 1];
+        if (lastSpace == length - 1 || !line(actor, lastSpace)) {
+            return false;
+        }
+        String actorName = title.substring(0, actor);
+        builder.actor(actorName);
+        builder.repoAccount(actorName);
+        builder.repoName(title.substring(lastSpace + 1));
+        return true;
+    }
+
+    /**
+     * ([^ ]+) deleted (branch|tag) ([^ ]+) at (.*)
+     */
+    private boolean delete(Event.Builder builder) {
+        int actor = word(0);
+        if (actor < 0 || !at(actor, " deleted ")) {
+            return false;
+        }
+        int kindStart = actor + " deleted ".length();
+        boolean tag = at(kindStart, "tag ");
+        if (!tag && !at(kindStart, "branch ")) {
+            return false;
+        }
+        int refStart = kindStart + (tag ? "tag ".length() : "branch ".length());
+        int ref = word(refStart);
+        if (ref < 0 || !at(ref, " at ") || !line(ref + " at ".length(), length)) {
+            return false;
+        }
+        String actorName = title.substring(0, actor);
+        builder.actor(actorName);
+        builder.repoAccount(actorName);
+        if (tag) {
+            builder.tag(title.substring(refStart, ref));
+        } else {
+            builder.branch(title.substring(refStart, ref));
+        }
+        builder.repoName(title.substring(ref + " at ".length()));
+        return true;
+    }
+
+    /**
+     * ([^ ]+) started following (.*)
+     */
+    private boolean follow(Event.Builder builder) {
+        int actor = word(0);
+        if (actor < 0 || !at(actor, " started following ") || !line(actor + " started following ".length(), length)) {
+            return false;
+        }
+        builder.actor(title.substring(0, actor));
+        builder.repoAccount(title.substring(actor + " started following ".length()));
+        return true;
+    }
+
+    /**
+     * ([^ ]+) ([^ ]+) gist: ([0-9]+)
+     */
+    private boolean gist(Event.Builder builder) {
+        int actor = word(0);
+        int subType = word(actor + 1);
+        if (actor < 0 || subType < 0 || !at(subType, " gist: ")) {
+            return false;
+        }
+        int numberStart = subType + " gist: ".length();
+        if (numberStart == length || !digits(numberStart, length)) {
+            return false;
+        }
+        builder.actor(title.substring(0, actor));
+        builder.subType(title.substring(actor + 1, subType));
+        builder.alternateId(number(numberStart, length));
+        return true;
+    }
+
+    /**
+     * The end of the non-empty run of characters other than space that starts at from.
+     *
+     * @return The offset of the space or end of title that follows the run, or -1 if it is empty
+     */
+    private int word(int from) {
+        if (from < 0 || from >= length) {
+            return -1;
+        }
+        int end = length;
+        for (int i = 0; i < spaceCount; i++) {
+            if (spaces[i] >= from) {
+                end = spaces[i];
+                break;
+            }
+        }
+        return end > from ? end : -1;
+    }
+
+    /**
+     * The first slash at or after from, provided it is not at from itself.
+     *
+     * @return The offset of the slash, or -1 if there is no such slash
+     */
+    private int slash(int from) {
+        for (int i = 0; i < slashCount; i++) {
+            if (slashes[i] >= from) {
+                return slashes[i] > from ? slashes[i] : -1;
+            }
+        }
+        return -1;
+    }
+
+    private boolean at(int offset, String keyword) {
+        return offset >= 0 && title.startsWith(keyword, offset);
+    }
+
+    /**
+     * If title[from, to) holds no line breaks.
+     */
+    private boolean line(int from, int to) {
+        for (int i = 0; i < breakCount; i++) {
+            if (breaks[i] >= from && breaks[i] < to) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean digits(int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = title.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long number(int from, int to) {
+        if (to - from > MAX_LONG_DIGITS) {
+            return Long.parseLong(title.substring(from, to));
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            value = value * 10 + (title.charAt(i) - '0');
+        }
+        return value;
+    }
+
+}
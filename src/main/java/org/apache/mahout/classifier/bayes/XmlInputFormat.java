@@ -21,9 +21,12 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.Decompressor;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
@@ -31,9 +34,14 @@ import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
 
 /**
  * Reads records that are delimited by a specific begin/end tag.
+ * <p/>
+ * Files compressed with a codec known to CompressionCodecFactory, such as gzip, are decompressed as they are read.
+ * As in TextInputFormat they are not split, so each is read whole by a single reader.
  */
 public class XmlInputFormat extends TextInputFormat {
 
@@ -52,92 +60,117 @@ public class XmlInputFormat extends TextInputFormat {
     }
 
     /**
-     * XMLRecordReader class to read through a given xml document to output xml blocks as records as specified
-     * by the start tag and end tag
+     * Size of the read buffer used by XmlRecordReader, in bytes.
      */
-    public static class XmlRecordReader extends RecordReader<LongWritable, Text> {
-        private final byte[] startTag;
+    public static final String BUFFER_SIZE_KEY = "xmlinput.buffer.size";
 
-        private final byte[] endTag;
+    private static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * Base of the readers that scan the input of a split a block at a time. It opens the file, decompressing it if it
+     * is compressed, and keeps the current block, whose bytes from blockPos to blockLength are yet to be consumed;
+     * subclasses advance blockPos and call fill when they need more. It also reports progress and returns the
+     * decompressor when closed.
+     */
+    public abstract static class BlockRecordReader extends RecordReader<LongWritable, Text> {
+
+        protected final long start;
 
-        private final long start;
+        protected final long end;
 
-        private final long end;
+        // where the split ends in the file itself, which for compressed input is not where reading ends
+        private final long progressEnd;
 
         private final FSDataInputStream fsin;
 
-        private final DataOutputBuffer buffer = new DataOutputBuffer();
+        // fsin, or a stream decompressing it
+        private final InputStream in;
 
-        private LongWritable currentKey;
+        private final Decompressor decompressor;
 
-        private Text currentValue;
+        protected final byte[] block;
 
-        public XmlRecordReader(FileSplit split, Configuration conf) throws IOException {
-            startTag = conf.get(START_TAG_KEY).getBytes("utf-8");
-            endTag = conf.get(END_TAG_KEY).getBytes("utf-8");
+        // file offset of block[0]
+        protected long blockStart;
+
+        protected int blockPos;
+
+        protected int blockLength;
+
+        // reused for every record, in the same way as LineRecordReader
+        protected final LongWritable currentKey = new LongWritable();
+
+        protected final Text currentValue = new Text();
+
+        protected BlockRecordReader(FileSplit split, Configuration conf, int blockSize) throws IOException {
+            block = new byte[blockSize];
 
             // open the file and seek to the start of the split
             start = split.getStart();
-            end = start + split.getLength();
             Path file = split.getPath();
             FileSystem fs = file.getFileSystem(conf);
             fsin = fs.open(split.getPath());
-            fsin.seek(start);
+            CompressionCodec codec = new CompressionCodecFactory(conf).getCodec(file);
+            if (codec == null) {
+                end = start + split.getLength();
+                fsin.seek(start);
+                in = fsin;
+                decompressor = null;
+            } else {
+                // compressed files are never split, so read to the end of the decompressed stream
+                end = Long.MAX_VALUE;
+                decompressor = CodecPool.getDecompressor(codec);
+                in = codec.createInputStream(fsin, decompressor);
+            }
+            blockStart = start;
+            progressEnd = start + split.getLength();
         }
 
-        private boolean next(LongWritable key, Text value) throws IOException {
-            if (fsin.getPos() < end && readUntilMatch(startTag, false)) {
-                try {
-                    buffer.write(startTag);
-                    if (readUntilMatch(endTag, true)) {
-                        key.set(fsin.getPos());
-                        value.set(buffer.getData(), 0, buffer.getLength());
-                        return true;
-                    }
-                } finally {
-                    buffer.reset();
-                }
+        /**
+         * The offset within the file of the next unconsumed byte.
+         */
+        protected long getFilePosition() {
+            return blockStart + blockPos;
+        }
+
+        /**
+         * Move the unconsumed bytes to the front of the block and read more input after them.
+         *
+         * @return false at end of file
+         */
+        protected boolean fill() throws IOException {
+            int remaining = blockLength - blockPos;
+            System.arraycopy(block, blockPos, block, 0, remaining);
+            blockStart += blockPos;
+            blockPos = 0;
+            blockLength = remaining;
+            int read = in.read(block, blockLength, block.length - blockLength);
+            if (read <= 0) {
+                return false;
             }
-            return false;
+            blockLength += read;
+            return true;
         }
 
         @Override
         public void close() throws IOException {
-            fsin.close();
+            try {
+                in.close();
+            } finally {
+                if (decompressor != null) {
+                    CodecPool.returnDecompressor(decompressor);
+                }
+            }
         }
 
         @Override
         public float getProgress() throws IOException {
-            return (fsin.getPos() - start) / (float) (end - start);
-        }
-
-        private boolean readUntilMatch(byte[] match, boolean withinBlock) throws IOException {
-            int i = 0;
-            while (true) {
-                int b = fsin.read();
-                // end of file:
-                if (b == -1) {
-                    return false;
-                }
-                // save to buffer:
-                if (withinBlock) {
-                    buffer.write(b);
-                }
-
-                // check if we're matching:
-                if (b == match[i]) {
-                    i++;
-                    if (i >= match.length) {
-                        return true;
-                    }
-                } else {
-                    i = 0;
-                }
-                // see if we've passed the stop point:
-                if (!withinBlock && i == 0 && fsin.getPos() >= end) {
-                    return false;
-                }
+            if (progressEnd == start) {
+                return 0.0f;
             }
+            // for compressed input measure how much of the compressed file has been read
+            long position = in == fsin ? getFilePosition() : fsin.getPos();
+            return Math.min(1.0f, (position - start) / (float) (progressEnd - start));
         }
 
         @Override
@@ -153,11 +186,132 @@ public class XmlInputFormat extends TextInputFormat {
         @Override
         public void initialize(InputSplit split, TaskAttemptContext context) throws IOException, InterruptedException {
         }
+    }
+
+    /**
+     * XMLRecordReader class to read through a given xml document to output xml blocks as records as specified
+     * by the start tag and end tag
+     * <p/>
+     * Input is read in large blocks and the tags are located with a Boyer-Moore-Horspool search over each block,
+     * so record bytes are appended to the value in bulk rather than a byte at a time.
+     */
+    public static class XmlRecordReader extends BlockRecordReader {
+        private final byte[] startTag;
+
+        private final byte[] endTag;
+
+        private final int[] startSkip;
+
+        private final int[] endSkip;
+
+        public XmlRecordReader(FileSplit split, Configuration conf) throws IOException {
+            super(split, conf, blockSize(conf));
+            startTag = conf.get(START_TAG_KEY).getBytes("utf-8");
+            endTag = conf.get(END_TAG_KEY).getBytes("utf-8");
+            startSkip = skipTable(startTag);
+            endSkip = skipTable(endTag);
+        }
+
+        private static int blockSize(Configuration conf) throws IOException {
+            int longestTag = Math.max(conf.get(START_TAG_KEY).getBytes("utf-8").length,
+                    conf.get(END_TAG_KEY).getBytes("utf-8").length);
+            return Math.max(conf.getInt(BUFFER_SIZE_KEY, DEFAULT_BUFFER_SIZE), 2 * longestTag);
+        }
+
+        /**
+         * Read the next record straight into value, whose backing array is kept and grown as needed so that no
+         * per-record buffers or copies are required.
+         */
+        private boolean next(LongWritable key, Text value) throws IOException {
+            if (getFilePosition() < end && readUntilMatch(startTag, startSkip, null)) {
+                value.clear();
+                value.append(startTag, 0, startTag.length);
+                if (readUntilMatch(endTag, endSkip, value)) {
+                    key.set(getFilePosition());
+                    return true;
+                }
+            }
+            value.clear();
+            return false;
+        }
+
+        /**
+         * Advance past the next occurrence of match. When searching for a start tag (record is null) a match is
+         * only accepted if it begins before the end of the split; when reading a record the bytes up to and including
+         * the match are appended to it.
+         */
+        private boolean readUntilMatch(byte[] match, int[] skip, Text record) throws IOException {
+            boolean withinBlock = record != null;
+            while (true) {
+                int found = indexOf(match, skip);
+                if (found >= 0) {
+                    if (!withinBlock && blockStart + found >= end) {
+                        blockPos = found;
+                        return false;
+                    }
+                    int matchEnd = found + match.length;
+                    if (withinBlock) {
+                        record.append(block, blockPos, matchEnd - blockPos);
+                    }
+                    blockPos = matchEnd;
+                    return true;
+                }
+
+                // keep the tail of the block as it may hold the first bytes of a match
+                int keep = Math.min(match.length - 1, blockLength - blockPos);
+                int consumed = blockLength - keep;
+                if (withinBlock) {
+                    record.append(block, blockPos, consumed - blockPos);
+                }
+                blockPos = consumed;
+                // see if we've passed the stop point:
+                if (!withinBlock && getFilePosition() >= end) {
+                    return false;
+                }
+                // end of file:
+                if (!fill()) {
+                    if (withinBlock) {
+                        record.append(block, blockPos, blockLength - blockPos);
+                    }
+                    blockPos = blockLength;
+                    return false;
+                }
+            }
+        }
+
+        /**
+         * Boyer-Moore-Horspool search for match within the unconsumed bytes of the block.
+         *
+         * @return The index within the block of the first match, or -1 if there is none
+         */
+        private int indexOf(byte[] match, int[] skip) {
+            int last = match.length - 1;
+            byte lastByte = match[last];
+            for (int i = blockPos; i + last < blockLength; i += skip[block[i + last] & 0xff]) {
+                if (block[i + last] == lastByte) {
+                    int j = last - 1;
+                    while (j >= 0 && block[i + j] == match[j]) {
+                        j--;
+                    }
+                    if (j < 0) {
+                        return i;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        private static int[] skipTable(byte[] match) {
+            int[] skip = new int[256];
+            Arrays.fill(skip, match.length);
+            for (int i = 0; i < match.length - 1; i++) {
+                skip[match[i] & 0xff] = match.length - 1 - i;
+            }
+            return skip;
+        }
 
         @Override
         public boolean nextKeyValue() throws IOException, InterruptedException {
-            currentKey = new LongWritable();
-            currentValue = new Text();
             return next(currentKey, currentValue);
         }
     }
@@ -0,0 +1,142 @@
+package hubstats;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mrunit.mapreduce.MapDriver;
+import org.apache.hadoop.mrunit.types.Pair;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.apache.hadoop.mrunit.testutil.ExtendedAssert.assertListEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AtomEntryInputFormatTest {
+
+    private static final File SINGLE_FEED = TestResources.file("single-feed.log");
+
+    private static final File EVENT_TYPES = new File(SINGLE_FEED.getParentFile(), "event-types.log");
+
+    @Test
+    public void entryPerRecord() throws IOException, InterruptedException {
+        AtomEntryInputFormat.AtomEntryRecordReader reader = reader(SINGLE_FEED);
+        int entries = 0;
+        long feedKey = -1;
+        try {
+            while (reader.nextKeyValue()) {
+                if (feedKey < 0) {
+                    feedKey = reader.getCurrentKey().get();
+                }
+                assertEquals(feedKey, reader.getCurrentKey().get());
+                String value = reader.getCurrentValue().toString();
+                assertEquals(1, value.split("<entry>").length - 1);
+                assertTrue(value.startsWith("<feed xmlns=\"http://www.w3.org/2005/Atom\""));
+                assertTrue(value.endsWith("</entry></feed>"));
+                entries++;
+            }
+        } finally {
+            reader.close();
+        }
+        assertEquals(30, entries);
+    }
+
+    @Test
+    public void sameEventsAsFeed() throws IOException, InterruptedException {
+        List<Pair<LongWritable, Text>> expected = new MapDriver<LongWritable, Text, LongWritable, Text>(
+                new HubStats.EventMapper()).withInput(new LongWritable(0), feed(SINGLE_FEED)).run();
+
+        List<Pair<LongWritable, Text>> out = Lists.newArrayList();
+        AtomEntryInputFormat.AtomEntryRecordReader reader = reader(SINGLE_FEED);
+        try {
+            while (reader.nextKeyValue()) {
+                out.addAll(new MapDriver<LongWritable, Text, LongWritable, Text>(new HubStats.EventMapper())
+                        .withInput(reader.getCurrentKey(), reader.getCurrentValue()).run());
+            }
+        } finally {
+            reader.close();
+        }
+        assertListEquals(expected, out);
+    }
+
+    @Test
+    public void splitsReadEachEntryOnce() throws IOException, InterruptedException {
+        File log = File.createTempFile("github-timeline", ".log");
+        try {
+            String header = "HTTP/1.1 200 OK\r\nContent-Type: application/atom+xml; charset=utf-8\r\n\r\n";
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 3; i++) {
+                text.append(header).append(FileUtils.readFileToString(SINGLE_FEED)).append('\n');
+                text.append(header).append(FileUtils.readFileToString(EVENT_TYPES)).append('\n');
+            }
+            FileUtils.writeStringToFile(log, text.toString());
+
+            // each entry of each feed, with the header of its feed
+            List<String> expected = Lists.newArrayList();
+            AtomEntryInputFormat.XmlRecordReader feeds = new AtomEntryInputFormat.XmlRecordReader(
+                    new FileSplit(new Path(log.getPath()), 0, log.length(), null), feedConf());
+            try {
+                while (feeds.nextKeyValue()) {
+                    String feed = feeds.getCurrentValue().toString();
+                    String feedHeader = feed.substring(0, feed.indexOf("<entry>"));
+                    for (int entry = feed.indexOf("<entry>"); entry >= 0; entry = feed.indexOf("<entry>", entry + 1)) {
+                        expected.add(feedHeader + feed.substring(entry, feed.indexOf("</entry>", entry) + 8)
+                                + "</feed>");
+                    }
+                }
+            } finally {
+                feeds.close();
+            }
+            assertEquals(3 * (30 + 27), expected.size());
+
+            for (long splitSize : new long[]{1000, 65536, log.length()}) {
+                List<String> entries = Lists.newArrayList();
+                for (long start = 0; start < log.length(); start += splitSize) {
+                    AtomEntryInputFormat.AtomEntryRecordReader reader = new AtomEntryInputFormat.AtomEntryRecordReader(
+                            new FileSplit(new Path(log.getPath()), start, Math.min(splitSize, log.length() - start),
+                                    null), new Configuration());
+                    try {
+                        while (reader.nextKeyValue()) {
+                            entries.add(reader.getCurrentValue().toString());
+                        }
+                    } finally {
+                        reader.close();
+                    }
+                }
+                assertEquals(String.valueOf(splitSize), expected, entries);
+            }
+        } finally {
+            log.delete();
+        }
+    }
+
+    private static AtomEntryInputFormat.AtomEntryRecordReader reader(File file) throws IOException {
+        return new AtomEntryInputFormat.AtomEntryRecordReader(
+                new FileSplit(new Path(file.getPath()), 0, file.length(), null), new Configuration());
+    }
+
+    private static Text feed(File file) throws IOException, InterruptedException {
+        AtomEntryInputFormat.XmlRecordReader reader = new AtomEntryInputFormat.XmlRecordReader(
+                new FileSplit(new Path(file.getPath()), 0, file.length(), null), feedConf());
+        try {
+            reader.nextKeyValue();
+            return new Text(reader.getCurrentValue());
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static Configuration feedConf() {
+        Configuration conf = new Configuration();
+        conf.set(AtomEntryInputFormat.START_TAG_KEY, "<feed");
+        conf.set(AtomEntryInputFormat.END_TAG_KEY, "feed>");
+        return conf;
+    }
+}
@@ -0,0 +1,217 @@
+package hubstats;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static hubstats.TestResources.HEADER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CheckpointTest {
+
+    private static final Map<String, Long> NO_HASHES = Collections.emptyMap();
+
+    private File dir;
+    private File timeline;
+    private Path log;
+    private FileSystem fs;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = TestResources.tempDir("checkpoint");
+        timeline = new File(dir, "github-timeline.log");
+        log = new Path(timeline.getPath());
+        fs = FileSystem.getLocal(new Configuration());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void emptyIfMissing() throws IOException {
+        Checkpoint checkpoint = Checkpoint.read(fs, Checkpoint.path(new Path(dir.getPath())));
+        assertEquals(0L, checkpoint.getMaxEventId(log));
+        assertEquals(0L, checkpoint.getOffset(log));
+        assertFalse(checkpoint.contains(log));
+    }
+
+    @Test
+    public void advanceToEndOfLastCompleteFeed() throws IOException {
+        String complete = HEADER + TestResources.read("single-feed.log")
+                + HEADER + TestResources.read("event-types.log");
+        FileUtils.writeStringToFile(timeline, complete + HEADER + "<feed><entry>");
+        Checkpoint checkpoint = Checkpoint.read(fs, Checkpoint.path(new Path(dir.getPath()))).advance(fs, logs());
+        assertTrue(checkpoint.contains(log));
+        assertEquals(complete.trim().getBytes("UTF-8").length, checkpoint.getOffset(log));
+        assertEquals(1007577244L, checkpoint.getMaxEventId(log));
+    }
+
+    @Test
+    public void advanceWithoutNewFeeds() throws IOException {
+        FileUtils.writeStringToFile(timeline, HEADER + "<feed><entry>");
+        Checkpoint checkpoint = new Checkpoint(Collections.singletonMap(log.toString(), 0L),
+                Collections.singletonMap(log.toString(), 42L), NO_HASHES).advance(fs, logs());
+        assertEquals(0L, checkpoint.getOffset(log));
+        assertEquals(42L, checkpoint.getMaxEventId(log));
+    }
+
+    @Test
+    public void maxEventIdOfEveryFeedRead() throws IOException {
+        FileUtils.writeStringToFile(timeline, HEADER + TestResources.read("event-types.log")
+                + HEADER + TestResources.read("single-feed.log") + HEADER + "<feed></feed>");
+        Checkpoint checkpoint = empty().advance(fs, logs());
+        assertEquals(timeline.length(), checkpoint.getOffset(log));
+        assertEquals(1007577244L, checkpoint.getMaxEventId(log));
+
+        FeedIndex.build(fs, log, fs.getConf()).write(fs, log);
+        assertEquals(1007577244L, empty().advance(fs, logs()).getMaxEventId(log));
+    }
+
+    @Test
+    public void shortenedLogReadFromStart() throws IOException {
+        FileUtils.writeStringToFile(timeline, HEADER + TestResources.read("single-feed.log"));
+        Checkpoint advanced = new Checkpoint(Collections.singletonMap(log.toString(), 1L << 40),
+                Collections.singletonMap(log.toString(), Long.MAX_VALUE), NO_HASHES).advance(fs, logs());
+        assertEquals(timeline.length(), advanced.getOffset(log) + trailing(TestResources.read("single-feed.log")));
+        assertEquals(1007541709L, advanced.getMaxEventId(log));
+    }
+
+    @Test
+    public void rewrittenLogReadFromStart() throws IOException {
+        String first = HEADER + TestResources.read("single-feed.log");
+        FileUtils.writeStringToFile(timeline, first);
+        Path path = Checkpoint.path(new Path(dir.getPath()));
+        empty().advance(fs, logs()).write(fs, path);
+        Checkpoint checkpoint = Checkpoint.read(fs, path);
+
+        FileUtils.writeStringToFile(timeline, first + HEADER + TestResources.read("event-types.log"));
+        assertFalse(checkpoint.isReplaced(fs, fs.getFileStatus(log)));
+
+        // longer than the offset read to, but not the log that was read
+        FileUtils.writeStringToFile(timeline, HEADER + TestResources.read("event-types.log") + first);
+        assertTrue(timeline.length() > checkpoint.getOffset(log));
+        assertTrue(checkpoint.isReplaced(fs, fs.getFileStatus(log)));
+        assertEquals(0L, checkpoint.getOffset(fs, fs.getFileStatus(log)));
+        assertEquals(0L, checkpoint.getMaxEventId(fs, fs.getFileStatus(log)));
+    }
+
+    @Test
+    public void compressedLogReadWhole() throws IOException {
+        File compressed = new File(dir, "github-timeline.log.gz");
+        OutputStream out = new GZIPOutputStream(new FileOutputStream(compressed));
+        try {
+            out.write((HEADER + TestResources.read("single-feed.log")
+                    + HEADER + TestResources.read("event-types.log")).getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        Path path = new Path(compressed.getPath());
+        List<FileStatus> logs = Lists.newArrayList(fs.getFileStatus(path));
+        Checkpoint checkpoint = empty().advance(fs, logs);
+        assertEquals(compressed.length(), checkpoint.getOffset(path));
+        assertEquals(1007577244L, checkpoint.getMaxEventId(path));
+
+        Checkpoint again = new Checkpoint(Collections.singletonMap(path.toString(), compressed.length()),
+                Collections.singletonMap(path.toString(), 42L), NO_HASHES).advance(fs, logs);
+        assertEquals(compressed.length(), again.getOffset(path));
+        assertEquals(42L, again.getMaxEventId(path));
+    }
+
+    @Test
+    public void writeAndRead() throws IOException {
+        FileUtils.writeStringToFile(timeline, HEADER + TestResources.read("single-feed.log"));
+        Path path = Checkpoint.path(new Path(dir.getPath()));
+        Checkpoint written = empty().advance(fs, logs());
+        written.write(fs, path);
+        Checkpoint read = Checkpoint.read(fs, path);
+        assertEquals(written.getMaxEventId(log), read.getMaxEventId(log));
+        assertEquals(written.getOffset(log), read.getOffset(log));
+        assertTrue(read.getOffset(log) > 0);
+    }
+
+    @Test
+    public void maxEventIdPerLog() throws IOException {
+        FileUtils.writeStringToFile(timeline, HEADER + TestResources.read("single-feed.log"));
+        File backfill = new File(dir, "backfill.log");
+        FileUtils.writeStringToFile(backfill, HEADER + "<feed><entry><id>tag:github.com,2008:PushEvent/42</id></entry>"
+                + "</feed>");
+        Path backfillPath = new Path(backfill.getPath());
+        Checkpoint checkpoint = new Checkpoint(Collections.singletonMap(log.toString(), 0L),
+                Collections.singletonMap(log.toString(), 1007541709L), NO_HASHES)
+                .advance(fs, Lists.newArrayList(fs.getFileStatus(log), fs.getFileStatus(backfillPath)));
+        assertEquals(1007541709L, checkpoint.getMaxEventId(log));
+        assertEquals(42L, checkpoint.getMaxEventId(backfillPath));
+        assertEquals(0L, checkpoint.getMaxEventId(new Path(dir.getPath(), "unread.log")));
+    }
+
+    @Test(expected = IOException.class)
+    public void logWithoutMaxEventIdInvalid() throws IOException {
+        Path path = Checkpoint.path(new Path(dir.getPath()));
+        FileUtils.writeStringToFile(new File(path.toUri().getPath()), "100\t" + log + "\n");
+        Checkpoint.read(fs, path);
+    }
+
+    @Test
+    public void commitReplacesCheckpoint() throws IOException {
+        FileUtils.writeStringToFile(timeline, HEADER + TestResources.read("single-feed.log"));
+        Path output = new Path(dir.getPath());
+        Path path = Checkpoint.path(output);
+        Path pending = Checkpoint.pendingPath(output);
+        empty().write(fs, path);
+        empty().advance(fs, logs()).write(fs, pending);
+        Checkpoint.commit(fs, pending, path);
+        assertFalse(fs.exists(pending));
+        assertFalse(fs.exists(Checkpoint.previousPath(path)));
+        assertTrue(Checkpoint.read(fs, path).getOffset(log) > 0);
+    }
+
+    @Test
+    public void readCheckpointMovedAside() throws IOException {
+        FileUtils.writeStringToFile(timeline, HEADER + TestResources.read("single-feed.log"));
+        Path path = Checkpoint.path(new Path(dir.getPath()));
+        empty().advance(fs, logs()).write(fs, Checkpoint.previousPath(path));
+        Checkpoint read = Checkpoint.read(fs, path);
+        assertTrue(read.contains(log));
+        assertTrue(read.getOffset(log) > 0);
+    }
+
+    @Test
+    public void nextDeltaNumbersRuns() throws IOException {
+        Path output = new Path(dir.getPath());
+        assertEquals(new Path(output, "delta-00000"), Checkpoint.nextDelta(fs, output));
+        fs.mkdirs(new Path(output, "delta-00000"));
+        assertEquals(new Path(output, "delta-00001"), Checkpoint.nextDelta(fs, output));
+    }
+
+    private static Checkpoint empty() {
+        return new Checkpoint(Collections.<String, Long>emptyMap(), Collections.<String, Long>emptyMap(), NO_HASHES);
+    }
+
+    private List<FileStatus> logs() throws IOException {
+        return Lists.newArrayList(fs.getFileStatus(log));
+    }
+
+    private static int trailing(String feed) {
+        return feed.length() - feed.trim().length();
+    }
+
+}
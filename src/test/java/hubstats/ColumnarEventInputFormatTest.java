@@ -0,0 +1,130 @@
+package hubstats;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ColumnarEventInputFormatTest {
+
+    private File file;
+    private Configuration conf;
+    private List<Event> events;
+
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        file = File.createTempFile("events", ColumnarEventOutputFormat.EXTENSION);
+        conf = new Configuration();
+        events = Lists.newArrayList();
+        events.addAll(TestResources.parse("event-types.log"));
+        events.addAll(TestResources.parse("single-feed.log"));
+        events.add(new Event.Builder(1007541710L, EventType.Push, "2010-11-19T11:55:54Z", "esil")
+                .repoAccount("esil").repoName("cmake").branch("master").build());
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void readsAllColumns() throws IOException {
+        write(7);
+        List<String> read = Lists.newArrayList();
+        ColumnarEventInputFormat.ColumnarRecordReader reader = reader();
+        try {
+            while (reader.nextKeyValue()) {
+                assertEquals(reader.getCurrentKey().get(), reader.getCurrentValue().getEventId());
+                read.add(toString(reader.getCurrentValue()));
+            }
+        } finally {
+            reader.close();
+        }
+        assertEquals(events.size(), read.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(events.get(i).toString(), read.get(i));
+        }
+    }
+
+    @Test
+    public void readsOnlyColumnsAsked() throws IOException {
+        write(ColumnarEventOutputFormat.DEFAULT_ROW_GROUP_SIZE);
+        conf.set(ColumnarEventInputFormat.COLUMNS_KEY, "event_type, repo_name");
+        ColumnarEventInputFormat.ColumnarRecordReader reader = reader();
+        int i = 0;
+        try {
+            while (reader.nextKeyValue()) {
+                EventRow row = reader.getCurrentValue();
+                Event event = events.get(i++);
+                assertEquals(event.getEventId(), row.getEventId());
+                assertEquals(event.getEventType(), row.getEventType());
+                assertEquals(event.getRepoName(), row.getRepoName());
+                assertNull(row.getAt());
+                assertNull(row.getActor());
+                assertNull(row.getBranch());
+                assertEquals(0L, row.getAlternateId());
+            }
+        } finally {
+            reader.close();
+        }
+        assertEquals(events.size(), i);
+    }
+
+    @Test
+    public void smallerThanText() throws IOException {
+        write(ColumnarEventOutputFormat.DEFAULT_ROW_GROUP_SIZE);
+        long text = 0;
+        for (Event event : events) {
+            text += event.toString().length() + 1;
+        }
+        assertTrue(file.length() < text);
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFilesRejected() throws IOException {
+        FileUtils.writeStringToFile(file, "1007541708\tPush\n");
+        reader();
+    }
+
+    private void write(int rowGroupSize) throws IOException {
+        ColumnarEventOutputFormat.ColumnarRecordWriter writer = new ColumnarEventOutputFormat.ColumnarRecordWriter(
+                new DataOutputStream(new FileOutputStream(file)), rowGroupSize);
+        LongWritable id = new LongWritable();
+        EventWritable writable = new EventWritable();
+        for (Event event : events) {
+            id.set(event.getEventId());
+            writable.set(event);
+            writer.write(id, writable);
+        }
+        writer.close(null);
+    }
+
+    private ColumnarEventInputFormat.ColumnarRecordReader reader() throws IOException {
+        ColumnarEventInputFormat.ColumnarRecordReader reader = new ColumnarEventInputFormat.ColumnarRecordReader();
+        reader.initialize(new FileSplit(new Path(file.getPath()), 0, file.length(), null), conf);
+        return reader;
+    }
+
+    private static String toString(EventRow row) {
+        Event.Builder builder = new Event.Builder(row.getEventId(), row.getEventType(), row.getAt(), row.getActor())
+                .repoAccount(row.getRepoAccount()).repoName(row.getRepoName()).branch(row.getBranch())
+                .tag(row.getTag()).alternateId(row.getAlternateId()).subType(row.getSubType());
+        return builder.build().toString();
+    }
+
+}
@@ -0,0 +1,96 @@
+package hubstats;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mrunit.mapreduce.MapDriver;
+import org.apache.hadoop.mrunit.types.Pair;
+import org.apache.mahout.classifier.bayes.XmlInputFormat;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.apache.hadoop.mrunit.testutil.ExtendedAssert.assertListEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompactorTest {
+
+    private static final File SINGLE_FEED = TestResources.file("single-feed.log");
+
+    private static final Comparator<Pair<LongWritable, Text>> BY_ID = new Comparator<Pair<LongWritable, Text>>() {
+        public int compare(Pair<LongWritable, Text> a, Pair<LongWritable, Text> b) {
+            return a.getFirst().compareTo(b.getFirst());
+        }
+    };
+
+    @Test
+    public void entryPerEvent() throws IOException {
+        List<Pair<LongWritable, Text>> entries = entries();
+        assertEquals(30, entries.size());
+        for (Pair<LongWritable, Text> entry : entries) {
+            String text = entry.getSecond().toString();
+            assertTrue(text.startsWith("<entry>"));
+            assertTrue(text.endsWith("</entry>"));
+            assertTrue(text.contains("Event/" + entry.getFirst().get() + "</id>"));
+        }
+    }
+
+    @Test
+    public void archiveImportedAsOriginal() throws IOException, InterruptedException {
+        List<Pair<LongWritable, Text>> expected = new MapDriver<LongWritable, Text, LongWritable, Text>(
+                new HubStats.EventMapper()).withInput(new LongWritable(0), text(SINGLE_FEED)).run();
+        Collections.sort(expected, BY_ID);
+
+        List<Pair<LongWritable, Text>> entries = entries();
+        Collections.sort(entries, BY_ID);
+        File archive = File.createTempFile("archive", ".log");
+        try {
+            AtomFeedOutputFormat.AtomFeedRecordWriter writer = new AtomFeedOutputFormat.AtomFeedRecordWriter(
+                    new DataOutputStream(new FileOutputStream(archive)), 7);
+            for (Pair<LongWritable, Text> entry : entries) {
+                writer.write(entry.getFirst(), entry.getSecond());
+            }
+            writer.close(null);
+
+            List<Pair<LongWritable, Text>> out = Lists.newArrayList();
+            int feeds = 0;
+            XmlInputFormat.XmlRecordReader reader = new XmlInputFormat.XmlRecordReader(
+                    new FileSplit(new Path(archive.getPath()), 0, archive.length(), null),
+                    FeedInputFormat.feedConfiguration(new Configuration()));
+            try {
+                while (reader.nextKeyValue()) {
+                    feeds++;
+                    out.addAll(new MapDriver<LongWritable, Text, LongWritable, Text>(new HubStats.EventMapper())
+                            .withInput(reader.getCurrentKey(), reader.getCurrentValue()).run());
+                }
+            } finally {
+                reader.close();
+            }
+            assertEquals(5, feeds);
+            assertListEquals(expected, out);
+        } finally {
+            archive.delete();
+        }
+    }
+
+    private static List<Pair<LongWritable, Text>> entries() throws IOException {
+        return new MapDriver<LongWritable, Text, LongWritable, Text>(new Compactor.EntryMapper())
+                .withInput(new LongWritable(0), text(SINGLE_FEED)).run();
+    }
+
+    private static Text text(File file) throws IOException {
+        return new Text(FileUtils.readFileToString(file));
+    }
+
+}
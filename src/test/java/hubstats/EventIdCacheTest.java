@@ -0,0 +1,50 @@
+package hubstats;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EventIdCacheTest {
+
+    @Test
+    public void duplicateNotAdded() {
+        EventIdCache cache = new EventIdCache(16);
+        assertTrue(cache.add(1007541708L));
+        assertTrue(cache.add(1007541709L));
+        assertFalse(cache.add(1007541708L));
+        assertFalse(cache.add(1007541709L));
+    }
+
+    @Test
+    public void sequentialIdsWithinSizeRemembered() {
+        EventIdCache cache = new EventIdCache(1000);
+        for (long id = 1007541000L; id < 1007542024L; id++) {
+            assertTrue(cache.add(id));
+        }
+        for (long id = 1007541000L; id < 1007542024L; id++) {
+            assertFalse(cache.add(id));
+        }
+    }
+
+    @Test
+    public void collidingIdForgotten() {
+        EventIdCache cache = new EventIdCache(16);
+        assertTrue(cache.add(1L));
+        assertTrue(cache.add(17L));
+        assertTrue(cache.add(1L));
+    }
+
+    @Test
+    public void sizeMustBePositive() {
+        try {
+            new EventIdCache(0);
+            fail();
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+package hubstats;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static hubstats.TestResources.HEADER;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventIdPartitionerTest {
+
+    private File dir;
+    private File timeline;
+    private Job job;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = TestResources.tempDir("timeline");
+        timeline = new File(dir, "github-timeline.log");
+        TestResources.log(timeline, 4);
+        job = new Job(new Configuration());
+        FileInputFormat.setInputPaths(job, new Path(dir.getPath()));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void partitionsByRange() {
+        Configuration conf = new Configuration();
+        EventIdPartitioner.setCuts(conf, new long[]{100L, 200L});
+        EventIdPartitioner<LongWritable, Text> partitioner = new EventIdPartitioner<LongWritable, Text>();
+        partitioner.setConf(conf);
+        assertEquals(0, partitioner.getPartition(new LongWritable(1L), null, 3));
+        assertEquals(0, partitioner.getPartition(new LongWritable(99L), null, 3));
+        assertEquals(1, partitioner.getPartition(new LongWritable(100L), null, 3));
+        assertEquals(1, partitioner.getPartition(new LongWritable(199L), null, 3));
+        assertEquals(2, partitioner.getPartition(new LongWritable(200L), null, 3));
+        assertEquals(2, partitioner.getPartition(new LongWritable(Long.MAX_VALUE), null, 3));
+        assertEquals(1, partitioner.getPartition(new LongWritable(Long.MAX_VALUE), null, 2));
+    }
+
+    @Test
+    public void partitionsEventWritables() {
+        Configuration conf = new Configuration();
+        EventIdPartitioner.setCuts(conf, new long[]{1007541708L});
+        EventIdPartitioner<EventWritable, NullWritable> partitioner =
+                new EventIdPartitioner<EventWritable, NullWritable>();
+        partitioner.setConf(conf);
+        Event event = new Event.Builder(1007541708L, EventType.Push, "2010-11-19T03:55:54-08:00", "esil")
+                .repoAccount("esil").repoName("cmake").branch("master").build();
+        assertEquals(1, partitioner.getPartition(new EventWritable(event), NullWritable.get(), 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cutsMustIncrease() {
+        Configuration conf = new Configuration();
+        conf.set(EventIdPartitioner.CUTS_KEY, "200,100");
+        new EventIdPartitioner<LongWritable, Text>().setConf(conf);
+    }
+
+    @Test
+    public void cutsDivideSample() {
+        long[] sample = {1, 2, 3, 4, 5, 6, 7, 8};
+        assertArrayEquals(new long[]{3, 5, 7}, EventIdSampler.cuts(sample, 4));
+        assertArrayEquals(new long[0], EventIdSampler.cuts(sample, 1));
+        assertArrayEquals(new long[]{5}, EventIdSampler.cuts(new long[]{5, 5, 5, 5}, 4));
+    }
+
+    @Test
+    public void sampleSplitHeads() throws IOException {
+        FileInputFormat.setMaxInputSplitSize(job, timeline.length() / 4);
+        List<InputSplit> splits = new FeedInputFormat().getSplits(job);
+        long[] sample = EventIdSampler.sample(job.getConfiguration(), splits);
+        assertTrue(sample.length > 0);
+        for (int i = 1; i < sample.length; i++) {
+            assertTrue(sample[i - 1] <= sample[i]);
+        }
+    }
+
+    @Test
+    public void sampleIndexSameRangeAsFeeds() throws IOException {
+        long[] unindexed = EventIdSampler.sample(job.getConfiguration(),
+                new FeedInputFormat().getSplits(job));
+        Configuration conf = job.getConfiguration();
+        Path log = new Path(timeline.getPath());
+        FeedIndex.build(FileSystem.getLocal(conf), log, conf).write(FileSystem.getLocal(conf), log);
+        long[] indexed = EventIdSampler.sample(conf, new FeedInputFormat().getSplits(job));
+        assertEquals(16, indexed.length);
+        assertEquals(unindexed[0], indexed[0]);
+        assertEquals(unindexed[unindexed.length - 1], indexed[indexed.length - 1]);
+    }
+
+    @Test
+    public void sampleEachIdOnce() throws IOException {
+        FileUtils.writeStringToFile(timeline, HEADER + "<feed xmlns=\"http://www.w3.org/2005/Atom\">"
+                + "<entry><title>no id</title></entry>"
+                + "<entry><id>tag:github.com,2008:PushEvent/1007541708</id></entry></feed>\n");
+        long[] sample = EventIdSampler.sample(job.getConfiguration(), new FeedInputFormat().getSplits(job));
+        assertArrayEquals(new long[]{1007541708L}, sample);
+    }
+
+}
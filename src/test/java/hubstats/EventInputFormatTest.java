@@ -0,0 +1,103 @@
+package hubstats;
+
+import com.google.common.collect.Lists;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventInputFormatTest {
+
+    private File log;
+    private Configuration conf;
+
+    @Before
+    public void setUp() throws IOException {
+        log = File.createTempFile("events", "");
+        conf = new Configuration();
+    }
+
+    @After
+    public void tearDown() {
+        log.delete();
+    }
+
+    @Test
+    public void readsEventsWritten() throws IOException, InterruptedException {
+        List<Event> events = TestResources.parse("event-types.log");
+        write(events, EventOutputFormat.metadata());
+
+        List<String> read = Lists.newArrayList();
+        EventInputFormat.EventRecordReader reader = reader();
+        try {
+            while (reader.nextKeyValue()) {
+                assertEquals(reader.getCurrentKey().get(), reader.getCurrentValue().get().getEventId());
+                read.add(reader.getCurrentValue().get().toString());
+            }
+        } finally {
+            reader.close();
+        }
+
+        assertEquals(events.size(), read.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(events.get(i).toString(), read.get(i));
+        }
+    }
+
+    @Test
+    public void otherVersionRejected() throws IOException, InterruptedException {
+        SequenceFile.Metadata metadata = new SequenceFile.Metadata();
+        metadata.set(EventOutputFormat.VERSION_KEY, new Text(Integer.toString(EventWritable.VERSION + 1)));
+        write(TestResources.parse("single-feed.log"), metadata);
+        try {
+            reader();
+            throw new AssertionError("Expected the log to be rejected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("version"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void unversionedRejected() throws IOException, InterruptedException {
+        write(TestResources.parse("single-feed.log"), new SequenceFile.Metadata());
+        reader();
+    }
+
+    private void write(List<Event> events, SequenceFile.Metadata metadata) throws IOException {
+        SequenceFile.Writer writer = SequenceFile.createWriter(FileSystem.getLocal(conf), conf,
+                new Path(log.getPath()), LongWritable.class, EventWritable.class, SequenceFile.CompressionType.BLOCK,
+                new DefaultCodec(), null, metadata);
+        try {
+            LongWritable id = new LongWritable();
+            EventWritable event = new EventWritable();
+            for (Event e : events) {
+                id.set(e.getEventId());
+                event.set(e);
+                writer.append(id, event);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private EventInputFormat.EventRecordReader reader() throws IOException {
+        EventInputFormat.EventRecordReader reader = new EventInputFormat.EventRecordReader();
+        reader.initialize(new FileSplit(new Path(log.getPath()), 0, log.length(), null), conf);
+        return reader;
+    }
+
+}
@@ -0,0 +1,109 @@
+package hubstats;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EventStatsTest {
+
+    @Test
+    public void statisticsOfEvents() throws IOException, InterruptedException {
+        EventStats stats = new EventStats();
+        for (Event event : TestResources.parse("single-feed.log")) {
+            stats.add(event);
+        }
+        assertEquals(30, stats.getCount());
+        assertEquals(1007541709L, stats.getMaxId());
+        assertTrue(stats.getMinId() < stats.getMaxId());
+        assertEquals(Timestamps.epochSeconds("2010-11-19T03:55:54-08:00", -480), stats.getMaxAt());
+        assertTrue(stats.getMinAt() <= stats.getMaxAt());
+        assertTrue(stats.getCount(EventType.Push) > 0);
+        assertTrue(stats.mayContainRepo("weisserd"));
+        assertTrue(stats.mayContainRepo("weisserd/LDAP-Sync"));
+        assertFalse(stats.mayContainRepo("acrmp/hubstats"));
+    }
+
+    @Test
+    public void linesGiveSameStatistics() throws IOException, InterruptedException {
+        EventStats fromEvents = new EventStats();
+        EventStats fromLines = new EventStats();
+        Text line = new Text();
+        for (Event event : TestResources.parse("event-types.log")) {
+            fromEvents.add(event);
+            event.writeTo(line);
+            fromLines.add(event.getEventId(), line);
+        }
+        assertSame(fromEvents, fromLines);
+        assertTrue(fromLines.mayContainRepo("weisserd/LDAP-Sync") == fromEvents.mayContainRepo("weisserd/LDAP-Sync"));
+    }
+
+    @Test
+    public void epochLinesGiveSameStatistics() throws IOException, InterruptedException {
+        EventStats fromEvents = new EventStats();
+        EventStats fromLines = new EventStats();
+        Text line = new Text();
+        for (Event event : TestResources.parse("event-types.log")) {
+            fromEvents.add(event);
+            event.writeTo(line, Timestamps.Format.EPOCH);
+            fromLines.add(event.getEventId(), line);
+        }
+        assertSame(fromEvents, fromLines);
+    }
+
+    @Test
+    public void noEventTimes() {
+        EventStats stats = new EventStats();
+        stats.add(new Event.Builder(1007541708L, EventType.Push, "2010-11-19T11:55:54Z", "esil")
+                .repoAccount("esil").repoName("cmake").branch("master").build());
+        assertEquals(EventStats.UNKNOWN_TIME, stats.getMinAt());
+        assertEquals(EventStats.UNKNOWN_TIME, stats.getMaxAt());
+    }
+
+    @Test
+    public void writeAndRead() throws IOException, InterruptedException {
+        File dir = File.createTempFile("stats", "");
+        dir.delete();
+        dir.mkdirs();
+        try {
+            FileSystem fs = FileSystem.getLocal(new Configuration());
+            Path file = new Path(new File(dir, "part-r-00000").getPath());
+            assertNull(EventStats.read(fs, file));
+
+            EventStats stats = new EventStats();
+            for (Event event : TestResources.parse("event-types.log")) {
+                stats.add(event);
+            }
+            stats.write(fs, file);
+            assertTrue(new File(dir, ".part-r-00000.stats").exists());
+
+            EventStats read = EventStats.read(fs, file);
+            assertSame(stats, read);
+            assertTrue(read.mayContainRepo("esil/cmake") == stats.mayContainRepo("esil/cmake"));
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    private static void assertSame(EventStats expected, EventStats actual) {
+        assertEquals(expected.getCount(), actual.getCount());
+        assertEquals(expected.getMinId(), actual.getMinId());
+        assertEquals(expected.getMaxId(), actual.getMaxId());
+        assertEquals(expected.getMinAt(), actual.getMinAt());
+        assertEquals(expected.getMaxAt(), actual.getMaxAt());
+        for (EventType type : EventType.values()) {
+            assertEquals(expected.getCount(type), actual.getCount(type));
+        }
+    }
+
+}
@@ -1,9 +1,14 @@
 package hubstats;
 
+import com.google.common.base.Charsets;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Text;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 //TODO: Ensure validation exceptions provide id of problem event in the message
@@ -836,4 +841,127 @@ public class EventTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    public void buildIntoReusedEvent() {
+        Event event = new Event();
+        Event.Builder builder = new Event.Builder(1007541708L, EventType.valueOf("Push"), "2010-11-19T03:55:54-08:00", "esil")
+                .repoAccount("esil").repoName("cmake").branch("master");
+        assertSame(event, builder.buildInto(event));
+        assertEquals("1007541708\tPush\t2010-11-19T03:55:54-08:00\tesil\tesil\tcmake\tmaster\t\t\t", event.toString());
+
+        builder.reset().eventId(1007545371L).type(EventType.valueOf("Follow")).at("2010-11-19T03:58:03-08:00")
+                .actor("vitorpc").repoAccount("tkyk");
+        builder.buildInto(event);
+        assertEquals("1007545371\tFollow\t2010-11-19T03:58:03-08:00\tvitorpc\ttkyk\t\t\t\t\t", event.toString());
+    }
+
+    @Test
+    public void resetBuilderMustBeRepopulated() {
+        Event.Builder builder = new Event.Builder(1007541708L, EventType.valueOf("Push"), "2010-11-19T03:55:54-08:00", "esil")
+                .repoAccount("esil").repoName("cmake").branch("master");
+        builder.buildInto(new Event());
+        try {
+            builder.reset().eventId(1007541708L).type(EventType.valueOf("Push")).actor("esil").buildInto(new Event());
+            fail();
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("Push event must have an associated repository account", e.getMessage());
+        }
+    }
+
+    @Test
+    public void writeToMatchesToString() throws Exception {
+        assertWriteToMatchesToString(new Event.Builder(1007541708L, EventType.valueOf("Push"), "2010-11-19T03:55:54-08:00", "esil")
+                .repoAccount("esil").repoName("cmake").branch("master").build());
+        assertWriteToMatchesToString(new Event.Builder(1007541624L, EventType.valueOf("Gist"), "2010-11-19T03:55:48-08:00", "mrtazz")
+                .alternateId(702129L).subType("create").build());
+    }
+
+    @Test
+    public void writeToEncodesUtf8() throws Exception {
+        assertWriteToMatchesToString(new Event.Builder(1007541708L, EventType.valueOf("Push"), "2010-11-19T03:55:54-08:00", "esil")
+                .repoAccount("j\u00f6rg").repoName("\u65e5\u672c").branch("\ud83d\ude00").build());
+    }
+
+    @Test
+    public void writeToReplacesUnpairedSurrogates() throws Exception {
+        assertWriteToMatchesToString(new Event.Builder(1007541708L, EventType.valueOf("Push"), "2010-11-19T03:55:54-08:00", "esil")
+                .repoAccount("a\ud83d").repoName("\ude00b").branch("master").build());
+    }
+
+    @Test
+    public void writeToReusedText() {
+        Text text = new Text();
+        new Event.Builder(1007541708L, EventType.valueOf("Push"), "2010-11-19T03:55:54-08:00", "esil")
+                .repoAccount("esil").repoName("cmake").branch("a-much-longer-branch-name").build().writeTo(text);
+        Event event = new Event.Builder(1007541624L, EventType.valueOf("Gist"), "2010-11-19T03:55:48-08:00", "mrtazz")
+                .alternateId(702129L).subType("create").build();
+        event.writeTo(text);
+        assertEquals(event.toString(), text.toString());
+    }
+
+    @Test
+    public void parsesTime() {
+        Event event = new Event.Builder(1007541708L, EventType.valueOf("Push"), "2010-11-19T03:55:54-08:00", "esil")
+                .repoAccount("esil").repoName("cmake").branch("master").build();
+        assertEquals(1290167754L, event.getAtSeconds());
+        assertEquals(-480, event.getAtOffset());
+        assertEquals("2010-11-19T03:55:54-08:00", event.getAt());
+    }
+
+    @Test
+    public void keepsUnparseableTime() throws Exception {
+        Event event = new Event.Builder(1007541708L, EventType.valueOf("Push"), "2010-11-19T11:55:54Z", "esil")
+                .repoAccount("esil").repoName("cmake").branch("master").build();
+        assertEquals(Timestamps.UNPARSEABLE, event.getAtOffset());
+        assertEquals("2010-11-19T11:55:54Z", event.getAt());
+        assertWriteToMatchesToString(event);
+    }
+
+    @Test
+    public void writeToEpochSeconds() {
+        Text text = new Text();
+        new Event.Builder(1007541708L, EventType.valueOf("Push"), "2010-11-19T03:55:54-08:00", "esil")
+                .repoAccount("esil").repoName("cmake").branch("master").build()
+                .writeTo(text, Timestamps.Format.EPOCH);
+        assertEquals("1007541708\tPush\t1290167754\tesil\tesil\tcmake\tmaster\t\t\t", text.toString());
+        new Event.Builder(1007541708L, EventType.valueOf("Push"), "yesterday", "esil")
+                .repoAccount("esil").repoName("cmake").branch("master").build()
+                .writeTo(text, Timestamps.Format.EPOCH);
+        assertEquals("1007541708\tPush\tyesterday\tesil\tesil\tcmake\tmaster\t\t\t", text.toString());
+    }
+
+    @Test
+    public void noPublishedTime() throws Exception {
+        Event event = new Event.Builder().reset().eventId(1007541708L).type(EventType.valueOf("Push")).actor("esil")
+                .repoAccount("esil").repoName("cmake").branch("master").build();
+        assertEquals(null, event.getAt());
+        assertEquals("1007541708\tPush\tnull\tesil\tesil\tcmake\tmaster\t\t\t", event.toString());
+        assertWriteToMatchesToString(event);
+        Text text = new Text();
+        event.writeTo(text, Timestamps.Format.EPOCH);
+        assertEquals(event.toString(), text.toString());
+    }
+
+    private void assertWriteToMatchesToString(Event event) throws Exception {
+        byte[] expected = event.toString().getBytes(Charsets.UTF_8);
+        DataOutputBuffer out = new DataOutputBuffer();
+        event.writeTo(out);
+        byte[] written = new byte[out.getLength()];
+        System.arraycopy(out.getData(), 0, written, 0, written.length);
+        assertArrayEquals(expected, written);
+        Text text = new Text();
+        event.writeTo(text);
+        assertEquals(new Text(event.toString()), text);
+    }
+
+    @Test
+    public void formatLong() {
+        byte[] bytes = new byte[Event.LONG_LENGTH + 1];
+        for (long value : new long[]{0L, 7L, -7L, 10L, 1007541708L, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            int end = Event.formatLong(value, bytes, 1);
+            assertEquals(Long.toString(value), new String(bytes, 1, end - 1, Charsets.US_ASCII));
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+package hubstats;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class EventTypeTest {
+
+    @Test
+    public void forNameBytes() {
+        for (EventType type : EventType.values()) {
+            byte[] id = ("tag:github.com,2008:" + type.name() + "Event/1").getBytes();
+            int from = "tag:github.com,2008:".length();
+            assertEquals(type, EventType.forName(id, from, from + type.name().length()));
+        }
+    }
+
+    @Test
+    public void forNameChars() {
+        for (EventType type : EventType.values()) {
+            assertEquals(type, EventType.forName("x" + type.name() + "y", 1, type.name().length() + 1));
+        }
+    }
+
+    @Test
+    public void unknownName() {
+        assertNull(EventType.forName("MonkeyPatch", 0, 11));
+        assertNull(EventType.forName("Pash", 0, 4));
+        assertNull(EventType.forName("push", 0, 4));
+        assertNull(EventType.forName("", 0, 0));
+        assertNull(EventType.forName("Pushh".getBytes(), 0, 5));
+    }
+
+}
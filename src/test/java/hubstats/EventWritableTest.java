@@ -0,0 +1,110 @@
+package hubstats;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparator;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventWritableTest {
+
+    @Test
+    public void roundTripFeeds() throws Exception {
+        for (String resource : new String[]{"single-feed.log", "event-types.log"}) {
+            for (Event event : TestResources.parse(resource)) {
+                assertEquals(event.toString(), roundTrip(event).toString());
+            }
+        }
+    }
+
+    @Test
+    public void roundTripUnparseableTimestamp() throws Exception {
+        Event event = new Event.Builder(1007541708L, EventType.Push, "2010-11-19T11:55:54Z", "esil")
+                .repoAccount("esil").repoName("cmake").branch("master").build();
+        assertEquals(event.toString(), roundTrip(event).toString());
+    }
+
+    @Test
+    public void roundTripNonAscii() throws Exception {
+        Event event = new Event.Builder(1007541708L, EventType.Push, "2010-11-19T03:55:54-08:00", "esil")
+                .repoAccount("j\u00f6rg").repoName("\u65e5\u672c").branch("\ud83d\ude00").build();
+        assertEquals(event.toString(), roundTrip(event).toString());
+    }
+
+    @Test
+    public void readFieldsDoesNotOverwriteSetEvent() throws Exception {
+        Event event = new Event.Builder(1007541708L, EventType.Push, "2010-11-19T03:55:54-08:00", "esil")
+                .repoAccount("esil").repoName("cmake").branch("master").build();
+        String expected = event.toString();
+        EventWritable writable = new EventWritable(event);
+        DataInputBuffer in = serialize(new Event.Builder(1007541624L, EventType.Gist, "2010-11-19T03:55:48-08:00",
+                "mrtazz").alternateId(702129L).subType("create").build());
+        writable.readFields(in);
+        assertEquals(expected, event.toString());
+        assertEquals(1007541624L, writable.get().getEventId());
+    }
+
+    @Test
+    public void rawComparatorAgreesWithCompareTo() throws Exception {
+        long[] ids = {1L, 127L, 128L, 255L, 256L, 65536L, 1007541708L, 1007541709L, 1L << 32, Long.MAX_VALUE};
+        WritableComparator comparator = WritableComparator.get(EventWritable.class);
+        for (long a : ids) {
+            for (long b : ids) {
+                EventWritable left = new EventWritable(push(a));
+                EventWritable right = new EventWritable(push(b));
+                DataOutputBuffer leftBytes = new DataOutputBuffer();
+                left.write(leftBytes);
+                DataOutputBuffer rightBytes = new DataOutputBuffer();
+                right.write(rightBytes);
+                int raw = comparator.compare(leftBytes.getData(), 0, leftBytes.getLength(),
+                        rightBytes.getData(), 0, rightBytes.getLength());
+                assertEquals(Long.signum(Long.valueOf(a).compareTo(b)), Integer.signum(raw));
+                assertEquals(Integer.signum(left.compareTo(right)), Integer.signum(raw));
+            }
+        }
+    }
+
+    @Test
+    public void hashLikeLongWritable() {
+        for (long id : new long[]{1L, 1007541708L, 1L << 40}) {
+            assertEquals(new LongWritable(id).hashCode(), new EventWritable(push(id)).hashCode());
+        }
+    }
+
+    @Test
+    public void smallerThanText() throws Exception {
+        Event event = push(1007541708L);
+        DataOutputBuffer binary = new DataOutputBuffer();
+        new EventWritable(event).write(binary);
+        DataOutputBuffer text = new DataOutputBuffer();
+        new LongWritable(event.getEventId()).write(text);
+        new Text(event.toString()).write(text);
+        assertTrue(binary.getLength() < text.getLength());
+    }
+
+    private static Event push(long id) {
+        return new Event.Builder(id, EventType.Push, "2010-11-19T03:55:54-08:00", "esil")
+                .repoAccount("esil").repoName("cmake").branch("master").build();
+    }
+
+    private static EventWritable roundTrip(Event event) throws IOException {
+        EventWritable copy = new EventWritable();
+        copy.readFields(serialize(event));
+        return copy;
+    }
+
+    private static DataInputBuffer serialize(Event event) throws IOException {
+        DataOutputBuffer out = new DataOutputBuffer();
+        new EventWritable(event).write(out);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+        return in;
+    }
+
+}
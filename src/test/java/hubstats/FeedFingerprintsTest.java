@@ -0,0 +1,72 @@
+package hubstats;
+
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FeedFingerprintsTest {
+
+    @Test
+    public void identicalFeedRepeats() throws IOException {
+        for (FeedFingerprints.Mode mode : new FeedFingerprints.Mode[]{FeedFingerprints.Mode.HEADER,
+                FeedFingerprints.Mode.FULL}) {
+            FeedFingerprints fingerprints = new FeedFingerprints(mode);
+            assertFalse(fingerprints.isRepeat(feed("single-feed.log")));
+            assertFalse(fingerprints.isRepeat(feed("event-types.log")));
+            assertTrue(fingerprints.isRepeat(feed("single-feed.log")));
+            assertTrue(fingerprints.isRepeat(feed("event-types.log")));
+        }
+    }
+
+    @Test
+    public void headerIgnoresContent() {
+        FeedFingerprints header = new FeedFingerprints(FeedFingerprints.Mode.HEADER);
+        FeedFingerprints full = new FeedFingerprints(FeedFingerprints.Mode.FULL);
+        Text feed = entryFeed("2010-11-19T03:55:54-08:00", "1007541709", "closed");
+        Text changed = entryFeed("2010-11-19T03:55:54-08:00", "1007541709", "reopened");
+        assertFalse(header.isRepeat(feed));
+        assertTrue(header.isRepeat(changed));
+        assertFalse(full.isRepeat(feed));
+        assertFalse(full.isRepeat(changed));
+    }
+
+    @Test
+    public void newEntryOrUpdateIsNotRepeat() {
+        FeedFingerprints fingerprints = new FeedFingerprints(FeedFingerprints.Mode.HEADER);
+        assertFalse(fingerprints.isRepeat(entryFeed("2010-11-19T03:55:54-08:00", "1007541709", "closed")));
+        assertFalse(fingerprints.isRepeat(entryFeed("2010-11-19T03:55:54-08:00", "1007541710", "closed")));
+        assertFalse(fingerprints.isRepeat(entryFeed("2010-11-19T03:55:55-08:00", "1007541709", "closed")));
+    }
+
+    @Test
+    public void oldestForgotten() {
+        FeedFingerprints fingerprints = new FeedFingerprints(FeedFingerprints.Mode.HEADER);
+        for (int i = 0; i <= FeedFingerprints.SIZE; i++) {
+            assertFalse(fingerprints.isRepeat(entryFeed("2010-11-19T03:55:54-08:00", String.valueOf(i), "")));
+        }
+        assertFalse(fingerprints.isRepeat(entryFeed("2010-11-19T03:55:54-08:00", "0", "")));
+        assertTrue(fingerprints.isRepeat(entryFeed("2010-11-19T03:55:54-08:00", "2", "")));
+    }
+
+    @Test
+    public void withoutEntriesUsesWholeRecord() {
+        FeedFingerprints fingerprints = new FeedFingerprints(FeedFingerprints.Mode.HEADER);
+        assertFalse(fingerprints.isRepeat(new Text("<feed><updated>2010-11-19T03:55:54-08:00</updated></feed>")));
+        assertFalse(fingerprints.isRepeat(new Text("<feed><updated>2010-11-19T03:55:54-08:00</updated> </feed>")));
+        assertTrue(fingerprints.isRepeat(new Text("<feed><updated>2010-11-19T03:55:54-08:00</updated></feed>")));
+    }
+
+    private static Text entryFeed(String updated, String id, String content) {
+        return new Text("<feed><updated>" + updated + "</updated><entry><id>tag:github.com,2008:IssuesEvent/" + id
+                + "</id><content>" + content + "</content></entry></feed>");
+    }
+
+    private static Text feed(String resource) throws IOException {
+        return new Text(TestResources.read(resource));
+    }
+
+}
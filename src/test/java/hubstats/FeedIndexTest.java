@@ -0,0 +1,96 @@
+package hubstats;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static hubstats.TestResources.HEADER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FeedIndexTest {
+
+    private File timeline;
+    private Configuration conf;
+    private FileSystem fs;
+
+    @Before
+    public void setUp() throws IOException {
+        timeline = File.createTempFile("timeline", ".log");
+        FileUtils.writeStringToFile(timeline, TestResources.log(1)
+                + HEADER + "<feed><updated>2010-11-19T03:55:54Z</updated></feed>\n");
+        conf = new Configuration();
+        fs = FileSystem.getLocal(conf);
+    }
+
+    @After
+    public void tearDown() {
+        new File(timeline.getPath() + FeedIndex.SUFFIX).delete();
+        timeline.delete();
+    }
+
+    @Test
+    public void indexFeeds() throws IOException {
+        FeedIndex index = FeedIndex.build(fs, new Path(timeline.getPath()), conf);
+        assertEquals(timeline.length(), index.getLogLength());
+        List<FeedIndex.Feed> feeds = index.getFeeds();
+        assertEquals(3, feeds.size());
+
+        byte[] log = FileUtils.readFileToByteArray(timeline);
+        for (FeedIndex.Feed feed : feeds) {
+            String text = new String(log, (int) feed.start, (int) feed.length, "UTF-8");
+            assertTrue(text.startsWith("<feed"));
+            assertTrue(text.endsWith("</feed>"));
+        }
+
+        assertFeed(feeds.get(0), 1290167754L, 1007541425L, 1007541709L);
+        assertFeed(feeds.get(1), 1290167754L, 1007541464L, 1007577244L);
+        assertFeed(feeds.get(2), FeedIndex.UNKNOWN_TIME, 0L, 0L);
+        assertEquals(feeds.get(2).end(), index.getIndexedEnd());
+    }
+
+    @Test
+    public void firstFeedFrom() throws IOException {
+        FeedIndex index = FeedIndex.build(fs, new Path(timeline.getPath()), conf);
+        List<FeedIndex.Feed> feeds = index.getFeeds();
+        assertEquals(0, index.firstFeedFrom(0L));
+        assertEquals(1, index.firstFeedFrom(feeds.get(0).start + 1));
+        assertEquals(1, index.firstFeedFrom(feeds.get(1).start));
+        assertEquals(2, index.firstFeedFrom(feeds.get(1).end()));
+        assertEquals(3, index.firstFeedFrom(feeds.get(2).end()));
+    }
+
+    @Test
+    public void writeAndRead() throws IOException {
+        Path log = new Path(timeline.getPath());
+        assertNull(FeedIndex.read(fs, log));
+
+        FeedIndex index = FeedIndex.build(fs, log, conf);
+        index.write(fs, log);
+        FeedIndex read = FeedIndex.read(fs, log);
+        assertEquals(index.getLogLength(), read.getLogLength());
+        assertEquals(index.getFeeds().size(), read.getFeeds().size());
+        for (int i = 0; i < index.getFeeds().size(); i++) {
+            FeedIndex.Feed expected = index.getFeeds().get(i);
+            assertEquals(expected.start, read.getFeeds().get(i).start);
+            assertEquals(expected.length, read.getFeeds().get(i).length);
+            assertFeed(read.getFeeds().get(i), expected.updated, expected.minId, expected.maxId);
+        }
+    }
+
+    private static void assertFeed(FeedIndex.Feed feed, long updated, long minId, long maxId) {
+        assertEquals(updated, feed.updated);
+        assertEquals(minId, feed.minId);
+        assertEquals(maxId, feed.maxId);
+    }
+
+}
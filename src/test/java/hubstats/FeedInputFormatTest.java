@@ -0,0 +1,217 @@
+package hubstats;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.mahout.classifier.bayes.XmlInputFormat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import static hubstats.TestResources.HEADER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FeedInputFormatTest {
+
+    private File dir;
+    private File timeline;
+    private Job job;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = TestResources.tempDir("timeline");
+        timeline = new File(dir, "github-timeline.log");
+        TestResources.log(timeline, 4);
+
+        job = new Job(new Configuration());
+        FileInputFormat.setInputPaths(job, new Path(dir.getPath()));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void unindexedSplitAsXmlInputFormat() throws IOException, InterruptedException {
+        FileInputFormat.setMaxInputSplitSize(job, 10000);
+        List<InputSplit> splits = new FeedInputFormat().getSplits(job);
+        assertTrue(splits.size() > 8);
+        assertEquals(8, read(splits).size());
+    }
+
+    @Test
+    public void indexedSplitsAlignWithFeeds() throws IOException, InterruptedException {
+        FeedIndex index = index();
+        // each pair of feeds is a little under a quarter of the log
+        FileInputFormat.setMaxInputSplitSize(job, timeline.length() / 4);
+        List<InputSplit> splits = new FeedInputFormat().getSplits(job);
+        assertEquals(4, splits.size());
+        for (InputSplit split : splits) {
+            assertTrue(isFeedStart(index, ((FileSplit) split).getStart()));
+            assertTrue(isFeedEnd(index, ((FileSplit) split).getStart() + split.getLength()));
+        }
+
+        List<String> expected = read(Lists.<InputSplit>newArrayList(
+                new FileSplit(new Path(timeline.getPath()), 0, timeline.length(), null)));
+        assertEquals(expected, read(splits));
+    }
+
+    @Test
+    public void feedLargerThanSplitSize() throws IOException, InterruptedException {
+        index();
+        FileInputFormat.setMaxInputSplitSize(job, 1000);
+        List<InputSplit> splits = new FeedInputFormat().getSplits(job);
+        assertEquals(8, splits.size());
+        assertEquals(8, read(splits).size());
+    }
+
+    @Test
+    public void restrictToIdRange() throws IOException, InterruptedException {
+        index();
+        // only event-types.log has ids above those of single-feed.log
+        job.getConfiguration().setLong(FeedInputFormat.MIN_ID_KEY, 1007541710L);
+        List<String> feeds = read(new FeedInputFormat().getSplits(job));
+        assertEquals(4, feeds.size());
+        for (String feed : feeds) {
+            assertTrue(feed.contains("1007577244"));
+        }
+
+        job.getConfiguration().setLong(FeedInputFormat.MIN_ID_KEY, 1007541000L);
+        job.getConfiguration().setLong(FeedInputFormat.MAX_ID_KEY, 1007541430L);
+        assertEquals(4, read(new FeedInputFormat().getSplits(job)).size());
+    }
+
+    @Test
+    public void restrictToTimeRange() throws IOException, InterruptedException {
+        index();
+        job.getConfiguration().set(FeedInputFormat.FROM_KEY, "2010-11-19T03:55:54-08:00");
+        assertEquals(8, read(new FeedInputFormat().getSplits(job)).size());
+        job.getConfiguration().set(FeedInputFormat.FROM_KEY, "2010-11-19T12:55:55+00:00");
+        assertEquals(0, read(new FeedInputFormat().getSplits(job)).size());
+        job.getConfiguration().set(FeedInputFormat.FROM_KEY, "2010-11-19T11:00:00+00:00");
+        job.getConfiguration().set(FeedInputFormat.TO_KEY, "2010-11-19T11:55:54+00:00");
+        assertEquals(8, read(new FeedInputFormat().getSplits(job)).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void timeMustBeInTimelineForm() throws IOException {
+        index();
+        job.getConfiguration().set(FeedInputFormat.FROM_KEY, "yesterday");
+        new FeedInputFormat().getSplits(job);
+    }
+
+    @Test
+    public void appendedFeedsReadAfterIndex() throws IOException, InterruptedException {
+        index();
+        OutputStream out = new FileOutputStream(timeline, true);
+        try {
+            out.write((HEADER + TestResources.read("single-feed.log")).getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        assertEquals(9, read(new FeedInputFormat().getSplits(job)).size());
+    }
+
+    @Test
+    public void checkpointsRestrictToAppendedFeeds() throws IOException, InterruptedException {
+        FileSystem fs = FileSystem.getLocal(job.getConfiguration());
+        Path start = new Path(dir.getPath(), Checkpoint.NAME);
+        Path end = new Path(dir.getPath(), Checkpoint.PENDING_NAME);
+        Checkpoint.read(fs, start).advance(fs, new FeedInputFormat().listStatus(job)).write(fs, start);
+        OutputStream out = new FileOutputStream(timeline, true);
+        try {
+            out.write((HEADER + TestResources.read("single-feed.log") + HEADER + "<feed>").getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        Checkpoint.read(fs, start).advance(fs, new FeedInputFormat().listStatus(job)).write(fs, end);
+        FileInputFormat.setMaxInputSplitSize(job, 1000);
+        job.getConfiguration().set(FeedInputFormat.START_CHECKPOINT_KEY, start.toString());
+        job.getConfiguration().set(FeedInputFormat.END_CHECKPOINT_KEY, end.toString());
+        List<String> feeds = read(new FeedInputFormat().getSplits(job));
+        assertEquals(1, feeds.size());
+        assertEquals(TestResources.read("single-feed.log").trim(), feeds.get(0).trim());
+    }
+
+    @Test
+    public void replacedLogReadFromStart() throws IOException, InterruptedException {
+        FileSystem fs = FileSystem.getLocal(job.getConfiguration());
+        Path start = new Path(dir.getPath(), Checkpoint.NAME);
+        Path end = new Path(dir.getPath(), Checkpoint.PENDING_NAME);
+        Checkpoint.read(fs, start).advance(fs, new FeedInputFormat().listStatus(job)).write(fs, start);
+        FileUtils.writeStringToFile(timeline, HEADER + TestResources.read("single-feed.log"));
+        Checkpoint.read(fs, start).advance(fs, new FeedInputFormat().listStatus(job)).write(fs, end);
+        job.getConfiguration().set(FeedInputFormat.START_CHECKPOINT_KEY, start.toString());
+        job.getConfiguration().set(FeedInputFormat.END_CHECKPOINT_KEY, end.toString());
+        List<InputSplit> splits = new FeedInputFormat().getSplits(job);
+        List<String> feeds = read(splits);
+        assertEquals(1, feeds.size());
+        assertEquals(TestResources.read("single-feed.log").trim(), feeds.get(0).trim());
+        assertEquals(0L, HubStats.FeedMapper.highWaterSeed(job.getConfiguration(), splits.get(0)));
+    }
+
+    @Test
+    public void sidecarNotInput() throws IOException {
+        index();
+        for (InputSplit split : new FeedInputFormat().getSplits(job)) {
+            assertEquals(timeline.getName(), ((FileSplit) split).getPath().getName());
+        }
+    }
+
+    private FeedIndex index() throws IOException {
+        Configuration conf = job.getConfiguration();
+        Path log = new Path(timeline.getPath());
+        FeedIndex index = FeedIndex.build(FileSystem.getLocal(conf), log, conf);
+        index.write(FileSystem.getLocal(conf), log);
+        return index;
+    }
+
+    private static boolean isFeedStart(FeedIndex index, long offset) {
+        for (FeedIndex.Feed feed : index.getFeeds()) {
+            if (feed.start == offset) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isFeedEnd(FeedIndex index, long offset) {
+        for (FeedIndex.Feed feed : index.getFeeds()) {
+            if (feed.end() == offset) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<String> read(List<InputSplit> splits) throws IOException, InterruptedException {
+        List<String> records = Lists.newArrayList();
+        for (InputSplit split : splits) {
+            XmlInputFormat.XmlRecordReader reader = new XmlInputFormat.XmlRecordReader((FileSplit) split,
+                    FeedInputFormat.feedConfiguration(job.getConfiguration()));
+            try {
+                while (reader.nextKeyValue()) {
+                    records.add(reader.getCurrentValue().toString());
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        return records;
+    }
+
+}
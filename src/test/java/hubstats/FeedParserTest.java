@@ -0,0 +1,156 @@
+package hubstats;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class FeedParserTest {
+
+    @Test
+    public void singleFeed() throws IOException, InterruptedException {
+        assertParsersAgree("single-feed.log", 30);
+    }
+
+    @Test
+    public void eventTypes() throws IOException, InterruptedException {
+        assertParsersAgree("event-types.log", 27);
+    }
+
+    @Test
+    public void decodeReferences() {
+        byte[] text = "a &amp; b &lt;c&gt; &quot;d&quot; &apos;e&apos; &#233;&#xe9; &unknown;".getBytes();
+        assertEquals("a & b <c> \"d\" 'e' éé &unknown;", ByteFeedParser.decode(text, 0, text.length));
+    }
+
+    @Test
+    public void malformedReferencesLeftAsTheyAre() {
+        byte[] text = "&#xZZ; &#; &#x; &#12a; &#x110000; &#99999999; &#x0041;".getBytes();
+        assertEquals("&#xZZ; &#; &#x; &#12a; &#x110000; &#99999999; A", ByteFeedParser.decode(text, 0, text.length));
+    }
+
+    @Test
+    public void eventIdFromEntryId() {
+        assertEquals(1007541708L, entryId("<entry><id>tag:github.com,2008:PushEvent/1007541708</id></entry>"));
+        assertEquals(0L, entryId("<entry><id>tag:github.com,2008:Push/1007541708</id></entry>"));
+        assertEquals(0L, entryId("<entry><id>tag:github.com,2008:PushEvent/</id></entry>"));
+        assertEquals(0L, entryId("<entry><id>tag:github.com,2008:PushEvent/1234567890123456789</id></entry>"));
+        assertEquals(0L, entryId("<entry><title>no id</title></entry>"));
+    }
+
+    @Test
+    public void nineteenDigitIdParsed() throws IOException, InterruptedException {
+        byte[] id = "tag:github.com,2008:PushEvent/1234567890123456789".getBytes(Charsets.UTF_8);
+        assertEquals(1234567890123456789L, FeedParser.parseId(id, 0, id.length));
+        Text feed = new Text("<feed><entry><id>tag:github.com,2008:PushEvent/1234567890123456789</id>"
+                + "<published>2010-11-19T03:55:54-08:00</published>"
+                + "<title>esil pushed to master at esil/cmake</title></entry></feed>");
+        List<String> stax = parse(FeedParser.Mode.STAX, feed);
+        assertEquals(1, stax.size());
+        assertEquals(stax, parse(FeedParser.Mode.BYTES, feed));
+    }
+
+    @Test
+    public void entityInTitle() throws IOException, InterruptedException {
+        Text feed = new Text("<feed xmlns=\"http://www.w3.org/2005/Atom\"><entry>"
+                + "<id>tag:github.com,2008:WatchEvent/1007541678</id>"
+                + "<published>2010-11-19T03:55:45-08:00</published>"
+                + "<title>marco-arnold started watching icefox/arora&amp;co</title>"
+                + "</entry></feed>");
+        List<String> expected = Lists.newArrayList("1007541678\tWatch\t2010-11-19T03:55:45-08:00\tmarco-arnold\t"
+                + "icefox\tarora&co\t\t\t\t");
+        assertEquals(expected, parse(FeedParser.Mode.STAX, feed));
+        assertEquals(expected, parse(FeedParser.Mode.BYTES, feed));
+    }
+
+    @Test
+    public void stopAtHighWaterMark() throws IOException, InterruptedException {
+        Text feed = new Text(TestResources.read("single-feed.log"));
+        List<String> all = parse(FeedParser.Mode.BYTES, feed);
+        long mark = Long.parseLong(all.get(9).substring(0, all.get(9).indexOf('\t')));
+
+        int tenthEntry = -1;
+        for (int i = 0; i < 10; i++) {
+            tenthEntry = FeedParser.ENTRY_START.indexIn(feed.getBytes(), tenthEntry + 1, feed.getLength());
+        }
+        for (FeedParser.Mode mode : FeedParser.Mode.values()) {
+            FeedParser parser = mode.newParser(new TitleExtractor(TitleExtractor.Mode.TOKENS));
+            parser.setHighWaterMark(mark);
+            assertEquals(all.subList(0, 9), parse(parser, feed));
+            assertEquals(21, parser.getSkippedEntries());
+            assertEquals(feed.getLength() - tenthEntry, parser.getSkippedBytes());
+
+            assertEquals(all.subList(0, 9), parse(parser, buffer(feed)));
+            assertEquals(21, parser.getSkippedEntries());
+            assertEquals(feed.getLength() - tenthEntry, parser.getSkippedBytes());
+
+            parser.setHighWaterMark(0L);
+            assertEquals(all, parse(parser, feed));
+            assertEquals(0, parser.getSkippedEntries());
+            assertEquals(0, parser.getSkippedBytes());
+        }
+    }
+
+    private static void assertParsersAgree(String resource, int events) throws IOException, InterruptedException {
+        Text feed = new Text(TestResources.read(resource));
+        List<String> stax = parse(FeedParser.Mode.STAX, feed);
+        assertEquals(events, stax.size());
+        assertEquals(stax, parse(FeedParser.Mode.BYTES, feed));
+        for (FeedParser.Mode mode : FeedParser.Mode.values()) {
+            assertEquals(stax, parse(mode.newParser(new TitleExtractor(TitleExtractor.Mode.PARITY)), buffer(feed)));
+        }
+    }
+
+    /**
+     * @return The feed in a direct buffer, between other bytes that are not part of it
+     */
+    private static ByteBuffer buffer(Text feed) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(feed.getLength() + 21);
+        buffer.put("<entry></entry>".getBytes());
+        buffer.put(feed.getBytes(), 0, feed.getLength());
+        buffer.put("<entry".getBytes());
+        buffer.position(15);
+        buffer.limit(15 + feed.getLength());
+        return buffer;
+    }
+
+    private static long entryId(String entry) {
+        byte[] bytes = entry.getBytes(Charsets.UTF_8);
+        return FeedParser.entryId(bytes, 0, bytes.length);
+    }
+
+    private static List<String> parse(FeedParser.Mode mode, Text feed) throws IOException, InterruptedException {
+        return parse(mode.newParser(new TitleExtractor(TitleExtractor.Mode.PARITY)), feed);
+    }
+
+    private static List<String> parse(FeedParser parser, Text feed) throws IOException, InterruptedException {
+        final List<String> events = Lists.newArrayList();
+        parser.parse(feed, new FeedParser.Handler() {
+            public void event(Event.Builder builder) {
+                events.add(builder.build().toString());
+            }
+        });
+        return events;
+    }
+
+    private static List<String> parse(FeedParser parser, ByteBuffer feed) throws IOException, InterruptedException {
+        final List<String> events = Lists.newArrayList();
+        int position = feed.position();
+        int limit = feed.limit();
+        parser.parse(feed, new FeedParser.Handler() {
+            public void event(Event.Builder builder) {
+                events.add(builder.build().toString());
+            }
+        });
+        assertEquals(position, feed.position());
+        assertEquals(limit, feed.limit());
+        return events;
+    }
+
+}
@@ -3,9 +3,11 @@ package hubstats;
 import com.google.common.collect.Lists;
 import org.apache.commons.io.FileUtils;
 import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mrunit.mapreduce.MapDriver;
+import org.apache.hadoop.mrunit.mapreduce.ReduceDriver;
 import org.apache.hadoop.mrunit.types.Pair;
 import org.junit.Before;
 import org.junit.Test;
@@ -17,6 +19,7 @@ import java.util.Collections;
 import java.util.List;
 
 import static org.apache.hadoop.mrunit.testutil.ExtendedAssert.assertListEquals;
+import static org.junit.Assert.assertEquals;
 
 public class HubStatsTest {
 
@@ -291,5 +294,64 @@ public class HubStatsTest {
         assertListEquals(expected, out);
     }
 
-}
+    @Test
+    public void binaryMapperWritesSameEvents() throws IOException {
+        File eventTypes = TestResources.file("event-types.log");
+        Text feed = new Text(FileUtils.readFileToString(eventTypes));
+        List<Pair<LongWritable, Text>> text = driver.withInput(L_ZERO, feed).run();
+        List<Pair<EventWritable, NullWritable>> binary =
+                new MapDriver<LongWritable, Text, EventWritable, NullWritable>(new HubStats.BinaryEventMapper())
+                        .withInput(L_ZERO, feed).run();
+
+        assertEquals(text.size(), binary.size());
+        for (int i = 0; i < text.size(); i++) {
+            assertEquals(text.get(i).getSecond().toString(), binary.get(i).getFirst().toString());
+        }
+    }
+
+    @Test
+    public void overlappingFeedsWrittenOnce() throws IOException {
+        File singleFeed = TestResources.file("single-feed.log");
+        String feed = FileUtils.readFileToString(singleFeed);
+        List<Pair<LongWritable, Text>> once = driver.withInput(L_ZERO, new Text(feed)).run();
+        List<Pair<LongWritable, Text>> twice = new MapDriver<LongWritable, Text, LongWritable, Text>(
+                new HubStats.EventMapper()).withInput(L_ZERO, new Text(feed + feed)).run();
+        assertListEquals(once, twice);
+    }
+
+    @Test
+    public void combinerWritesFirst() throws IOException {
+        Text first = new Text("first");
+        List<Pair<LongWritable, Text>> out =
+                new ReduceDriver<LongWritable, Text, LongWritable, Text>(new HubStats.EventCombiner())
+                        .withInput(new LongWritable(1007541708L), Lists.newArrayList(first, new Text("second")))
+                        .run();
+        assertListEquals(Lists.newArrayList(new Pair<LongWritable, Text>(new LongWritable(1007541708L), first)), out);
+    }
+
+    @Test
+    public void binaryCombinerWritesOnce() throws IOException {
+        EventWritable key = new EventWritable(new Event.Builder(1007541708L, EventType.Push,
+                "2010-11-19T03:55:54-08:00", "esil").repoAccount("esil").repoName("cmake").branch("master").build());
+        List<Pair<EventWritable, NullWritable>> out =
+                new ReduceDriver<EventWritable, NullWritable, EventWritable, NullWritable>(
+                        new HubStats.BinaryEventCombiner())
+                        .withInput(key, Lists.newArrayList(NullWritable.get(), NullWritable.get())).run();
+        assertEquals(1, out.size());
+        assertEquals(key.toString(), out.get(0).getFirst().toString());
+    }
 
+    @Test
+    public void eventLogReducerWritesOnce() throws IOException {
+        Event event = new Event.Builder(1007541708L, EventType.Push, "2010-11-19T03:55:54-08:00", "esil")
+                .repoAccount("esil").repoName("cmake").branch("master").build();
+        List<Pair<LongWritable, EventWritable>> out =
+                new ReduceDriver<EventWritable, NullWritable, LongWritable, EventWritable>(
+                        new HubStats.EventLogReducer()).withInput(new EventWritable(event),
+                        Lists.newArrayList(NullWritable.get(), NullWritable.get())).run();
+        assertEquals(1, out.size());
+        assertEquals(1007541708L, out.get(0).getFirst().get());
+        assertEquals(event.toString(), out.get(0).getSecond().get().toString());
+    }
+
+}
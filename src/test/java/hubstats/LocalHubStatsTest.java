@@ -0,0 +1,168 @@
+package hubstats;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mrunit.mapreduce.MapDriver;
+import org.apache.hadoop.mrunit.types.Pair;
+import org.apache.mahout.classifier.bayes.XmlInputFormat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class LocalHubStatsTest {
+
+    private File dir;
+    private File input;
+    private File log;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = TestResources.tempDir("local");
+        input = new File(dir, "input");
+        input.mkdirs();
+        log = new File(input, "github-timeline.log");
+        TestResources.log(log, 3);
+        FileUtils.writeStringToFile(new File(input, "_checkpoint"), "not a log");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void chunksReadEachFeedOnce() throws IOException, InterruptedException {
+        List<String> expected = Lists.newArrayList();
+        XmlInputFormat.XmlRecordReader whole = new XmlInputFormat.XmlRecordReader(
+                new FileSplit(new Path(log.getPath()), 0, log.length(), null),
+                FeedInputFormat.feedConfiguration(new Configuration()));
+        try {
+            while (whole.nextKeyValue()) {
+                expected.add(whole.getCurrentValue().toString().trim());
+            }
+        } finally {
+            whole.close();
+        }
+        assertEquals(6, expected.size());
+
+        for (long chunkSize : new long[]{1, 100, 4096, 10000, log.length()}) {
+            List<String> feeds = Lists.newArrayList();
+            for (LocalHubStats.Chunk chunk : LocalHubStats.chunks(input, chunkSize,
+                    new CompressionCodecFactory(new Configuration()))) {
+                LocalHubStats.ChunkRecordReader reader = new LocalHubStats.ChunkRecordReader(chunk);
+                try {
+                    reader.initialize(chunk, null);
+                    while (reader.nextKeyValue()) {
+                        feeds.add(reader.getCurrentValue().toString().trim());
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+            assertEquals(String.valueOf(chunkSize), expected, feeds);
+        }
+    }
+
+    @Test
+    public void sameEventsAsJob() throws Exception {
+        assertSameEventsAsJob(false, true);
+    }
+
+    @Test
+    public void mappedSameEventsAsJob() throws Exception {
+        assertSameEventsAsJob(true, true);
+    }
+
+    private void assertSameEventsAsJob(boolean map, boolean highWater) throws Exception {
+        SortedMap<Long, String> expected = Maps.newTreeMap();
+        for (String feed : new String[]{"single-feed.log", "event-types.log"}) {
+            List<Pair<LongWritable, Text>> events = new MapDriver<LongWritable, Text, LongWritable, Text>(
+                    new HubStats.EventMapper()).withInput(new LongWritable(0), new Text(TestResources.read(feed)))
+                    .run();
+            for (Pair<LongWritable, Text> event : events) {
+                if (!expected.containsKey(event.getFirst().get())) {
+                    expected.put(event.getFirst().get(), event.getSecond().toString());
+                }
+            }
+        }
+
+        Configuration conf = new Configuration();
+        conf.setInt(LocalHubStats.THREADS_KEY, 3);
+        conf.setLong(LocalHubStats.CHUNK_KEY, 5000);
+        conf.setBoolean(LocalHubStats.MAP_KEY, map);
+        conf.setBoolean(HubStats.HIGH_WATER_MARK_KEY, highWater);
+        LocalHubStats local = new LocalHubStats();
+        local.setConf(conf);
+        File output = new File(dir, "output");
+        assertEquals(0, local.run(new String[]{input.getPath(), output.getPath()}));
+
+        Map<Long, String> lines = Maps.newLinkedHashMap();
+        for (Object line : FileUtils.readLines(new File(output, LocalHubStats.PART))) {
+            String[] fields = line.toString().split("\t", 2);
+            lines.put(Long.parseLong(fields[0]), fields[1]);
+        }
+        assertEquals(Lists.newArrayList(expected.entrySet()), Lists.newArrayList(lines.entrySet()));
+
+        Path part = new Path(new File(output, LocalHubStats.PART).getPath());
+        EventStats stats = EventStats.read(FileSystem.getLocal(conf), part);
+        assertNotNull(stats);
+        assertEquals(expected.size(), stats.getCount());
+    }
+
+    @Test
+    public void compressedLogReadWhole() throws Exception {
+        File compressed = new File(input, log.getName() + ".gz");
+        OutputStream out = new GZIPOutputStream(new FileOutputStream(compressed));
+        try {
+            out.write(FileUtils.readFileToByteArray(log));
+        } finally {
+            out.close();
+        }
+        log.delete();
+        List<LocalHubStats.Chunk> chunks = LocalHubStats.chunks(input, 100,
+                new CompressionCodecFactory(new Configuration()));
+        assertEquals(1, chunks.size());
+        assertTrue(chunks.get(0).compressed);
+        // the feeds are read by a single mapper, so later feeds would otherwise stop at the ids of earlier ones
+        assertSameEventsAsJob(true, false);
+    }
+
+    @Test
+    public void sortByIdIsStable() {
+        long[] ids = {5, 3, 5, 1, 3, 9, 1, 5, 0};
+        assertArrayEquals(new int[]{8, 3, 6, 1, 4, 0, 2, 7, 5},
+                LocalHubStats.ChunkOutput.sortById(ids, ids.length));
+        assertArrayEquals(new int[]{1, 0, 2}, LocalHubStats.ChunkOutput.sortById(ids, 3));
+        assertArrayEquals(new int[0], LocalHubStats.ChunkOutput.sortById(ids, 0));
+    }
+
+    @Test(expected = IOException.class)
+    public void outputMustNotExist() throws Exception {
+        LocalHubStats local = new LocalHubStats();
+        local.setConf(new Configuration());
+        local.run(new String[]{input.getPath(), input.getPath()});
+    }
+
+}
@@ -0,0 +1,128 @@
+package hubstats;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.mahout.classifier.bayes.XmlInputFormat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static hubstats.TestResources.HEADER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MappedFeedReaderTest {
+
+    private File log;
+    private List<String> expected;
+
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        log = File.createTempFile("github-timeline", ".log");
+        TestResources.log(log, 3);
+
+        expected = Lists.newArrayList();
+        XmlInputFormat.XmlRecordReader whole = new XmlInputFormat.XmlRecordReader(
+                new FileSplit(new Path(log.getPath()), 0, log.length(), null),
+                FeedInputFormat.feedConfiguration(new Configuration()));
+        try {
+            while (whole.nextKeyValue()) {
+                expected.add(whole.getCurrentValue().toString());
+            }
+        } finally {
+            whole.close();
+        }
+        assertEquals(6, expected.size());
+    }
+
+    @After
+    public void tearDown() {
+        log.delete();
+    }
+
+    @Test
+    public void sameFeedsAsXmlRecordReader() throws IOException {
+        byte[] bytes = FileUtils.readFileToByteArray(log);
+        for (int window : new int[]{64, 4096, 50000, MappedFeedReader.DEFAULT_WINDOW}) {
+            List<String> feeds = Lists.newArrayList();
+            MappedFeedReader reader = new MappedFeedReader(log, 0, Long.MAX_VALUE, window);
+            try {
+                while (reader.next()) {
+                    String feed = decode(reader.getFeed());
+                    assertEquals(feed, new String(bytes, (int) reader.getOffset(), reader.getFeed().remaining(),
+                            Charsets.UTF_8));
+                    feeds.add(feed);
+                }
+                assertEquals(1.0f, reader.getProgress(), 0.0f);
+            } finally {
+                reader.close();
+            }
+            assertEquals(String.valueOf(window), expected, feeds);
+        }
+    }
+
+    @Test
+    public void rangesReadEachFeedOnce() throws IOException {
+        for (long range : new long[]{100, 4096, 10000, log.length()}) {
+            for (int window : new int[]{64, 4096, MappedFeedReader.DEFAULT_WINDOW}) {
+                List<String> feeds = Lists.newArrayList();
+                for (long start = 0; start < log.length(); start += range) {
+                    MappedFeedReader reader = new MappedFeedReader(log, start, start + range, window);
+                    try {
+                        while (reader.next()) {
+                            assertTrue(reader.getOffset() >= start && reader.getOffset() < start + range);
+                            feeds.add(decode(reader.getFeed()));
+                        }
+                    } finally {
+                        reader.close();
+                    }
+                }
+                assertEquals(range + "/" + window, expected, feeds);
+            }
+        }
+    }
+
+    @Test
+    public void feedCutOffAtEnd() throws IOException {
+        String text = FileUtils.readFileToString(log);
+        FileUtils.writeStringToFile(log, text + HEADER + "<feed xmlns=\"http://www.w3.org/2005/Atom\"><entry>");
+        MappedFeedReader reader = new MappedFeedReader(log, 0, Long.MAX_VALUE, 64);
+        try {
+            for (String feed : expected) {
+                reader.next();
+                assertEquals(feed, decode(reader.getFeed()));
+            }
+            assertFalse(reader.next());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void emptyLog() throws IOException {
+        FileUtils.writeStringToFile(log, "");
+        MappedFeedReader reader = new MappedFeedReader(log);
+        try {
+            assertFalse(reader.next());
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static String decode(ByteBuffer feed) {
+        byte[] bytes = new byte[feed.remaining()];
+        feed.duplicate().get(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+
+}
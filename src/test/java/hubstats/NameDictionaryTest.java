@@ -0,0 +1,189 @@
+package hubstats;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mrunit.mapreduce.MapDriver;
+import org.apache.hadoop.mrunit.types.Pair;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.SortedSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class NameDictionaryTest {
+
+    private File dir;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("dictionary", "");
+        dir.delete();
+        dir.mkdirs();
+        file = new File(dir, "part-r-00000" + NameDictionary.EXTENSION);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void idsAreSortedPositions() throws IOException {
+        write("esil", "jörg", "mrtazz", "weisserd", "日本");
+        NameDictionary names = read();
+        assertEquals(5, names.size());
+        assertEquals(0, names.lookup("esil"));
+        assertEquals(1, names.lookup("jörg"));
+        assertEquals(3, names.lookup("weisserd"));
+        assertEquals(4, names.lookup("日本"));
+        assertEquals("mrtazz", names.get(2));
+        assertEquals(-1, names.lookup("acrmp"));
+        assertEquals(-1, names.lookup("esi"));
+        assertEquals(-1, names.lookup("esill"));
+        assertEquals(-1, names.lookup("zzz"));
+        assertEquals(-1, names.lookup(""));
+    }
+
+    @Test
+    public void namesMustBeInOrder() throws IOException {
+        NameDictionary.Writer writer = new NameDictionary.Writer(new DataOutputStream(new FileOutputStream(file)));
+        try {
+            writer.add(bytes("weisserd"), 0, 8);
+            writer.add(bytes("esil"), 0, 4);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Dictionary names must be distinct, non-empty and in order (was esil after weisserd)",
+                    e.getMessage());
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void notADictionary() throws IOException {
+        FileUtils.writeStringToFile(file, "HSCOL\u0001");
+        read();
+    }
+
+    @Test
+    public void namesOfFeed() throws IOException, InterruptedException {
+        SortedSet<Text> expected = Sets.newTreeSet();
+        for (Event event : TestResources.parse("event-types.log")) {
+            expected.add(new Text(event.getActor()));
+            if (event.getRepoAccount() != null) {
+                expected.add(new Text(event.getRepoAccount()));
+            }
+            if (event.getRepoName() != null) {
+                expected.add(new Text(event.getRepoName()));
+            }
+        }
+
+        List<Pair<Text, NullWritable>> emitted = new MapDriver<LongWritable, Text, Text, NullWritable>(
+                new DictionaryBuilder.NameMapper()).withInput(new LongWritable(0),
+                new Text(TestResources.read("event-types.log"))).run();
+        SortedSet<Text> names = Sets.newTreeSet();
+        for (Pair<Text, NullWritable> name : emitted) {
+            names.add(name.getFirst());
+        }
+        assertEquals(expected, names);
+    }
+
+    @Test
+    public void encodedLines() throws IOException, InterruptedException {
+        List<Event> events = TestResources.parse("event-types.log");
+        SortedSet<Text> sorted = Sets.newTreeSet();
+        for (Event event : events) {
+            sorted.add(new Text(event.getActor()));
+        }
+        Text missing = sorted.first();
+        sorted.remove(missing);
+        NameDictionary.Writer writer = new NameDictionary.Writer(new DataOutputStream(new FileOutputStream(file)));
+        for (Text name : sorted) {
+            writer.add(name.getBytes(), 0, name.getLength());
+        }
+        writer.close();
+
+        Configuration conf = new Configuration();
+        conf.set(EncodedEventOutputFormat.DICTIONARY_KEY, file.getPath());
+        NameDictionary names = NameDictionary.read(conf);
+        File out = new File(dir, "part-r-00000");
+        EncodedEventOutputFormat.EncodedRecordWriter encoded = new EncodedEventOutputFormat.EncodedRecordWriter(
+                new DataOutputStream(new FileOutputStream(out)), names, Timestamps.Format.ISO);
+        LongWritable id = new LongWritable();
+        for (Event event : events) {
+            id.set(event.getEventId());
+            encoded.write(id, new EventWritable(event));
+        }
+        encoded.close(null);
+
+        List<String> lines = Lists.newArrayList(FileUtils.readLines(out));
+        assertEquals(events.size(), lines.size());
+        boolean sawMissing = false;
+        for (int i = 0; i < events.size(); i++) {
+            Event event = events.get(i);
+            String[] fields = lines.get(i).split("\t", -1);
+            String[] original = (event.getEventId() + "\t" + event.toString()).split("\t", -1);
+            assertEquals(original.length, fields.length);
+            for (int f = 0; f < fields.length; f++) {
+                // the actor, repository account and repository name
+                boolean name = f >= 4 && f <= 6 && original[f].length() > 0;
+                if (name && names.lookup(original[f]) >= 0) {
+                    assertEquals(original[f], names.get(Integer.parseInt(fields[f])));
+                } else if (name) {
+                    sawMissing |= original[f].equals(missing.toString());
+                    assertEquals("=" + original[f], fields[f]);
+                } else {
+                    assertEquals(original[f], fields[f]);
+                }
+            }
+        }
+        assertTrue(sawMissing);
+    }
+
+    @Test
+    public void nameOfDigitsIsNotAnId() throws IOException {
+        write("2048", "esil");
+        NameDictionary names = read();
+        Event event = new Event.Builder().eventId(1L).type(EventType.Watch).at("2010-11-19T03:55:45-08:00")
+                .actor("1").repoAccount("esil").repoName("2048").build();
+        Text line = new Text();
+        event.writeTo(line, Timestamps.Format.ISO, names);
+        assertEquals("1\tWatch\t2010-11-19T03:55:45-08:00\t=1\t1\t0\t\t\t\t", line.toString());
+    }
+
+    private void write(String... names) throws IOException {
+        NameDictionary.Writer writer = new NameDictionary.Writer(new DataOutputStream(new FileOutputStream(file)));
+        for (String name : names) {
+            byte[] utf8 = bytes(name);
+            writer.add(utf8, 0, utf8.length);
+        }
+        writer.close();
+    }
+
+    private NameDictionary read() throws IOException {
+        return NameDictionary.read(FileSystem.getLocal(new Configuration()), new Path(file.getPath()));
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(Charsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,126 @@
+package hubstats;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PartitionedEventOutputFormatTest {
+
+    private File dir;
+    private FileSystem fs;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("partitioned", "");
+        dir.delete();
+        dir.mkdirs();
+        fs = FileSystem.getLocal(new Configuration());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void partitionByUtcDayAndType() {
+        assertEquals("date=2010-11-19/type=Push",
+                PartitionedEventOutputFormat.partition(push(1L, "2010-11-19T03:55:54-08:00")));
+        assertEquals("date=2010-11-20/type=Push",
+                PartitionedEventOutputFormat.partition(push(1L, "2010-11-19T16:00:00-08:00")));
+        assertEquals("date=unknown/type=Push",
+                PartitionedEventOutputFormat.partition(push(1L, "2010-11-19T11:55:54Z")));
+    }
+
+    @Test
+    public void eventsWrittenToTheirPartitions() throws IOException, InterruptedException {
+        List<Event> events = TestResources.parse("event-types.log");
+        write(events, PartitionedEventOutputFormat.DEFAULT_MAX_BYTES, PartitionedEventOutputFormat.DEFAULT_MAX_OPEN);
+
+        List<String> expected = Lists.newArrayList();
+        for (Event event : events) {
+            expected.add(event.getEventId() + "\t" + event);
+            File file = new File(new File(dir, PartitionedEventOutputFormat.partition(event)), "part-r-00000-00000");
+            assertTrue(FileUtils.readFileToString(file).contains(event.toString()));
+            assertTrue(EventStats.read(fs, new Path(file.getPath())).getCount() > 0);
+        }
+        assertEquals(sorted(expected), sorted(readAll()));
+    }
+
+    @Test
+    public void filesRolledAtMaximumSize() throws IOException {
+        List<Event> events = Lists.newArrayList();
+        for (long id = 1; id <= 10; id++) {
+            events.add(push(id, "2010-11-19T03:55:54-08:00"));
+        }
+        int lineLength = ("1\t" + events.get(0) + "\n").length();
+        write(events, lineLength * 3, PartitionedEventOutputFormat.DEFAULT_MAX_OPEN);
+
+        File partition = new File(dir, "date=2010-11-19/type=Push");
+        assertEquals(4, partition.list(new FilenameFilter() {
+            public boolean accept(File d, String name) {
+                return !name.startsWith(".");
+            }
+        }).length);
+        assertEquals(10, readAll().size());
+    }
+
+    @Test
+    public void leastRecentlyUsedClosed() throws IOException {
+        write(Lists.newArrayList(push(1L, "2010-11-19T03:55:54-08:00"), push(2L, "2010-11-20T03:55:54-08:00"),
+                push(3L, "2010-11-19T03:55:54-08:00")), PartitionedEventOutputFormat.DEFAULT_MAX_BYTES, 1);
+        assertTrue(new File(dir, "date=2010-11-19/type=Push/part-r-00000-00001").exists());
+        assertEquals(3, readAll().size());
+    }
+
+    private void write(List<Event> events, long maxBytes, int maxOpen) throws IOException {
+        PartitionedEventOutputFormat.PartitionedRecordWriter writer =
+                new PartitionedEventOutputFormat.PartitionedRecordWriter(fs, new Path(dir.getPath()), "part-r-00000",
+                        "", null, maxBytes, maxOpen, Timestamps.Format.ISO);
+        LongWritable id = new LongWritable();
+        EventWritable writable = new EventWritable();
+        for (Event event : events) {
+            id.set(event.getEventId());
+            writable.set(event);
+            writer.write(id, writable);
+        }
+        writer.close(null);
+    }
+
+    private List<String> readAll() throws IOException {
+        List<String> lines = Lists.newArrayList();
+        for (File file : FileUtils.listFiles(dir, null, true)) {
+            if (!file.getName().startsWith(".")) {
+                lines.addAll(FileUtils.readLines(file));
+            }
+        }
+        return lines;
+    }
+
+    private static List<String> sorted(List<String> lines) {
+        List<String> copy = Lists.newArrayList(lines);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    private static Event push(long id, String at) {
+        return new Event.Builder(id, EventType.Push, at, "esil").repoAccount("esil").repoName("cmake")
+                .branch("master").build();
+    }
+
+}
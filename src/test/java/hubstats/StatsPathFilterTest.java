@@ -0,0 +1,77 @@
+package hubstats;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StatsPathFilterTest {
+
+    private EventStats stats;
+    private Configuration conf;
+
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        stats = new EventStats();
+        for (Event event : TestResources.parse("single-feed.log")) {
+            stats.add(event);
+        }
+        conf = new Configuration();
+    }
+
+    @Test
+    public void unboundedMatchesAll() {
+        assertTrue(matches());
+        assertFalse(filter().matches(new EventStats()));
+    }
+
+    @Test
+    public void idRange() {
+        conf.setLong(FeedInputFormat.MIN_ID_KEY, 1007541709L);
+        assertTrue(matches());
+        conf.setLong(FeedInputFormat.MIN_ID_KEY, 1007541710L);
+        assertFalse(matches());
+    }
+
+    @Test
+    public void timeRange() {
+        conf.set(FeedInputFormat.FROM_KEY, "2010-11-19T03:55:54-08:00");
+        assertTrue(matches());
+        conf.set(FeedInputFormat.FROM_KEY, "2010-11-19T03:55:55-08:00");
+        assertFalse(matches());
+        conf.set(FeedInputFormat.FROM_KEY, "2010-11-19T00:00:00-08:00");
+        conf.set(FeedInputFormat.TO_KEY, "2010-11-19T01:00:00-08:00");
+        assertFalse(matches());
+    }
+
+    @Test
+    public void types() {
+        conf.set(StatsPathFilter.TYPES_KEY, "Push, Fork");
+        assertTrue(matches());
+        conf.set(StatsPathFilter.TYPES_KEY, "ForkApply");
+        assertFalse(matches());
+    }
+
+    @Test
+    public void repo() {
+        conf.set(StatsPathFilter.REPO_KEY, "weisserd/LDAP-Sync");
+        assertTrue(matches());
+        conf.set(StatsPathFilter.REPO_KEY, "acrmp/hubstats");
+        assertFalse(matches());
+    }
+
+    private boolean matches() {
+        return filter().matches(stats);
+    }
+
+    private StatsPathFilter filter() {
+        StatsPathFilter filter = new StatsPathFilter();
+        filter.setConf(conf);
+        return filter;
+    }
+
+}
@@ -0,0 +1,85 @@
+package hubstats;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.io.Text;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The feeds in src/test/resources, for the tests that build logs and events from them.
+ */
+final class TestResources {
+
+    /**
+     * The HTTP response header the timeline has before each feed.
+     */
+    static final String HEADER = "HTTP/1.1 200 OK\r\nContent-Type: application/atom+xml; charset=utf-8\r\n\r\n";
+
+    private TestResources() {
+
+    }
+
+    /**
+     * @return The file of a resource, relative to the project directory the tests are run from
+     */
+    static File file(String name) {
+        return new File(String.format("src%stest%sresources%s%s", File.separator, File.separator, File.separator,
+                name));
+    }
+
+    /**
+     * @return The text of a resource
+     */
+    static String read(String name) throws IOException {
+        return FileUtils.readFileToString(file(name));
+    }
+
+    /**
+     * @return The text of a timeline log of copies of single-feed.log followed by event-types.log, each after HEADER and
+     *         followed by a newline
+     */
+    static String log(int copies) throws IOException {
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < copies; i++) {
+            log.append(HEADER).append(read("single-feed.log")).append('\n');
+            log.append(HEADER).append(read("event-types.log")).append('\n');
+        }
+        return log.toString();
+    }
+
+    /**
+     * Write the timeline log of log(copies) to file.
+     */
+    static void log(File file, int copies) throws IOException {
+        FileUtils.writeStringToFile(file, log(copies));
+    }
+
+    /**
+     * @return A new empty directory, to be deleted by the test
+     */
+    static File tempDir(String prefix) throws IOException {
+        File dir = File.createTempFile(prefix, "");
+        dir.delete();
+        dir.mkdirs();
+        return dir;
+    }
+
+    /**
+     * @return The events of the feed in a resource, in the order of its entries
+     */
+    static List<Event> parse(String name) throws IOException, InterruptedException {
+        Text feed = new Text(read(name));
+        final List<Event> events = Lists.newArrayList();
+        FeedParser.Mode.BYTES.newParser(new TitleExtractor(TitleExtractor.Mode.TOKENS)).parse(feed,
+                new FeedParser.Handler() {
+                    public void event(Event.Builder builder) {
+                        events.add(builder.build());
+                    }
+                });
+        return events;
+    }
+
+}
@@ -0,0 +1,111 @@
+package hubstats;
+
+import com.google.common.base.Charsets;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimestampsTest {
+
+    @Test
+    public void parseTimelineTimestamp() {
+        String at = "2010-11-19T03:55:54-08:00";
+        assertEquals(-480, Timestamps.offsetMinutes(at));
+        assertEquals(1290167754L, Timestamps.epochSeconds(at, -480));
+    }
+
+    @Test
+    public void positiveOffset() {
+        String at = "2010-11-19T17:25:54+05:30";
+        assertEquals(330, Timestamps.offsetMinutes(at));
+        assertEquals(1290167754L, Timestamps.epochSeconds(at, 330));
+    }
+
+    @Test
+    public void formatTimelineTimestamp() {
+        assertEquals("2010-11-19T03:55:54-08:00", Timestamps.format(1290167754L, -480));
+        assertEquals("2010-11-19T11:55:54+00:00", Timestamps.format(1290167754L, 0));
+        assertEquals("1970-01-01T00:00:00+00:00", Timestamps.format(0L, 0));
+        assertEquals("1969-12-31T16:00:00-08:00", Timestamps.format(0L, -480));
+    }
+
+    @Test
+    public void roundTrip() {
+        int[] offsets = {-720, -480, -30, 0, 60, 345, 840};
+        for (long seconds = -2208988800L; seconds < 4102444800L; seconds += 86399L * 17) {
+            for (int offset : offsets) {
+                String at = Timestamps.format(seconds, offset);
+                assertEquals(at, offset, Timestamps.offsetMinutes(at));
+                assertEquals(at, seconds, Timestamps.epochSeconds(at, offset));
+            }
+        }
+    }
+
+    @Test
+    public void formatBytes() {
+        byte[] buf = new byte[Timestamps.LENGTH + 2];
+        Timestamps.format(1290167754L, -480, buf, 1);
+        assertEquals("2010-11-19T03:55:54-08:00", new String(buf, 1, Timestamps.LENGTH, Charsets.US_ASCII));
+    }
+
+    @Test
+    public void parserMatchesOffsetMinutes() {
+        Timestamps.Parser parser = new Timestamps.Parser();
+        String[] ats = {"2010-11-19T03:55:54-08:00", "2010-11-19T03:55:54-08:00", "2010-11-19T03:55:07-08:00",
+                "2010-11-19T03:56:07-08:00", "2010-11-19T03:56:07+05:30", "2010-11-19T03:56:61+05:30",
+                "2010-11-19T03:56:07+05:30", "2010-11-19T11:55:54Z", "2010-11-19T03:56:07+05:30",
+                "2012-02-29T23:59:59-08:00", "2012-02-29T23:59:00-08:00"};
+        for (String at : ats) {
+            byte[] bytes = ("<published>" + at + "</published>").getBytes(Charsets.UTF_8);
+            int offset = Timestamps.offsetMinutes(at);
+            assertEquals(at, offset != Timestamps.UNPARSEABLE, parser.parse(bytes, 11, 11 + at.length()));
+            assertEquals(at, offset, parser.getOffsetMinutes());
+            if (offset != Timestamps.UNPARSEABLE) {
+                assertEquals(at, Timestamps.epochSeconds(at, offset), parser.getEpochSeconds());
+            }
+        }
+    }
+
+    @Test
+    public void parserStrings() {
+        Timestamps.Parser parser = new Timestamps.Parser();
+        assertTrue(parser.parse("2010-11-19T03:55:54-08:00"));
+        assertEquals(1290167754L, parser.getEpochSeconds());
+        assertTrue(parser.parse("2010-11-19T03:55:59-08:00"));
+        assertEquals(1290167759L, parser.getEpochSeconds());
+        // \u0130 would be truncated to '0'
+        assertFalse(parser.parse("2010-11-19T03:55:5\u0130-08:00"));
+        assertFalse(parser.parse(null));
+        assertTrue(parser.parse("2010-11-19T03:55:59-08:00"));
+        assertEquals(-480, parser.getOffsetMinutes());
+        assertEquals(1290167759L, parser.getEpochSeconds());
+    }
+
+    @Test
+    public void leapDays() {
+        assertEquals(-480, Timestamps.offsetMinutes("2012-02-29T00:00:00-08:00"));
+        assertEquals(-480, Timestamps.offsetMinutes("2000-02-29T00:00:00-08:00"));
+        assertEquals(Timestamps.UNPARSEABLE, Timestamps.offsetMinutes("2011-02-29T00:00:00-08:00"));
+        assertEquals(Timestamps.UNPARSEABLE, Timestamps.offsetMinutes("1900-02-29T00:00:00-08:00"));
+    }
+
+    @Test
+    public void unparseable() {
+        assertEquals(Timestamps.UNPARSEABLE, Timestamps.offsetMinutes(null));
+        assertEquals(Timestamps.UNPARSEABLE, Timestamps.offsetMinutes(""));
+        assertEquals(Timestamps.UNPARSEABLE, Timestamps.offsetMinutes("2010-11-19T11:55:54Z"));
+        assertEquals(Timestamps.UNPARSEABLE, Timestamps.offsetMinutes("2010-11-19T03:55:54.123-08:00"));
+        assertEquals(Timestamps.UNPARSEABLE, Timestamps.offsetMinutes("2010-11-19T03:55:54-00:00"));
+        assertEquals(Timestamps.UNPARSEABLE, Timestamps.offsetMinutes("2010-11-19 03:55:54-08:00"));
+        assertEquals(Timestamps.UNPARSEABLE, Timestamps.offsetMinutes("2010-11-31T03:55:54-08:00"));
+        assertEquals(Timestamps.UNPARSEABLE, Timestamps.offsetMinutes("2010-13-19T03:55:54-08:00"));
+        assertEquals(Timestamps.UNPARSEABLE, Timestamps.offsetMinutes("2010-11-19T24:55:54-08:00"));
+        assertEquals(Timestamps.UNPARSEABLE, Timestamps.offsetMinutes("2010-11-19T03:55:60-08:00"));
+        assertEquals(Timestamps.UNPARSEABLE, Timestamps.offsetMinutes("2010-11-19T03:55:54-08:60"));
+        assertEquals(Timestamps.UNPARSEABLE, Timestamps.offsetMinutes("2010-1a-19T03:55:54-08:00"));
+        assertEquals(Timestamps.UNPARSEABLE, Timestamps.offsetMinutes("2010-11-19T03:55:54*08:00"));
+    }
+
+}
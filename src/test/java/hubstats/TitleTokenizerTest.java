@@ -0,0 +1,109 @@
+package hubstats;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TitleTokenizerTest {
+
+    private static final String[] TITLES = {
+            "weisserd closed issue 1 on weisserd/LDAP-Sync",
+            "esil pushed to master at esil/cmake",
+            "74hc595 created branch master at 74hc595/remona",
+            "channgo created repository SmallGift",
+            "marcomaggi created tag 1.0.3 at marcomaggi/Infix",
+            "marco-arnold started watching icefox/arora",
+            "vitorpc started following tkyk",
+            "KeithMoss forked arnaud/chrome-tab-sugar",
+            "zakuro563 updated gist: 706394",
+            "fernandopereira added Haderson to valter_rails",
+            "defunkt closed pull request 64 on defunkt/mustache",
+            "Duny uploaded a file to Duny/foo_my_autoplaylist",
+            "jeroenbaas edited a page in the Opstandingskerk/NWonline wiki",
+            "clbustos deleted branch stack_layout at rubyvis",
+            "thanethomson deleted tag 0.1.praekelt at django-form-designer",
+            "saevarom open sourced playware",
+            "VladimirMangos commented on mangos/mangos",
+            "cdotyone applied fork commits to cdotyone/mootools-meio-mask",
+            "",
+            " ",
+            "esil",
+            "esil ",
+            " esil pushed to master at esil/cmake",
+            "esil pushed to master at esil/",
+            "esil pushed to master at /cmake",
+            "esil pushed to master at esil/cmake/sub dir",
+            "esil pushed to master at es il/cmake",
+            "esil pushed to  at esil/cmake",
+            "esil  pushed to master at esil/cmake",
+            "esil pushed to master at esil/cm\nake",
+            "es\til pushed to master at esil/cmake",
+            "a/b pushed to c/d at e/f",
+            "weisserd closed issue 1x on weisserd/LDAP-Sync",
+            "weisserd closed issue  on weisserd/LDAP-Sync",
+            "weisserd closed issue 99999999999999999 on a/b",
+            "zakuro563 updated gist: ",
+            "zakuro563 updated gist: 12 ",
+            "channgo created repository ",
+            "channgo created repository a\nb",
+            "channgo created branch x",
+            "saevarom open sourced playware ",
+            "saevarom\nx open sourced playware",
+            "saevarom open\nsourced playware",
+            "saevarom playware\n",
+            "a b c to ",
+            "a b c to d e f",
+            "x started following ",
+            "x deleted tag at a",
+            "x deleted tag t at ",
+            "jeroenbaas edited a page in the /NWonline wiki",
+    };
+
+    @Test
+    public void matchesRegularExpressions() {
+        TitleTokenizer tokenizer = new TitleTokenizer();
+        EventExtractors extractors = new EventExtractors();
+        for (String title : TITLES) {
+            for (EventType type : EventType.values()) {
+                Event.Builder expected = new Event.Builder().type(type);
+                Event.Builder actual = new Event.Builder().type(type);
+                boolean matched = extractors.get(type).extract(title, expected);
+                assertEquals(type + ": " + title, matched, tokenizer.extract(type, title, actual));
+                assertTrue(type + ": " + title, actual.hasSameTitleFields(expected));
+            }
+        }
+    }
+
+    @Test
+    public void push() {
+        Event e = extract(EventType.Push, "esil pushed to master at esil/cmake");
+        assertEquals("1\tPush\t2010-11-19T03:55:54-08:00\tesil\tesil\tcmake\tmaster\t\t\t", e.toString());
+    }
+
+    @Test
+    public void issue() {
+        Event e = extract(EventType.Issues, "grinnbearit opened issue 32 on technomancy/swank-clojure");
+        assertEquals("1\tIssues\t2010-11-19T03:55:54-08:00\tgrinnbearit\ttechnomancy\tswank-clojure\t\t\t32\topened",
+                e.toString());
+    }
+
+    @Test
+    public void repositoryNameWithSpaces() {
+        Event e = extract(EventType.Gollum, "jeroenbaas edited a page in the Opstandingskerk/NWonline wiki");
+        assertEquals("NWonline wiki", e.getRepoName());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unmatchedTitle() {
+        new TitleExtractor(TitleExtractor.Mode.TOKENS).extract("esil pushed master",
+                new Event.Builder().type(EventType.Push));
+    }
+
+    private static Event extract(EventType type, String title) {
+        Event.Builder builder = new Event.Builder(1L, type, "2010-11-19T03:55:54-08:00", null);
+        new TitleExtractor(TitleExtractor.Mode.PARITY).extract(title, builder);
+        return builder.build();
+    }
+
+}
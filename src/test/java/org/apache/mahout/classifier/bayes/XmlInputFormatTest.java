@@ -0,0 +1,109 @@
+package org.apache.mahout.classifier.bayes;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class XmlInputFormatTest {
+
+    private File timeline;
+    private Configuration conf;
+
+    @Before
+    public void setUp() throws IOException {
+        File singleFeed = new File(String.format("src%stest%sresources%ssingle-feed.log",
+                File.separator, File.separator, File.separator));
+        File eventTypes = new File(String.format("src%stest%sresources%sevent-types.log",
+                File.separator, File.separator, File.separator));
+        String header = "HTTP/1.1 200 OK\r\nContent-Type: application/atom+xml; charset=utf-8\r\n\r\n";
+        timeline = File.createTempFile("timeline", ".log");
+        FileUtils.writeStringToFile(timeline, header + FileUtils.readFileToString(singleFeed) + "\n"
+                + header + FileUtils.readFileToString(eventTypes) + "\n"
+                + header + FileUtils.readFileToString(singleFeed));
+
+        conf = new Configuration();
+        conf.set(XmlInputFormat.START_TAG_KEY, "<feed");
+        conf.set(XmlInputFormat.END_TAG_KEY, "feed>");
+    }
+
+    @After
+    public void tearDown() {
+        timeline.delete();
+    }
+
+    @Test
+    public void wholeFile() throws IOException, InterruptedException {
+        List<String> records = read(0, timeline.length());
+        assertEquals(3, records.size());
+        assertEquals(FileUtils.readFileToString(new File(String.format("src%stest%sresources%ssingle-feed.log",
+                File.separator, File.separator, File.separator))).trim(), records.get(0));
+    }
+
+    @Test
+    public void smallBuffer() throws IOException, InterruptedException {
+        List<String> expected = read(0, timeline.length());
+        conf.setInt(XmlInputFormat.BUFFER_SIZE_KEY, 7);
+        assertEquals(expected, read(0, timeline.length()));
+    }
+
+    @Test
+    public void splitsSeeEachRecordOnce() throws IOException, InterruptedException {
+        conf.setInt(XmlInputFormat.BUFFER_SIZE_KEY, 4096);
+        List<String> expected = read(0, timeline.length());
+        for (long split = 1; split < timeline.length(); split += 997) {
+            List<String> records = read(0, split);
+            records.addAll(read(split, timeline.length() - split));
+            assertEquals("Split at " + split, expected, records);
+        }
+    }
+
+    @Test
+    public void gzipFile() throws IOException, InterruptedException {
+        conf.setInt(XmlInputFormat.BUFFER_SIZE_KEY, 4096);
+        List<String> expected = read(0, timeline.length());
+        File compressed = File.createTempFile("timeline", ".log.gz");
+        try {
+            OutputStream out = new GZIPOutputStream(new FileOutputStream(compressed));
+            try {
+                out.write(FileUtils.readFileToByteArray(timeline));
+            } finally {
+                out.close();
+            }
+            assertEquals(expected, read(compressed, 0, compressed.length()));
+        } finally {
+            compressed.delete();
+        }
+    }
+
+    private List<String> read(long start, long length) throws IOException, InterruptedException {
+        return read(timeline, start, length);
+    }
+
+    private List<String> read(File file, long start, long length) throws IOException, InterruptedException {
+        XmlInputFormat.XmlRecordReader reader =
+                new XmlInputFormat.XmlRecordReader(new FileSplit(new Path(file.getPath()), start, length, null), conf);
+        List<String> records = Lists.newArrayList();
+        try {
+            while (reader.nextKeyValue()) {
+                records.add(reader.getCurrentValue().toString());
+            }
+        } finally {
+            reader.close();
+        }
+        return records;
+    }
+}